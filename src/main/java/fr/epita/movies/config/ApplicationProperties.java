@@ -2,6 +2,10 @@ package fr.epita.movies.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Properties specific to Movies.
  * <p>
@@ -10,4 +14,865 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Cache cache = new Cache();
+
+    private final MovieImport movieImport = new MovieImport();
+
+    private final ExternalIdFilter externalIdFilter = new ExternalIdFilter();
+
+    private final MovieStats movieStats = new MovieStats();
+
+    private final SeenMovieIngestion seenMovieIngestion = new SeenMovieIngestion();
+
+    private final SeenMovieDedupe seenMovieDedupe = new SeenMovieDedupe();
+
+    private final SeenMovieRollup seenMovieRollup = new SeenMovieRollup();
+
+    private final SeenMovieArchive seenMovieArchive = new SeenMovieArchive();
+
+    private final AlsoWatched alsoWatched = new AlsoWatched();
+
+    private final MovieReach movieReach = new MovieReach();
+
+    private final Trending trending = new Trending();
+
+    private final SeenMovieIndex seenMovieIndex = new SeenMovieIndex();
+
+    private final SeenMovieExport seenMovieExport = new SeenMovieExport();
+
+    private final RoleMembership roleMembership = new RoleMembership();
+
+    private final ContactLookup contactLookup = new ContactLookup();
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public MovieImport getMovieImport() {
+        return movieImport;
+    }
+
+    public ExternalIdFilter getExternalIdFilter() {
+        return externalIdFilter;
+    }
+
+    public MovieStats getMovieStats() {
+        return movieStats;
+    }
+
+    public SeenMovieIngestion getSeenMovieIngestion() {
+        return seenMovieIngestion;
+    }
+
+    public SeenMovieDedupe getSeenMovieDedupe() {
+        return seenMovieDedupe;
+    }
+
+    public SeenMovieRollup getSeenMovieRollup() {
+        return seenMovieRollup;
+    }
+
+    public SeenMovieArchive getSeenMovieArchive() {
+        return seenMovieArchive;
+    }
+
+    public AlsoWatched getAlsoWatched() {
+        return alsoWatched;
+    }
+
+    public MovieReach getMovieReach() {
+        return movieReach;
+    }
+
+    public Trending getTrending() {
+        return trending;
+    }
+
+    public SeenMovieIndex getSeenMovieIndex() {
+        return seenMovieIndex;
+    }
+
+    public SeenMovieExport getSeenMovieExport() {
+        return seenMovieExport;
+    }
+
+    public RoleMembership getRoleMembership() {
+        return roleMembership;
+    }
+
+    public ContactLookup getContactLookup() {
+        return contactLookup;
+    }
+
+    /**
+     * Bounds of the cache regions: one per entity in the Hibernate second-level cache, and the Spring caches.
+     */
+    public static class Cache {
+
+        private final Region movie = new Region(10_000, 3600);
+
+        private final Region movieMonthCounts = new Region(100, 3600);
+
+        private final Region role = new Region(1_000, 3600);
+
+        private final Region authority = new Region(100, 3600);
+
+        public Region getMovie() {
+            return movie;
+        }
+
+        public Region getMovieMonthCounts() {
+            return movieMonthCounts;
+        }
+
+        public Region getRole() {
+            return role;
+        }
+
+        public Region getAuthority() {
+            return authority;
+        }
+    }
+
+    public static class Region {
+
+        private long maxEntries;
+
+        private long timeToLiveSeconds;
+
+        public Region(long maxEntries, long timeToLiveSeconds) {
+            this.maxEntries = maxEntries;
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    /**
+     * Bulk movie import, see {@code POST /api/movies/import}.
+     */
+    public static class MovieImport {
+
+        /**
+         * Number of rows inserted per transaction.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Number of rejected rows reported in detail; further rejections are only counted.
+         */
+        private int maxReportedRejections = 100;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxReportedRejections() {
+            return maxReportedRejections;
+        }
+
+        public void setMaxReportedRejections(int maxReportedRejections) {
+            this.maxReportedRejections = maxReportedRejections;
+        }
+    }
+
+    /**
+     * Bloom filter of known {@code Movie.externalId}, used to skip the lookup when upserting a new movie.
+     */
+    public static class ExternalIdFilter {
+
+        /**
+         * Number of external ids the filter is sized for; past it, the false positive probability grows.
+         */
+        private long expectedInsertions = 5_000_000;
+
+        private double falsePositiveProbability = 0.01;
+
+        public long getExpectedInsertions() {
+            return expectedInsertions;
+        }
+
+        public void setExpectedInsertions(long expectedInsertions) {
+            this.expectedInsertions = expectedInsertions;
+        }
+
+        public double getFalsePositiveProbability() {
+            return falsePositiveProbability;
+        }
+
+        public void setFalsePositiveProbability(double falsePositiveProbability) {
+            this.falsePositiveProbability = falsePositiveProbability;
+        }
+    }
+
+    /**
+     * View counts of movies, see {@code GET /api/movies/top}.
+     */
+    public static class MovieStats {
+
+        /**
+         * Delay between two writes of the pending views to {@code movie_stats}.
+         */
+        private long flushIntervalMs = 5000;
+
+        /**
+         * Number of most viewed movies kept in memory, which bounds the limit of {@code GET /api/movies/top}.
+         */
+        private int topCapacity = 1000;
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getTopCapacity() {
+            return topCapacity;
+        }
+
+        public void setTopCapacity(int topCapacity) {
+            this.topCapacity = topCapacity;
+        }
+    }
+
+    /**
+     * Batched watch event ingestion, see {@code POST /api/seen-movies/batch}.
+     */
+    public static class SeenMovieIngestion {
+
+        /**
+         * Whether batches are queued and written in the background unless the client asks for a durable write.
+         */
+        private boolean writeBehind = true;
+
+        /**
+         * Number of queued watch events past which batches are refused with {@code 429 (Too Many Requests)}.
+         */
+        private int queueCapacity = 100_000;
+
+        /**
+         * Number of queued watch events written per transaction.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Delay between two writes of the queued watch events.
+         */
+        private long flushIntervalMs = 200;
+
+        public boolean isWriteBehind() {
+            return writeBehind;
+        }
+
+        public void setWriteBehind(boolean writeBehind) {
+            this.writeBehind = writeBehind;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+    }
+
+    /**
+     * Suppression of resent watch events, see {@link fr.epita.movies.service.SeenMovieDeduplicator}.
+     */
+    public static class SeenMovieDedupe {
+
+        /**
+         * Watch events of a user for a movie whose dates fall in the same slot of this length are the same event.
+         */
+        private Duration granularity = Duration.ofMinutes(1);
+
+        /**
+         * Number of recent watch events remembered in memory.
+         */
+        private int windowSize = 100_000;
+
+        /**
+         * Number of independently locked parts of the window.
+         */
+        private int stripes = 64;
+
+        public Duration getGranularity() {
+            return granularity;
+        }
+
+        public void setGranularity(Duration granularity) {
+            this.granularity = granularity;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+    }
+
+    /**
+     * Daily rollup of watch events, see {@link fr.epita.movies.service.SeenMovieRollupService}.
+     */
+    public static class SeenMovieRollup {
+
+        /**
+         * Delay between two incremental updates of the rollup.
+         */
+        private long updateIntervalMs = 60_000;
+
+        /**
+         * Whether to rebuild the whole rollup on the first update after startup. A backfill only reads
+         * {@code seen_movie}, so it drops the days of archived watch events from the rollup.
+         */
+        private boolean backfill = false;
+
+        /**
+         * Width of the range of movie ids rolled up per transaction by a backfill.
+         */
+        private long backfillSliceSize = 1000;
+
+        /**
+         * Number of slices of a backfill rolled up concurrently.
+         */
+        private int backfillParallelism = 4;
+
+        public long getUpdateIntervalMs() {
+            return updateIntervalMs;
+        }
+
+        public void setUpdateIntervalMs(long updateIntervalMs) {
+            this.updateIntervalMs = updateIntervalMs;
+        }
+
+        public boolean isBackfill() {
+            return backfill;
+        }
+
+        public void setBackfill(boolean backfill) {
+            this.backfill = backfill;
+        }
+
+        public long getBackfillSliceSize() {
+            return backfillSliceSize;
+        }
+
+        public void setBackfillSliceSize(long backfillSliceSize) {
+            this.backfillSliceSize = backfillSliceSize;
+        }
+
+        public int getBackfillParallelism() {
+            return backfillParallelism;
+        }
+
+        public void setBackfillParallelism(int backfillParallelism) {
+            this.backfillParallelism = backfillParallelism;
+        }
+    }
+
+    /**
+     * Archive of old watch events, see {@link fr.epita.movies.service.SeenMovieArchiveService}.
+     */
+    public static class SeenMovieArchive {
+
+        /**
+         * Whether watch events past the retention are archived on schedule.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the segment files, on local disk.
+         */
+        private String directory = "archive/seen-movie";
+
+        /**
+         * Age past which watch events are moved out of the database.
+         */
+        private Duration retention = Duration.ofDays(180);
+
+        /**
+         * Schedule of the archiving, as a cron expression.
+         */
+        private String cron = "0 0 3 * * *";
+
+        /**
+         * Number of watch events per segment file.
+         */
+        private int segmentSize = 100_000;
+
+        /**
+         * Number of watch events per compressed block of a segment file; the smallest unit a reader inflates.
+         */
+        private int blockSize = 4096;
+
+        /**
+         * Number of archived watch events deleted from the database per transaction.
+         */
+        private int deleteChunkSize = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        public void setBlockSize(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        public int getDeleteChunkSize() {
+            return deleteChunkSize;
+        }
+
+        public void setDeleteChunkSize(int deleteChunkSize) {
+            this.deleteChunkSize = deleteChunkSize;
+        }
+    }
+
+    /**
+     * Movies watched by the same users, see {@link fr.epita.movies.service.AlsoWatchedService}.
+     */
+    public static class AlsoWatched {
+
+        /**
+         * Number of co-watched movies counted per movie, which bounds the memory of the engine to about
+         * {@code 8 * maxNeighbors + 60} bytes per movie, and the limit of {@code GET /api/movies/{id}/also-watched}.
+         */
+        private int maxNeighbors = 32;
+
+        /**
+         * Number of most recent movies of a user that a new watch is counted with.
+         */
+        private int historySize = 50;
+
+        /**
+         * Number of users whose recent movies are kept in memory rather than read again from the database.
+         */
+        private int userCacheSize = 100_000;
+
+        /**
+         * Number of watch events waiting to be counted past which new ones are dropped.
+         */
+        private int queueCapacity = 100_000;
+
+        /**
+         * Delay between two countings of the waiting watch events.
+         */
+        private long applyIntervalMs = 1000;
+
+        /**
+         * File the engine is saved to, and loaded from at startup.
+         */
+        private String snapshotFile = "data/also-watched.snapshot";
+
+        /**
+         * Delay between two saves of the engine.
+         */
+        private long snapshotIntervalMs = 600_000;
+
+        /**
+         * Number of watch events read per query when catching up with the database at startup.
+         */
+        private int replayChunkSize = 10_000;
+
+        public int getMaxNeighbors() {
+            return maxNeighbors;
+        }
+
+        public void setMaxNeighbors(int maxNeighbors) {
+            this.maxNeighbors = maxNeighbors;
+        }
+
+        public int getHistorySize() {
+            return historySize;
+        }
+
+        public void setHistorySize(int historySize) {
+            this.historySize = historySize;
+        }
+
+        public int getUserCacheSize() {
+            return userCacheSize;
+        }
+
+        public void setUserCacheSize(int userCacheSize) {
+            this.userCacheSize = userCacheSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getApplyIntervalMs() {
+            return applyIntervalMs;
+        }
+
+        public void setApplyIntervalMs(long applyIntervalMs) {
+            this.applyIntervalMs = applyIntervalMs;
+        }
+
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+
+        public void setSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+
+        public long getSnapshotIntervalMs() {
+            return snapshotIntervalMs;
+        }
+
+        public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+            this.snapshotIntervalMs = snapshotIntervalMs;
+        }
+
+        public int getReplayChunkSize() {
+            return replayChunkSize;
+        }
+
+        public void setReplayChunkSize(int replayChunkSize) {
+            this.replayChunkSize = replayChunkSize;
+        }
+    }
+
+    /**
+     * Approximate distinct viewers of movies, see {@link fr.epita.movies.service.MovieReachService}.
+     */
+    public static class MovieReach {
+
+        /**
+         * Number of index bits of the sketches, between 4 and 16: a sketch has {@code 2^precision} registers and a
+         * standard error of about {@code 1.04 / sqrt(2^precision)}. Sketches of another precision are ignored, so
+         * changing it calls for a backfill.
+         */
+        private int precision = 12;
+
+        /**
+         * Delay between two writes of the pending sketches to {@code movie_reach}.
+         */
+        private long flushIntervalMs = 5000;
+
+        /**
+         * Whether to rebuild the sketches from {@code seen_movie} at startup, rolling the stored daily ones up into the
+         * monthly ones. They are also rebuilt when there is no monthly one.
+         */
+        private boolean backfill = false;
+
+        /**
+         * Number of watch events read per query by a backfill.
+         */
+        private int backfillChunkSize = 10_000;
+
+        public int getPrecision() {
+            return precision;
+        }
+
+        public void setPrecision(int precision) {
+            this.precision = precision;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public boolean isBackfill() {
+            return backfill;
+        }
+
+        public void setBackfill(boolean backfill) {
+            this.backfill = backfill;
+        }
+
+        public int getBackfillChunkSize() {
+            return backfillChunkSize;
+        }
+
+        public void setBackfillChunkSize(int backfillChunkSize) {
+            this.backfillChunkSize = backfillChunkSize;
+        }
+    }
+
+    /**
+     * Movies most watched lately, see {@link fr.epita.movies.service.TrendingService}.
+     */
+    public static class Trending {
+
+        /**
+         * Windows the watch events are counted over, each a value of the {@code window} parameter of
+         * {@code GET /api/movies/trending}.
+         */
+        private List<Duration> windows = Arrays.asList(Duration.ofHours(1), Duration.ofDays(1));
+
+        /**
+         * Number of buckets a window is split into: a window slides by a bucket at a time, and each watched movie takes
+         * {@code 8 * (buckets + 1)} bytes per window.
+         */
+        private int buckets = 12;
+
+        /**
+         * Number of trending movies kept per window, which bounds the limit of {@code GET /api/movies/trending}.
+         */
+        private int topCapacity = 100;
+
+        /**
+         * Delay between two recomputations of the trending movies, which should be well under the duration of a bucket.
+         */
+        private long recomputeIntervalMs = 5000;
+
+        /**
+         * Number of watch events read per query when counting the recent ones at startup.
+         */
+        private int replayChunkSize = 10_000;
+
+        public List<Duration> getWindows() {
+            return windows;
+        }
+
+        public void setWindows(List<Duration> windows) {
+            this.windows = windows;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        public void setBuckets(int buckets) {
+            this.buckets = buckets;
+        }
+
+        public int getTopCapacity() {
+            return topCapacity;
+        }
+
+        public void setTopCapacity(int topCapacity) {
+            this.topCapacity = topCapacity;
+        }
+
+        public long getRecomputeIntervalMs() {
+            return recomputeIntervalMs;
+        }
+
+        public void setRecomputeIntervalMs(long recomputeIntervalMs) {
+            this.recomputeIntervalMs = recomputeIntervalMs;
+        }
+
+        public int getReplayChunkSize() {
+            return replayChunkSize;
+        }
+
+        public void setReplayChunkSize(int replayChunkSize) {
+            this.replayChunkSize = replayChunkSize;
+        }
+    }
+
+    /**
+     * Movies seen by each user, see {@link fr.epita.movies.service.SeenMovieIndexService}.
+     */
+    public static class SeenMovieIndex {
+
+        /**
+         * Number of watch events read per query when building the index at startup.
+         */
+        private int loadChunkSize = 10_000;
+
+        /**
+         * Delay between two attempts at building the index after one failed.
+         */
+        private long warmUpRetryIntervalMs = 60_000;
+
+        public int getLoadChunkSize() {
+            return loadChunkSize;
+        }
+
+        public void setLoadChunkSize(int loadChunkSize) {
+            this.loadChunkSize = loadChunkSize;
+        }
+
+        public long getWarmUpRetryIntervalMs() {
+            return warmUpRetryIntervalMs;
+        }
+
+        public void setWarmUpRetryIntervalMs(long warmUpRetryIntervalMs) {
+            this.warmUpRetryIntervalMs = warmUpRetryIntervalMs;
+        }
+    }
+
+    /**
+     * Columnar export of the watch events, see {@link fr.epita.movies.service.util.SeenMovieColumnFile}.
+     */
+    public static class SeenMovieExport {
+
+        /**
+         * Number of watch events per row group; the memory used by an export grows with it.
+         */
+        private int rowGroupSize = 65_536;
+
+        public int getRowGroupSize() {
+            return rowGroupSize;
+        }
+
+        public void setRowGroupSize(int rowGroupSize) {
+            this.rowGroupSize = rowGroupSize;
+        }
+    }
+
+    /**
+     * Roles of each user, see {@link fr.epita.movies.service.RoleMembershipService}.
+     */
+    public static class RoleMembership {
+
+        /**
+         * Number of users whose roles are read per query when building the cache at startup.
+         */
+        private int loadChunkSize = 10_000;
+
+        /**
+         * Maximum number of users granted or revoked a role per transaction by a bulk update, bounding how long it
+         * holds its locks.
+         */
+        private int bulkChunkSize = 1000;
+
+        /**
+         * Delay between two attempts at building the cache after one failed.
+         */
+        private long warmUpRetryIntervalMs = 60_000;
+
+        public int getLoadChunkSize() {
+            return loadChunkSize;
+        }
+
+        public void setLoadChunkSize(int loadChunkSize) {
+            this.loadChunkSize = loadChunkSize;
+        }
+
+        public int getBulkChunkSize() {
+            return bulkChunkSize;
+        }
+
+        public void setBulkChunkSize(int bulkChunkSize) {
+            this.bulkChunkSize = bulkChunkSize;
+        }
+
+        public long getWarmUpRetryIntervalMs() {
+            return warmUpRetryIntervalMs;
+        }
+
+        public void setWarmUpRetryIntervalMs(long warmUpRetryIntervalMs) {
+            this.warmUpRetryIntervalMs = warmUpRetryIntervalMs;
+        }
+    }
+
+    /**
+     * Lookup keys of the contacts, see {@link fr.epita.movies.service.ContactService}.
+     */
+    public static class ContactLookup {
+
+        /**
+         * Number of contacts whose missing lookup keys are filled in per transaction at startup.
+         */
+        private int backfillChunkSize = 1000;
+
+        public int getBackfillChunkSize() {
+            return backfillChunkSize;
+        }
+
+        public void setBackfillChunkSize(int backfillChunkSize) {
+            this.backfillChunkSize = backfillChunkSize;
+        }
+    }
 }
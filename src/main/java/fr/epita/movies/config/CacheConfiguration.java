@@ -0,0 +1,68 @@
+package fr.epita.movies.config;
+
+import fr.epita.movies.service.MovieService;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.jcache.JCacheCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caffeine-backed JCache regions for the Hibernate second-level cache and the Spring caches.
+ * <p>
+ * Each region is bounded by {@link ApplicationProperties.Cache} and records statistics, which Spring Boot exports to
+ * Micrometer as {@code cache.gets}, {@code cache.puts} and {@code cache.evictions}.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    private final ApplicationProperties.Cache cache;
+
+    public CacheConfiguration(ApplicationProperties applicationProperties) {
+        this.cache = applicationProperties.getCache();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    /**
+     * Defers the puts and evictions of the Spring caches made in a transaction until it commits, so that a cache is
+     * neither filled with uncommitted data nor cleared before a write is visible to other transactions.
+     */
+    @Bean
+    public CacheManagerCustomizer<JCacheCacheManager> transactionAwareCacheManagerCustomizer() {
+        return cacheManager -> cacheManager.setTransactionAware(true);
+    }
+
+    @Bean
+    public JCacheManagerCustomizer cacheManagerCustomizer() {
+        return cm -> {
+            createCache(cm, fr.epita.movies.domain.Movie.class.getName(), cache.getMovie());
+            createCache(cm, MovieService.MONTH_COUNTS_CACHE, cache.getMovieMonthCounts());
+            createCache(cm, fr.epita.movies.domain.Role.class.getName(), cache.getRole());
+            createCache(cm, fr.epita.movies.domain.Authority.class.getName(), cache.getAuthority());
+        };
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String cacheName, ApplicationProperties.Region region) {
+        javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
+        if (cache == null) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(region.getMaxEntries()));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(region.getTimeToLiveSeconds())));
+            configuration.setStatisticsEnabled(true);
+            cm.createCache(cacheName, configuration);
+        }
+    }
+}
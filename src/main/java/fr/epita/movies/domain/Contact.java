@@ -1,5 +1,8 @@
 package fr.epita.movies.domain;
 
+import fr.epita.movies.util.TextUtils;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.persistence.*;
 
@@ -7,6 +10,7 @@ import java.io.Serializable;
 import java.util.Objects;
 import java.time.ZonedDateTime;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -35,6 +39,20 @@ public class Contact implements Serializable {
     @Column(name = "email")
     private String email;
 
+    /**
+     * The email as matched by exact lookups, see {@link #toEmailKey(String)}.
+     */
+    @JsonIgnore
+    @Column(name = "email_key")
+    private String emailKey;
+
+    /**
+     * The name as matched by prefix lookups, see {@link #toNameKey(String)}.
+     */
+    @JsonIgnore
+    @Column(name = "name_key")
+    private String nameKey;
+
     @OneToOne
     @JoinColumn(unique = true)
     private MovieUser movieUser;
@@ -140,6 +158,40 @@ public class Contact implements Serializable {
     public void setAddresses(Set<Address> addresses) {
         this.addresses = addresses;
     }
+
+    public String getEmailKey() {
+        return emailKey;
+    }
+
+    public String getNameKey() {
+        return nameKey;
+    }
+
+    /**
+     * Derives the lookup keys from the email and name, before the contact is written.
+     */
+    @PrePersist
+    @PreUpdate
+    public void updateLookupKeys() {
+        emailKey = toEmailKey(email);
+        nameKey = toNameKey(name);
+    }
+
+    /**
+     * @param email an email, or {@code null}.
+     * @return the email trimmed and lower-cased, or {@code null}.
+     */
+    public static String toEmailKey(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * @param name a name, or {@code null}.
+     * @return the name folded by {@link TextUtils#fold(String)}, or {@code null}.
+     */
+    public static String toNameKey(String name) {
+        return TextUtils.fold(name);
+    }
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here, do not remove
 
     @Override
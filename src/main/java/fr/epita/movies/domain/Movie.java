@@ -1,19 +1,21 @@
 package fr.epita.movies.domain;
 
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 import java.io.Serializable;
 import java.util.Objects;
 import java.time.ZonedDateTime;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * A Movie.
  */
 @Entity
 @Table(name = "movie")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Movie implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -29,12 +31,9 @@ public class Movie implements Serializable {
     @Column(name = "date")
     private ZonedDateTime date;
 
-    @Column(name = "external_id")
+    @Column(name = "external_id", unique = true)
     private String externalId;
 
-    @OneToMany(mappedBy = "movie")
-    private Set<SeenMovie> seenMovies = new HashSet<>();
-
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
     public Long getId() {
         return id;
@@ -83,30 +82,6 @@ public class Movie implements Serializable {
         this.externalId = externalId;
     }
 
-    public Set<SeenMovie> getSeenMovies() {
-        return seenMovies;
-    }
-
-    public Movie seenMovies(Set<SeenMovie> seenMovies) {
-        this.seenMovies = seenMovies;
-        return this;
-    }
-
-    public Movie addSeenMovie(SeenMovie seenMovie) {
-        this.seenMovies.add(seenMovie);
-        seenMovie.setMovie(this);
-        return this;
-    }
-
-    public Movie removeSeenMovie(SeenMovie seenMovie) {
-        this.seenMovies.remove(seenMovie);
-        seenMovie.setMovie(null);
-        return this;
-    }
-
-    public void setSeenMovies(Set<SeenMovie> seenMovies) {
-        this.seenMovies = seenMovies;
-    }
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here, do not remove
 
     @Override
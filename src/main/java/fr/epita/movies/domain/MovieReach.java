@@ -0,0 +1,67 @@
+package fr.epita.movies.domain;
+
+import javax.persistence.*;
+
+import java.io.Serializable;
+
+/**
+ * HyperLogLog sketch of the {@link MovieUser} who watched a {@link Movie} on a day, or over a month, maintained by
+ * {@link fr.epita.movies.service.MovieReachService}.
+ */
+@Entity
+@Table(name = "movie_reach")
+public class MovieReach implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @EmbeddedId
+    private MovieReachId id;
+
+    @Column(name = "sketch", nullable = false)
+    private byte[] sketch;
+
+    public MovieReach() {
+        // Empty constructor needed for Hibernate.
+    }
+
+    public MovieReach(MovieReachId id, byte[] sketch) {
+        this.id = id;
+        this.sketch = sketch;
+    }
+
+    public MovieReachId getId() {
+        return id;
+    }
+
+    public byte[] getSketch() {
+        return sketch;
+    }
+
+    public void setSketch(byte[] sketch) {
+        this.sketch = sketch;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MovieReach)) {
+            return false;
+        }
+        return id != null && id.equals(((MovieReach) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieReach{" +
+            "id=" + getId() +
+            ", sketch=" + (sketch == null ? 0 : sketch.length) + " bytes" +
+            "}";
+    }
+}
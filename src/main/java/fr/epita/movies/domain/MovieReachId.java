@@ -0,0 +1,87 @@
+package fr.epita.movies.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Identifier of a {@link MovieReach}: a movie and a day, in UTC, or a month, starting on that day.
+ */
+@Embeddable
+public class MovieReachId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "movie_id", nullable = false)
+    private Long movieId;
+
+    @Column(name = "monthly", nullable = false)
+    private boolean monthly;
+
+    @Column(name = "day", nullable = false)
+    private LocalDate day;
+
+    public MovieReachId() {
+        // Empty constructor needed for Hibernate.
+    }
+
+    public MovieReachId(Long movieId, LocalDate day) {
+        this(movieId, false, day);
+    }
+
+    public MovieReachId(Long movieId, boolean monthly, LocalDate day) {
+        this.movieId = movieId;
+        this.monthly = monthly;
+        this.day = day;
+    }
+
+    /**
+     * Gets the identifier of the month of a day.
+     *
+     * @return the identifier of the monthly sketch covering this day.
+     */
+    public MovieReachId toMonth() {
+        return new MovieReachId(movieId, true, day.withDayOfMonth(1));
+    }
+
+    public Long getMovieId() {
+        return movieId;
+    }
+
+    public boolean isMonthly() {
+        return monthly;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MovieReachId)) {
+            return false;
+        }
+        MovieReachId other = (MovieReachId) o;
+        return Objects.equals(movieId, other.movieId) && monthly == other.monthly && Objects.equals(day, other.day);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(movieId, monthly, day);
+    }
+
+    @Override
+    public String toString() {
+        return "MovieReachId{" +
+            "movieId=" + getMovieId() +
+            ", monthly='" + isMonthly() + "'" +
+            ", day='" + getDay() + "'" +
+            "}";
+    }
+}
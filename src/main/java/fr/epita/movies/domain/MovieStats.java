@@ -0,0 +1,74 @@
+package fr.epita.movies.domain;
+
+
+import javax.persistence.*;
+
+import java.io.Serializable;
+
+/**
+ * Aggregated statistics of a {@link Movie}, maintained incrementally by
+ * {@link fr.epita.movies.service.MovieStatsService} rather than computed from {@code seen_movie}.
+ */
+@Entity
+@Table(name = "movie_stats")
+public class MovieStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "movie_id")
+    private Long movieId;
+
+    @Column(name = "view_count", nullable = false)
+    private long viewCount;
+
+    public Long getMovieId() {
+        return movieId;
+    }
+
+    public MovieStats movieId(Long movieId) {
+        this.movieId = movieId;
+        return this;
+    }
+
+    public void setMovieId(Long movieId) {
+        this.movieId = movieId;
+    }
+
+    public long getViewCount() {
+        return viewCount;
+    }
+
+    public MovieStats viewCount(long viewCount) {
+        this.viewCount = viewCount;
+        return this;
+    }
+
+    public void setViewCount(long viewCount) {
+        this.viewCount = viewCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MovieStats)) {
+            return false;
+        }
+        return movieId != null && movieId.equals(((MovieStats) o).movieId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieStats{" +
+            "movieId=" + getMovieId() +
+            ", viewCount=" + getViewCount() +
+            "}";
+    }
+}
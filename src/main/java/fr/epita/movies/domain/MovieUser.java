@@ -26,9 +26,6 @@ public class MovieUser implements Serializable {
     @Column(name = "username")
     private String username;
 
-    @OneToMany(mappedBy = "movieUser")
-    private Set<SeenMovie> seenMovies = new HashSet<>();
-
     @ManyToMany
     @JoinTable(name = "movie_user_role",
                joinColumns = @JoinColumn(name = "movie_user_id", referencedColumnName = "id"),
@@ -61,31 +58,6 @@ public class MovieUser implements Serializable {
         this.username = username;
     }
 
-    public Set<SeenMovie> getSeenMovies() {
-        return seenMovies;
-    }
-
-    public MovieUser seenMovies(Set<SeenMovie> seenMovies) {
-        this.seenMovies = seenMovies;
-        return this;
-    }
-
-    public MovieUser addSeenMovie(SeenMovie seenMovie) {
-        this.seenMovies.add(seenMovie);
-        seenMovie.setMovieUser(this);
-        return this;
-    }
-
-    public MovieUser removeSeenMovie(SeenMovie seenMovie) {
-        this.seenMovies.remove(seenMovie);
-        seenMovie.setMovieUser(null);
-        return this;
-    }
-
-    public void setSeenMovies(Set<SeenMovie> seenMovies) {
-        this.seenMovies = seenMovies;
-    }
-
     public Set<Role> getRoles() {
         return roles;
     }
@@ -2,6 +2,9 @@ package fr.epita.movies.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 import java.io.Serializable;
@@ -14,6 +17,7 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "role")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Role implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -1,6 +1,6 @@
 package fr.epita.movies.domain;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.persistence.*;
 
@@ -25,12 +25,17 @@ public class SeenMovie implements Serializable {
     @Column(name = "date")
     private ZonedDateTime date;
 
+    /**
+     * The date truncated to the dedupe granularity, unique per movie and user.
+     */
+    @JsonIgnore
+    @Column(name = "date_bucket")
+    private ZonedDateTime dateBucket;
+
     @ManyToOne
-    @JsonIgnoreProperties("seenMovies")
     private Movie movie;
 
     @ManyToOne
-    @JsonIgnoreProperties("seenMovies")
     private MovieUser movieUser;
 
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
@@ -55,6 +60,14 @@ public class SeenMovie implements Serializable {
         this.date = date;
     }
 
+    public ZonedDateTime getDateBucket() {
+        return dateBucket;
+    }
+
+    public void setDateBucket(ZonedDateTime dateBucket) {
+        this.dateBucket = dateBucket;
+    }
+
     public Movie getMovie() {
         return movie;
     }
@@ -0,0 +1,66 @@
+package fr.epita.movies.domain;
+
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+
+import java.io.Serializable;
+
+/**
+ * Daily rollup of the {@link SeenMovie} of a {@link Movie}, maintained by
+ * {@link fr.epita.movies.service.SeenMovieRollupService} with set-based statements rather than through this entity,
+ * which is read-only.
+ */
+@Entity
+@Immutable
+@Table(name = "seen_movie_daily")
+public class SeenMovieDaily implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @EmbeddedId
+    private SeenMovieDailyId id;
+
+    @Column(name = "views", nullable = false)
+    private long views;
+
+    @Column(name = "distinct_users", nullable = false)
+    private long distinctUsers;
+
+    public SeenMovieDailyId getId() {
+        return id;
+    }
+
+    public long getViews() {
+        return views;
+    }
+
+    public long getDistinctUsers() {
+        return distinctUsers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeenMovieDaily)) {
+            return false;
+        }
+        return id != null && id.equals(((SeenMovieDaily) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "SeenMovieDaily{" +
+            "id=" + getId() +
+            ", views=" + getViews() +
+            ", distinctUsers=" + getDistinctUsers() +
+            "}";
+    }
+}
@@ -0,0 +1,65 @@
+package fr.epita.movies.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Identifier of a {@link SeenMovieDaily}: a movie and a day, in UTC.
+ */
+@Embeddable
+public class SeenMovieDailyId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "movie_id", nullable = false)
+    private Long movieId;
+
+    @Column(name = "day", nullable = false)
+    private LocalDate day;
+
+    public SeenMovieDailyId() {
+        // Empty constructor needed for Hibernate.
+    }
+
+    public SeenMovieDailyId(Long movieId, LocalDate day) {
+        this.movieId = movieId;
+        this.day = day;
+    }
+
+    public Long getMovieId() {
+        return movieId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeenMovieDailyId)) {
+            return false;
+        }
+        SeenMovieDailyId other = (SeenMovieDailyId) o;
+        return Objects.equals(movieId, other.movieId) && Objects.equals(day, other.day);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(movieId, day);
+    }
+
+    @Override
+    public String toString() {
+        return "SeenMovieDailyId{" +
+            "movieId=" + getMovieId() +
+            ", day='" + getDay() + "'" +
+            "}";
+    }
+}
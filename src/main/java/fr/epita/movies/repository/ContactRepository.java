@@ -1,14 +1,53 @@
 package fr.epita.movies.repository;
 
 import fr.epita.movies.domain.Contact;
+import fr.epita.movies.service.dto.ContactDTO;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * Spring Data  repository for the Contact entity.
+ * <p>
+ * Lookups match {@link Contact#getEmailKey()} and {@link Contact#getNameKey()}, which are indexed, and select
+ * {@link ContactDTO} so that the movieUser of each contact is not loaded.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface ContactRepository extends JpaRepository<Contact, Long> {
+
+    String SELECT_DTO = "select new fr.epita.movies.service.dto.ContactDTO(contact.id, contact.name, contact.birthDate," +
+        " contact.gender, contact.email, movieUser.id) from Contact contact left join contact.movieUser movieUser";
+
+    @Query(SELECT_DTO + " where contact.emailKey = :emailKey order by contact.id")
+    List<ContactDTO> findDTOsByEmailKey(@Param("emailKey") String emailKey);
+
+    /**
+     * Gets the contacts whose name key is in {@code [from, to]} and follows ({@code after}, {@code id}), in (name key, id)
+     * order, so that each page is an index range scan starting where the previous one ended.
+     */
+    @Query(SELECT_DTO + " where contact.nameKey between :from and :to" +
+        " and (contact.nameKey > :after or (contact.nameKey = :after and contact.id > :id)) order by contact.nameKey, contact.id")
+    List<ContactDTO> findDTOsByNameKeyBetweenAfter(@Param("from") String from, @Param("after") String after, @Param("id") Long id,
+                                                   @Param("to") String to, Pageable pageable);
+
+    /**
+     * Gets the (id, email, name) of the contacts following the given id whose lookup keys were never derived.
+     */
+    @Query("select contact.id, contact.email, contact.name from Contact contact where contact.id > :id" +
+        " and contact.emailKey is null and contact.nameKey is null and (contact.email is not null or contact.name is not null)" +
+        " order by contact.id")
+    List<Object[]> findSourcesWithoutLookupKeysByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Sets the lookup keys of a contact, unless they were derived meanwhile.
+     */
+    @Modifying
+    @Query("update Contact contact set contact.emailKey = :emailKey, contact.nameKey = :nameKey" +
+        " where contact.id = :id and contact.emailKey is null and contact.nameKey is null")
+    int updateLookupKeys(@Param("id") Long id, @Param("emailKey") String emailKey, @Param("nameKey") String nameKey);
 }
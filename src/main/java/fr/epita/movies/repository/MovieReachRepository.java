@@ -0,0 +1,36 @@
+package fr.epita.movies.repository;
+
+import fr.epita.movies.domain.MovieReach;
+import fr.epita.movies.domain.MovieReachId;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Spring Data  repository for the MovieReach entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface MovieReachRepository extends JpaRepository<MovieReach, MovieReachId> {
+
+    @Query("select reach.sketch from MovieReach reach where reach.id.movieId = :movieId" +
+        " and reach.id.monthly = :monthly and reach.id.day >= :from and reach.id.day < :to")
+    List<byte[]> findSketchesByMovieIdAndDayBetween(@Param("movieId") Long movieId, @Param("monthly") boolean monthly,
+                                                    @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    Optional<MovieReach> findFirstByIdMonthlyTrue();
+
+    Page<MovieReach> findAllByIdMonthlyFalse(Pageable pageable);
+
+    @Query("select movie.id from Movie movie where movie.id in :movieIds")
+    Set<Long> findExistingMovieIds(@Param("movieIds") Collection<Long> movieIds);
+}
@@ -1,14 +1,71 @@
 package fr.epita.movies.repository;
 
 import fr.epita.movies.domain.Movie;
+import fr.epita.movies.service.dto.MovieDTO;
+import fr.epita.movies.service.dto.MovieMonthCountDTO;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 /**
  * Spring Data  repository for the Movie entity.
+ * <p>
+ * The {@code *DTO*} queries select the scalar columns of a movie straight into a {@link MovieDTO}, without loading the
+ * entity or any of its associations.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface MovieRepository extends JpaRepository<Movie, Long> {
+
+    /**
+     * Number of rows fetched per round-trip when streaming movies off a server-side cursor.
+     */
+    String STREAM_FETCH_SIZE = "500";
+
+    String SELECT_DTO = "select new fr.epita.movies.service.dto.MovieDTO(movie.id, movie.title, movie.date, movie.externalId) from Movie movie";
+
+    Optional<Movie> findOneByExternalId(String externalId);
+
+    @Query(SELECT_DTO + " where movie.id = :id")
+    Optional<MovieDTO> findDTOById(@Param("id") Long id);
+
+    @Query(SELECT_DTO + " where movie.id in :ids")
+    List<MovieDTO> findDTOsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_DTO + " where movie.externalId = :externalId")
+    Optional<MovieDTO> findDTOByExternalId(@Param("externalId") String externalId);
+
+    @Query(SELECT_DTO + " where movie.id > :id order by movie.id")
+    List<MovieDTO> findDTOsByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    @Query(SELECT_DTO + " where movie.date >= :from and movie.date < :to order by movie.date, movie.id")
+    List<MovieDTO> findDTOsByDateBetween(@Param("from") ZonedDateTime from, @Param("to") ZonedDateTime to, Pageable pageable);
+
+    /**
+     * Gets the movies following the one with the given date and id in (date, id) order, dated before {@code to}.
+     */
+    @Query(SELECT_DTO + " where movie.date < :to and (movie.date > :from or (movie.date = :from and movie.id > :id))" +
+        " order by movie.date, movie.id")
+    List<MovieDTO> findDTOsByDateBetweenAfter(@Param("from") ZonedDateTime from, @Param("id") Long id,
+                                             @Param("to") ZonedDateTime to, Pageable pageable);
+
+    @Query("select new fr.epita.movies.service.dto.MovieMonthCountDTO(year(movie.date), month(movie.date), count(movie))" +
+        " from Movie movie where movie.date >= :from and movie.date < :to" +
+        " group by year(movie.date), month(movie.date) order by year(movie.date), month(movie.date)")
+    List<MovieMonthCountDTO> countByMonthBetween(@Param("from") ZonedDateTime from, @Param("to") ZonedDateTime to);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_DTO + " order by movie.id")
+    Stream<MovieDTO> streamAllDTOs();
 }
@@ -0,0 +1,37 @@
+package fr.epita.movies.repository;
+
+import fr.epita.movies.domain.MovieStats;
+import fr.epita.movies.service.dto.MovieViewCountDTO;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the MovieStats entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface MovieStatsRepository extends JpaRepository<MovieStats, Long> {
+
+    String SELECT_VIEW_COUNT_DTO = "select new fr.epita.movies.service.dto.MovieViewCountDTO(stats.movieId, stats.viewCount) from MovieStats stats";
+
+    /**
+     * Adds to the view count of a movie in a single statement, without reading it first.
+     *
+     * @return the number of updated rows: {@code 0} if the movie has no statistics yet.
+     */
+    @Modifying
+    @Query("update MovieStats stats set stats.viewCount = stats.viewCount + :delta where stats.movieId = :movieId")
+    int addViewCount(@Param("movieId") Long movieId, @Param("delta") long delta);
+
+    @Query(SELECT_VIEW_COUNT_DTO + " where stats.movieId in :movieIds")
+    List<MovieViewCountDTO> findViewCountsByMovieIdIn(@Param("movieIds") Collection<Long> movieIds);
+
+    @Query(SELECT_VIEW_COUNT_DTO + " where stats.viewCount > 0 order by stats.viewCount desc, stats.movieId")
+    List<MovieViewCountDTO> findTopViewCounts(Pageable pageable);
+}
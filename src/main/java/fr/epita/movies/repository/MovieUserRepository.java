@@ -1,6 +1,7 @@
 package fr.epita.movies.repository;
 
 import fr.epita.movies.domain.MovieUser;
+import fr.epita.movies.service.dto.MovieUserDTO;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,22 +9,74 @@ import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
 
 /**
  * Spring Data  repository for the MovieUser entity.
+ * <p>
+ * Loading a {@link MovieUser} also loads its contact, the inverse side of a one-to-one, with one query per user: the
+ * queries over many users therefore select {@link MovieUserDTO} instead, or fetch the contact along.
  */
 @Repository
-public interface MovieUserRepository extends JpaRepository<MovieUser, Long> {
+public interface MovieUserRepository extends JpaRepository<MovieUser, Long>, MovieUserRepositoryCustom {
+
+    /**
+     * Number of rows fetched per round-trip when streaming movieUsers off a server-side cursor.
+     */
+    String STREAM_FETCH_SIZE = "1000";
+
+    String SELECT_DTO = "select new fr.epita.movies.service.dto.MovieUserDTO(movieUser.id, movieUser.username) from MovieUser movieUser";
 
-    @Query(value = "select distinct movieUser from MovieUser movieUser left join fetch movieUser.roles",
-        countQuery = "select count(distinct movieUser) from MovieUser movieUser")
-    Page<MovieUser> findAllWithEagerRelationships(Pageable pageable);
+    String WHERE_CONTACT_IS_NULL = " where not exists (select contact.id from Contact contact where contact.movieUser = movieUser)";
 
-    @Query("select distinct movieUser from MovieUser movieUser left join fetch movieUser.roles")
-    List<MovieUser> findAllWithEagerRelationships();
+    @Query(value = "select movieUser.id from MovieUser movieUser",
+        countQuery = "select count(movieUser) from MovieUser movieUser")
+    Page<Long> findAllIds(Pageable pageable);
+
+    @Query("select movieUser.id from MovieUser movieUser where movieUser.id > :id order by movieUser.id")
+    List<Long> findIdsByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Gets the movieUsers with the given ids along with their roles and contact, in a single query.
+     */
+    @QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    @Query("select distinct movieUser from MovieUser movieUser left join fetch movieUser.roles left join fetch movieUser.contact" +
+        " where movieUser.id in :ids")
+    List<MovieUser> findAllWithEagerRelationshipsByIdIn(@Param("ids") Collection<Long> ids);
 
     @Query("select movieUser from MovieUser movieUser left join fetch movieUser.roles where movieUser.id =:id")
     Optional<MovieUser> findOneWithEagerRelationships(@Param("id") Long id);
+
+    @Query(value = SELECT_DTO + WHERE_CONTACT_IS_NULL,
+        countQuery = "select count(movieUser) from MovieUser movieUser" + WHERE_CONTACT_IS_NULL)
+    Page<MovieUserDTO> findDTOsByContactIsNull(Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_DTO + WHERE_CONTACT_IS_NULL + " order by movieUser.id")
+    Stream<MovieUserDTO> streamDTOsByContactIsNull();
+
+    @Query("select role.id from MovieUser movieUser join movieUser.roles role where movieUser.id = :id")
+    List<Long> findRoleIdsById(@Param("id") Long id);
+
+    @Query("select movieUser.id from MovieUser movieUser join movieUser.roles role where role.id = :roleId")
+    List<Long> findIdsByRoleId(@Param("roleId") Long roleId);
+
+    @Query("select movieUser.id from MovieUser movieUser join movieUser.roles role" +
+        " where role.id = :roleId and movieUser.id > :id order by movieUser.id")
+    List<Long> findIdsByRoleIdAndIdGreaterThan(@Param("roleId") Long roleId, @Param("id") Long id, Pageable pageable);
+
+    boolean existsByIdAndRolesIdIn(Long id, Collection<Long> roleIds);
+
+    /**
+     * Gets the (movieUser id, role id) pairs of the given movieUsers.
+     */
+    @Query("select movieUser.id, role.id from MovieUser movieUser join movieUser.roles role where movieUser.id in :ids")
+    List<Object[]> findRoleIdPairsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,32 @@
+package fr.epita.movies.repository;
+
+import java.util.Collection;
+
+/**
+ * Native statements granting and revoking a role to many movieUsers at once, implemented in
+ * {@link MovieUserRepositoryCustomImpl} so that they only evict the cache regions of {@code movie_user_role}.
+ */
+public interface MovieUserRepositoryCustom {
+
+    /**
+     * Grants a role to the given movieUsers, skipping those who already have it.
+     *
+     * @return the number of granted movieUsers.
+     */
+    int insertRoleByIdIn(Long roleId, Collection<Long> ids);
+
+    /**
+     * Grants a role to the movieUsers without a contact with an id in {@code (fromId, toId]}, skipping those who
+     * already have it.
+     *
+     * @return the number of granted movieUsers.
+     */
+    int insertRoleByIdBetweenAndContactIsNull(Long roleId, Long fromId, Long toId);
+
+    int deleteRoleByIdIn(Long roleId, Collection<Long> ids);
+
+    /**
+     * Revokes a role from the movieUsers without a contact with an id in {@code (fromId, toId]}.
+     */
+    int deleteRoleByIdBetweenAndContactIsNull(Long roleId, Long fromId, Long toId);
+}
@@ -0,0 +1,65 @@
+package fr.epita.movies.repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+
+/**
+ * Implementation of {@link MovieUserRepositoryCustom}.
+ */
+public class MovieUserRepositoryCustomImpl implements MovieUserRepositoryCustom {
+
+    private static final String MOVIE_USER_ROLE = "movie_user_role";
+
+    /**
+     * Prefix granting role {@code :roleId} to the movieUsers selected by the clauses appended to it, skipping those who
+     * already have it.
+     */
+    private static final String INSERT_ROLE = "insert into movie_user_role (movie_user_id, role_id) select movie_user.id, :roleId" +
+        " from movie_user where not exists (select 1 from movie_user_role granted" +
+        " where granted.movie_user_id = movie_user.id and granted.role_id = :roleId)";
+
+    private static final String AND_CONTACT_IS_NULL = " and not exists (select 1 from contact where contact.movie_user_id = movie_user.id)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int insertRoleByIdIn(Long roleId, Collection<Long> ids) {
+        return NativeStatements.create(entityManager, INSERT_ROLE + " and movie_user.id in (:ids)", MOVIE_USER_ROLE)
+            .setParameter("roleId", roleId)
+            .setParameterList("ids", ids)
+            .executeUpdate();
+    }
+
+    @Override
+    public int insertRoleByIdBetweenAndContactIsNull(Long roleId, Long fromId, Long toId) {
+        return NativeStatements.create(entityManager,
+            INSERT_ROLE + " and movie_user.id > :fromId and movie_user.id <= :toId" + AND_CONTACT_IS_NULL, MOVIE_USER_ROLE)
+            .setParameter("roleId", roleId)
+            .setParameter("fromId", fromId)
+            .setParameter("toId", toId)
+            .executeUpdate();
+    }
+
+    @Override
+    public int deleteRoleByIdIn(Long roleId, Collection<Long> ids) {
+        return NativeStatements.create(entityManager,
+            "delete from movie_user_role where role_id = :roleId and movie_user_id in (:ids)", MOVIE_USER_ROLE)
+            .setParameter("roleId", roleId)
+            .setParameterList("ids", ids)
+            .executeUpdate();
+    }
+
+    @Override
+    public int deleteRoleByIdBetweenAndContactIsNull(Long roleId, Long fromId, Long toId) {
+        return NativeStatements.create(entityManager,
+            "delete from movie_user_role where role_id = :roleId and movie_user_id > :fromId and movie_user_id <= :toId" +
+                " and not exists (select 1 from contact where contact.movie_user_id = movie_user_role.movie_user_id)",
+            MOVIE_USER_ROLE)
+            .setParameter("roleId", roleId)
+            .setParameter("fromId", fromId)
+            .setParameter("toId", toId)
+            .executeUpdate();
+    }
+}
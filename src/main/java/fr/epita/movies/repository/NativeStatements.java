@@ -0,0 +1,46 @@
+package fr.epita.movies.repository;
+
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Utility class for the native statements of the repository fragments.
+ * <p>
+ * Hibernate cannot tell which tables a native statement writes, so by default it evicts every second-level cache
+ * region after running one. The statements created here declare the tables they write instead, so that only the
+ * regions mapped onto those tables are evicted.
+ */
+final class NativeStatements {
+
+    private NativeStatements() {
+    }
+
+    /**
+     * Creates a native statement writing the table of an entity.
+     *
+     * @param entityManager the entity manager of the current transaction.
+     * @param sql the statement.
+     * @param entityClass the entity whose table the statement writes.
+     * @return the statement, ready to be bound and executed.
+     */
+    static NativeQuery<?> create(EntityManager entityManager, String sql, Class<?> entityClass) {
+        return unwrap(entityManager, sql).addSynchronizedEntityClass(entityClass);
+    }
+
+    /**
+     * Creates a native statement writing a table that is not the table of an entity, such as a join table.
+     *
+     * @param entityManager the entity manager of the current transaction.
+     * @param sql the statement.
+     * @param table the table the statement writes.
+     * @return the statement, ready to be bound and executed.
+     */
+    static NativeQuery<?> create(EntityManager entityManager, String sql, String table) {
+        return unwrap(entityManager, sql).addSynchronizedQuerySpace(table);
+    }
+
+    private static NativeQuery<?> unwrap(EntityManager entityManager, String sql) {
+        return entityManager.createNativeQuery(sql).unwrap(NativeQuery.class);
+    }
+}
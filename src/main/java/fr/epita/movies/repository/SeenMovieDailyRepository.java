@@ -0,0 +1,51 @@
+package fr.epita.movies.repository;
+
+import fr.epita.movies.domain.SeenMovieDaily;
+import fr.epita.movies.domain.SeenMovieDailyId;
+import fr.epita.movies.service.dto.SeenMovieDailyDTO;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data  repository for the SeenMovieDaily entity.
+ * <p>
+ * The rollup is written by the set-based native statements of {@link SeenMovieDailyRepositoryCustom}, which
+ * aggregate {@code seen_movie} in the database: the watch events themselves never reach the application. Days are UTC,
+ * as dates are stored in UTC.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface SeenMovieDailyRepository extends JpaRepository<SeenMovieDaily, SeenMovieDailyId>,
+    SeenMovieDailyRepositoryCustom {
+
+    @Query("select new fr.epita.movies.service.dto.SeenMovieDailyDTO(daily.id.day, daily.views, daily.distinctUsers)" +
+        " from SeenMovieDaily daily where daily.id.movieId = :movieId and daily.id.day >= :from and daily.id.day < :to" +
+        " order by daily.id.day")
+    List<SeenMovieDailyDTO> findDTOsByMovieIdAndDayBetween(@Param("movieId") Long movieId, @Param("from") LocalDate from,
+                                                          @Param("to") LocalDate to);
+
+    /**
+     * Gets the (movie id, day) pairs of the dated watch events with an id in {@code (fromId, toId]}.
+     */
+    @Query(value = "select distinct movie_id, cast(date as date) from seen_movie" +
+        " where id > :fromId and id <= :toId and movie_id is not null and date is not null", nativeQuery = true)
+    List<Object[]> findMovieDaysByIdBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query(value = "select max(id) from seen_movie", nativeQuery = true)
+    Optional<Long> findMaxSeenMovieId();
+
+    /**
+     * Gets the smallest and largest movie id of the watch events, as a single row.
+     */
+    @Query(value = "select min(movie_id), max(movie_id) from seen_movie", nativeQuery = true)
+    List<Object[]> findSeenMovieIdRange();
+
+    @Query(value = "select high_water_mark from rollup_state where name = :name", nativeQuery = true)
+    Optional<Long> findHighWaterMark(@Param("name") String name);
+}
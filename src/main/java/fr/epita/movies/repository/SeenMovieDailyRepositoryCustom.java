@@ -0,0 +1,37 @@
+package fr.epita.movies.repository;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * Native statements writing the rollup of {@link fr.epita.movies.domain.SeenMovieDaily}, implemented in
+ * {@link SeenMovieDailyRepositoryCustomImpl} so that they only evict the cache regions of the tables they write.
+ */
+public interface SeenMovieDailyRepositoryCustom {
+
+    int deleteByMovieIdAndDay(Long movieId, LocalDate day);
+
+    /**
+     * Computes the rollup of a movie for the watch events dated in {@code [from, to)}, which must be one UTC day.
+     */
+    int insertByMovieIdAndDateBetween(Long movieId, ZonedDateTime from, ZonedDateTime to);
+
+    int deleteByMovieIdBetweenAndDayGreaterThanEqual(long fromMovieId, long toMovieId, LocalDate fromDay);
+
+    int deleteByMovieIdNotBetweenAndDayGreaterThanEqual(long fromMovieId, long toMovieId, LocalDate fromDay);
+
+    /**
+     * Computes the rollup of every movie with an id in {@code [fromMovieId, toMovieId)}, for the watch events dated
+     * from {@code from}.
+     */
+    int insertByMovieIdBetweenAndDateGreaterThanEqual(long fromMovieId, long toMovieId, ZonedDateTime from);
+
+    /**
+     * Moves the high-water mark of a rollup.
+     *
+     * @return the number of updated rows: {@code 0} if the rollup has no high-water mark yet.
+     */
+    int updateHighWaterMark(String name, long mark);
+
+    int insertHighWaterMark(String name, long mark);
+}
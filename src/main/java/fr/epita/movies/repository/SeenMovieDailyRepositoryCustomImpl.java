@@ -0,0 +1,98 @@
+package fr.epita.movies.repository;
+
+import fr.epita.movies.domain.SeenMovieDaily;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * Implementation of {@link SeenMovieDailyRepositoryCustom}.
+ * <p>
+ * The rollup is written by set-based statements, which aggregate {@code seen_movie} in the database: the watch events
+ * themselves never reach the application. Days are UTC, as dates are stored in UTC.
+ */
+public class SeenMovieDailyRepositoryCustomImpl implements SeenMovieDailyRepositoryCustom {
+
+    private static final String INSERT_ROLLUP = "insert into seen_movie_daily (movie_id, day, views, distinct_users)" +
+        " select movie_id, cast(date as date), count(*), count(distinct movie_user_id) from seen_movie";
+
+    private static final String GROUP_BY_MOVIE_AND_DAY = " group by movie_id, cast(date as date)";
+
+    private static final String ROLLUP_STATE = "rollup_state";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int deleteByMovieIdAndDay(Long movieId, LocalDate day) {
+        return NativeStatements.create(entityManager, "delete from seen_movie_daily where movie_id = :movieId and day = :day",
+            SeenMovieDaily.class)
+            .setParameter("movieId", movieId)
+            .setParameter("day", day)
+            .executeUpdate();
+    }
+
+    @Override
+    public int insertByMovieIdAndDateBetween(Long movieId, ZonedDateTime from, ZonedDateTime to) {
+        return NativeStatements.create(entityManager,
+            INSERT_ROLLUP + " where movie_id = :movieId and date >= :from and date < :to" + GROUP_BY_MOVIE_AND_DAY,
+            SeenMovieDaily.class)
+            .setParameter("movieId", movieId)
+            .setParameter("from", from)
+            .setParameter("to", to)
+            .executeUpdate();
+    }
+
+    @Override
+    public int deleteByMovieIdBetweenAndDayGreaterThanEqual(long fromMovieId, long toMovieId, LocalDate fromDay) {
+        return NativeStatements.create(entityManager,
+            "delete from seen_movie_daily where movie_id >= :fromMovieId and movie_id < :toMovieId and day >= :fromDay",
+            SeenMovieDaily.class)
+            .setParameter("fromMovieId", fromMovieId)
+            .setParameter("toMovieId", toMovieId)
+            .setParameter("fromDay", fromDay)
+            .executeUpdate();
+    }
+
+    @Override
+    public int deleteByMovieIdNotBetweenAndDayGreaterThanEqual(long fromMovieId, long toMovieId, LocalDate fromDay) {
+        return NativeStatements.create(entityManager,
+            "delete from seen_movie_daily where (movie_id < :fromMovieId or movie_id >= :toMovieId) and day >= :fromDay",
+            SeenMovieDaily.class)
+            .setParameter("fromMovieId", fromMovieId)
+            .setParameter("toMovieId", toMovieId)
+            .setParameter("fromDay", fromDay)
+            .executeUpdate();
+    }
+
+    @Override
+    public int insertByMovieIdBetweenAndDateGreaterThanEqual(long fromMovieId, long toMovieId, ZonedDateTime from) {
+        return NativeStatements.create(entityManager,
+            INSERT_ROLLUP + " where movie_id >= :fromMovieId and movie_id < :toMovieId and date >= :from" +
+                GROUP_BY_MOVIE_AND_DAY, SeenMovieDaily.class)
+            .setParameter("fromMovieId", fromMovieId)
+            .setParameter("toMovieId", toMovieId)
+            .setParameter("from", from)
+            .executeUpdate();
+    }
+
+    @Override
+    public int updateHighWaterMark(String name, long mark) {
+        return NativeStatements.create(entityManager, "update rollup_state set high_water_mark = :mark where name = :name",
+            ROLLUP_STATE)
+            .setParameter("name", name)
+            .setParameter("mark", mark)
+            .executeUpdate();
+    }
+
+    @Override
+    public int insertHighWaterMark(String name, long mark) {
+        return NativeStatements.create(entityManager, "insert into rollup_state (name, high_water_mark) values (:name, :mark)",
+            ROLLUP_STATE)
+            .setParameter("name", name)
+            .setParameter("mark", mark)
+            .executeUpdate();
+    }
+}
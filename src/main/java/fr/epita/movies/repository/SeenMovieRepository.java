@@ -1,14 +1,129 @@
 package fr.epita.movies.repository;
 
 import fr.epita.movies.domain.SeenMovie;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.dto.SeenMovieHistoryDTO;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 /**
  * Spring Data  repository for the SeenMovie entity.
+ * <p>
+ * The watch history of a movie or a user is only reachable page by page through these queries: neither
+ * {@link fr.epita.movies.domain.Movie} nor {@link fr.epita.movies.domain.MovieUser} maps it as a collection.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface SeenMovieRepository extends JpaRepository<SeenMovie, Long> {
+
+    /**
+     * Number of rows fetched per round-trip when streaming watch events off a server-side cursor; a row is four numbers.
+     */
+    String STREAM_FETCH_SIZE = "5000";
+
+    String SELECT_DTO = "select new fr.epita.movies.service.dto.SeenMovieDTO(seenMovie.id, seenMovie.date, seenMovie.movie.id, seenMovie.movieUser.id) from SeenMovie seenMovie";
+
+    String SELECT_HISTORY_DTO = "select new fr.epita.movies.service.dto.SeenMovieHistoryDTO(seenMovie.id, seenMovie.date, movie.id, movie.title)" +
+        " from SeenMovie seenMovie left join seenMovie.movie movie";
+
+    @Query(SELECT_HISTORY_DTO + " where seenMovie.movieUser.id = :movieUserId and seenMovie.date is not null" +
+        " order by seenMovie.date desc, seenMovie.id desc")
+    List<SeenMovieHistoryDTO> findHistoryByMovieUserId(@Param("movieUserId") Long movieUserId, Pageable pageable);
+
+    /**
+     * Gets the watch history of a user following the entry with the given date and id, in (date, id) descending order.
+     */
+    @Query(SELECT_HISTORY_DTO + " where seenMovie.movieUser.id = :movieUserId" +
+        " and (seenMovie.date < :date or (seenMovie.date = :date and seenMovie.id < :id))" +
+        " order by seenMovie.date desc, seenMovie.id desc")
+    List<SeenMovieHistoryDTO> findHistoryByMovieUserIdBefore(@Param("movieUserId") Long movieUserId, @Param("date") ZonedDateTime date,
+                                                             @Param("id") Long id, Pageable pageable);
+
+    @Query("select max(seenMovie.id) from SeenMovie seenMovie")
+    Optional<Long> findMaxId();
+
+    @Query(SELECT_DTO + " where seenMovie.id > :id order by seenMovie.id")
+    List<SeenMovieDTO> findDTOsByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Gets the watch events preceding the given id, most recent id first.
+     */
+    @Query(SELECT_DTO + " where seenMovie.id < :id order by seenMovie.id desc")
+    List<SeenMovieDTO> findDTOsByIdLessThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Gets the movies watched by a user before the watch event with the given date and id, most recent first.
+     */
+    @Query("select seenMovie.movie.id from SeenMovie seenMovie where seenMovie.movieUser.id = :movieUserId" +
+        " and (seenMovie.date < :date or (seenMovie.date = :date and seenMovie.id < :id)) and seenMovie.movie.id is not null" +
+        " order by seenMovie.date desc, seenMovie.id desc")
+    List<Long> findMovieIdsByMovieUserIdBefore(@Param("movieUserId") Long movieUserId, @Param("date") ZonedDateTime date,
+                                               @Param("id") Long id, Pageable pageable);
+
+    @Query(SELECT_DTO + " where seenMovie.date < :date and seenMovie.id > :id order by seenMovie.id")
+    List<SeenMovieDTO> findDTOsByDateBeforeAndIdGreaterThan(@Param("date") ZonedDateTime date, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Gets the watch events of a movie dated before {@code to}, following the one with the given date and id in
+     * (date, id) order.
+     */
+    @Query(SELECT_DTO + " where seenMovie.movie.id = :movieId and seenMovie.date < :to" +
+        " and (seenMovie.date > :from or (seenMovie.date = :from and seenMovie.id > :id)) order by seenMovie.date, seenMovie.id")
+    List<SeenMovieDTO> findDTOsByMovieIdAndDateBetweenAfter(@Param("movieId") Long movieId, @Param("from") ZonedDateTime from,
+                                                           @Param("id") Long id, @Param("to") ZonedDateTime to, Pageable pageable);
+
+    /**
+     * Gets the watch events of a user dated before {@code to}, following the one with the given date and id in
+     * (date, id) order.
+     */
+    @Query(SELECT_DTO + " where seenMovie.movieUser.id = :movieUserId and seenMovie.date < :to" +
+        " and (seenMovie.date > :from or (seenMovie.date = :from and seenMovie.id > :id)) order by seenMovie.date, seenMovie.id")
+    List<SeenMovieDTO> findDTOsByMovieUserIdAndDateBetweenAfter(@Param("movieUserId") Long movieUserId, @Param("from") ZonedDateTime from,
+                                                               @Param("id") Long id, @Param("to") ZonedDateTime to, Pageable pageable);
+
+    /**
+     * Deletes watch events in a single statement, bypassing {@link fr.epita.movies.service.SeenMovieService}: the view
+     * counts and rollups keep counting them.
+     */
+    @Modifying
+    @Query("delete from SeenMovie seenMovie where seenMovie.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    Optional<SeenMovie> findFirstByMovieUserIdAndMovieIdAndDateBucket(Long movieUserId, Long movieId, ZonedDateTime dateBucket);
+
+    @Query(SELECT_DTO + " where seenMovie.id = :id")
+    Optional<SeenMovieDTO> findDTOById(@Param("id") Long id);
+
+    boolean existsByMovieUserIdAndMovieId(Long movieUserId, Long movieId);
+
+    @Query("select distinct seenMovie.movie.id from SeenMovie seenMovie" +
+        " where seenMovie.movieUser.id = :movieUserId and seenMovie.movie.id in :movieIds")
+    Set<Long> findMovieIdsByMovieUserIdAndMovieIdIn(@Param("movieUserId") Long movieUserId,
+                                                    @Param("movieIds") Collection<Long> movieIds);
+
+    @Query(value = SELECT_DTO + " where seenMovie.movie.id = :movieId",
+        countQuery = "select count(seenMovie) from SeenMovie seenMovie where seenMovie.movie.id = :movieId")
+    Page<SeenMovieDTO> findDTOsByMovieId(@Param("movieId") Long movieId, Pageable pageable);
+
+    @Query(value = SELECT_DTO + " where seenMovie.movieUser.id = :movieUserId",
+        countQuery = "select count(seenMovie) from SeenMovie seenMovie where seenMovie.movieUser.id = :movieUserId")
+    Page<SeenMovieDTO> findDTOsByMovieUserId(@Param("movieUserId") Long movieUserId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(SELECT_DTO + " order by seenMovie.id")
+    Stream<SeenMovieDTO> streamAllDTOs();
 }
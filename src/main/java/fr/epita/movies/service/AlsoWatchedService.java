@@ -0,0 +1,507 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.AlsoWatchedDTO;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.PersistenceException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterCommit;
+
+/**
+ * Service class for the movies watched by the users who watched a given {@link fr.epita.movies.domain.Movie}.
+ * <p>
+ * The engine is a sparse movie × movie co-occurrence matrix held in memory. Each movie gets a dense {@code int} index,
+ * and its row is a pair of {@code int} arrays of co-watched movie indexes and counts, so that no key or count is boxed.
+ * A row holds at most {@code maxNeighbors} movies: once full, a new co-watched movie replaces the least counted one
+ * and inherits its count, as in the Space-Saving algorithm, so the counts of the most co-watched movies are kept while
+ * the rarely co-watched ones churn.
+ * <p>
+ * New watch events are queued once their transaction commits and counted by {@link #apply()}: the first watch of a
+ * movie by a user adds one to its pair with each of the {@code historySize} movies the user watched last. The recent
+ * movies of the most active users are cached; the others are read from the database. Edited or deleted watch events
+ * are not taken back.
+ * <p>
+ * The matrix is saved to {@code snapshotFile} on schedule and on shutdown, with the largest watch event id it counts.
+ * At startup, it is loaded from there and the newer watch events are read from the database, so that a restart does
+ * not recount the whole history. The ids of the events read back are kept until the queued events are counted, so that
+ * an event both read back and queued by its commit is only counted once.
+ */
+@Service
+public class AlsoWatchedService {
+
+    private static final int SNAPSHOT_MAGIC = 0x41575331;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int INITIAL_ROW_CAPACITY = 4;
+
+    private static final int NONE = -1;
+
+    private static final Comparator<AlsoWatchedDTO> MOST_WATCHED_FIRST = Comparator
+        .comparingLong(AlsoWatchedDTO::getCount).reversed()
+        .thenComparing(AlsoWatchedDTO::getMovieId);
+
+    private final Logger log = LoggerFactory.getLogger(AlsoWatchedService.class);
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.AlsoWatched properties;
+
+    private final Path snapshotFile;
+
+    private final Counter droppedCounter;
+
+    private final Queue<SeenMovieDTO> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The matrix, guarded by {@link #lock}.
+     */
+    private Matrix matrix = new Matrix();
+
+    /**
+     * Recent movie indexes of the most recently active users, oldest first; only accessed while holding the lock of
+     * this service.
+     */
+    private final Map<Long, int[]> userHistories;
+
+    /**
+     * Ids above {@link #replayedIdsAbove} of the watch events counted while reading the newer ones back at startup, or
+     * {@code null} outside of it; only accessed while holding the lock of this service.
+     */
+    private Set<Long> replayedIds;
+
+    /**
+     * Largest id saved before the newer watch events are read back. Only the events committed since, whose ids come from
+     * later sequence values, can be both read back and queued, so only their ids are kept in {@link #replayedIds},
+     * which is thus bounded by the traffic during the replay rather than by the size of the table.
+     */
+    private long replayedIdsAbove;
+
+    /**
+     * Whether the matrix was loaded at startup: until then, it is not saved, so as not to overwrite the snapshot.
+     */
+    private volatile boolean loaded;
+
+    public AlsoWatchedService(SeenMovieRepository seenMovieRepository, PlatformTransactionManager transactionManager,
+                              ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.seenMovieRepository = seenMovieRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getAlsoWatched();
+        this.snapshotFile = Paths.get(properties.getSnapshotFile());
+        int userCacheSize = properties.getUserCacheSize();
+        this.userHistories = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > userCacheSize;
+            }
+        };
+        this.droppedCounter = Counter.builder("alsowatched.dropped")
+            .description("Watch events not counted because too many were waiting")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Loads the matrix from its snapshot, then counts the watch events saved since, in the background, once the
+     * application is ready.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (Files.exists(snapshotFile)) {
+            try {
+                Matrix snapshot = readSnapshot();
+                synchronized (this) {
+                    lock.writeLock().lock();
+                    try {
+                        matrix = snapshot;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    userHistories.clear();
+                }
+                log.info("Loaded the also-watched matrix of {} Movies up to SeenMovie {}", snapshot.size, snapshot.lastSeenMovieId);
+            } catch (IOException e) {
+                log.warn("Could not load the also-watched matrix, rebuilding it: {}", e.getMessage());
+            }
+        }
+        try {
+            Optional<Long> maxId = transactionTemplate.execute(status -> seenMovieRepository.findMaxId());
+            synchronized (this) {
+                replayedIdsAbove = maxId.orElse(Long.MIN_VALUE);
+                replayedIds = new HashSet<>();
+            }
+            long replayed = 0;
+            long after = lastSeenMovieId();
+            while (true) {
+                long from = after;
+                List<SeenMovieDTO> seenMovies = transactionTemplate.execute(status -> {
+                    List<SeenMovieDTO> chunk = seenMovieRepository.findDTOsByIdGreaterThan(from,
+                        PageRequest.of(0, properties.getReplayChunkSize()));
+                    count(chunk);
+                    return chunk;
+                });
+                if (seenMovies.isEmpty()) {
+                    break;
+                }
+                replayed += seenMovies.size();
+                after = seenMovies.get(seenMovies.size() - 1).getId();
+            }
+            log.info("Counted {} SeenMovies in the also-watched matrix", replayed);
+            apply();
+            loaded = true;
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not count the SeenMovies in the also-watched matrix: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                replayedIds = null;
+            }
+        }
+    }
+
+    /**
+     * Queues a new watch event to be counted, once the current transaction (if any) commits.
+     *
+     * @param seenMovie the watch event, ignored unless it has an id, a date, a movie and a user.
+     */
+    public void record(SeenMovieDTO seenMovie) {
+        if (seenMovie.getId() == null || seenMovie.getDate() == null || seenMovie.getMovieId() == null
+            || seenMovie.getMovieUserId() == null) {
+            return;
+        }
+        afterCommit(() -> {
+            if (pendingCount.incrementAndGet() > properties.getQueueCapacity()) {
+                pendingCount.decrementAndGet();
+                droppedCounter.increment();
+                return;
+            }
+            pending.add(seenMovie);
+        });
+    }
+
+    /**
+     * Counts the queued watch events.
+     */
+    @Scheduled(fixedDelayString = "${application.also-watched.apply-interval-ms:1000}")
+    public void apply() {
+        List<SeenMovieDTO> seenMovies = new ArrayList<>();
+        SeenMovieDTO seenMovie;
+        while ((seenMovie = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            seenMovies.add(seenMovie);
+        }
+        if (seenMovies.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                count(seenMovies);
+                return null;
+            });
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not count {} SeenMovies in the also-watched matrix: {}", seenMovies.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the movies most watched by the users who watched a movie.
+     *
+     * @param movieId the id of the movie.
+     * @param limit the maximum number of movies, at most {@link #getMaxNeighbors()}.
+     * @return the co-watched movies with the number of users who watched both, most watched first. Counts are exact
+     * unless the row of the movie was full, in which case they may be overestimated.
+     */
+    public List<AlsoWatchedDTO> findAlsoWatched(Long movieId, int limit) {
+        List<AlsoWatchedDTO> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int movie = matrix.indexes.getOrDefault(movieId, NONE);
+            if (movie == NONE) {
+                return result;
+            }
+            for (int i = 0; i < matrix.rowSizes[movie]; i++) {
+                result.add(new AlsoWatchedDTO(matrix.movieIds[matrix.neighbors[movie][i]], matrix.counts[movie][i]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(MOST_WATCHED_FIRST);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * @return the maximum limit of {@link #findAlsoWatched(Long, int)}.
+     */
+    public int getMaxNeighbors() {
+        return properties.getMaxNeighbors();
+    }
+
+    /**
+     * Saves the matrix to its snapshot file.
+     */
+    @Scheduled(fixedDelayString = "${application.also-watched.snapshot-interval-ms:600000}",
+        initialDelayString = "${application.also-watched.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            log.warn("Could not save the also-watched matrix: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the queued watch events and saves the matrix before the application stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        apply();
+        snapshot();
+    }
+
+    private long lastSeenMovieId() {
+        lock.readLock().lock();
+        try {
+            return matrix.lastSeenMovieId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts watch events, reading the recent movies of the users who are not cached, and skipping those already
+     * counted while reading the newer events back at startup.
+     */
+    private synchronized void count(List<SeenMovieDTO> seenMovies) {
+        for (SeenMovieDTO seenMovie : seenMovies) {
+            if (seenMovie.getMovieId() == null || seenMovie.getMovieUserId() == null || seenMovie.getDate() == null) {
+                continue;
+            }
+            if (replayedIds != null && seenMovie.getId() > replayedIdsAbove && !replayedIds.add(seenMovie.getId())) {
+                continue;
+            }
+            int[] history = userHistories.get(seenMovie.getMovieUserId());
+            List<Long> previousMovieIds = history != null ? null : seenMovieRepository.findMovieIdsByMovieUserIdBefore(
+                seenMovie.getMovieUserId(), seenMovie.getDate(), seenMovie.getId(), PageRequest.of(0, properties.getHistorySize()));
+            lock.writeLock().lock();
+            try {
+                if (history == null) {
+                    history = new int[0];
+                    for (int i = previousMovieIds.size() - 1; i >= 0; i--) {
+                        history = append(history, matrix.indexOf(previousMovieIds.get(i)));
+                    }
+                }
+                int movie = matrix.indexOf(seenMovie.getMovieId());
+                if (!contains(history, movie)) {
+                    for (int previous : history) {
+                        matrix.increment(movie, previous, properties.getMaxNeighbors());
+                        matrix.increment(previous, movie, properties.getMaxNeighbors());
+                    }
+                    history = append(history, movie);
+                }
+                matrix.lastSeenMovieId = Math.max(matrix.lastSeenMovieId, seenMovie.getId());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            userHistories.put(seenMovie.getMovieUserId(), history);
+        }
+    }
+
+    /**
+     * Appends a movie to a history, unless already there, dropping the oldest one past {@code historySize}.
+     */
+    private int[] append(int[] history, int movie) {
+        if (contains(history, movie)) {
+            return history;
+        }
+        int keep = Math.min(history.length, properties.getHistorySize() - 1);
+        int[] appended = Arrays.copyOfRange(history, history.length - keep, history.length + 1);
+        appended[keep] = movie;
+        return appended;
+    }
+
+    private static boolean contains(int[] history, int movie) {
+        for (int previous : history) {
+            if (previous == movie) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeSnapshot() throws IOException {
+        Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(matrix.lastSeenMovieId);
+            out.writeInt(matrix.size);
+            for (int movie = 0; movie < matrix.size; movie++) {
+                out.writeLong(matrix.movieIds[movie]);
+            }
+            for (int movie = 0; movie < matrix.size; movie++) {
+                out.writeInt(matrix.rowSizes[movie]);
+                for (int i = 0; i < matrix.rowSizes[movie]; i++) {
+                    out.writeInt(matrix.neighbors[movie][i]);
+                    out.writeInt(matrix.counts[movie][i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temporary, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Saved the also-watched matrix to {}", snapshotFile);
+    }
+
+    private Matrix readSnapshot() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an also-watched snapshot: " + snapshotFile);
+            }
+            Matrix snapshot = new Matrix();
+            snapshot.lastSeenMovieId = in.readLong();
+            int size = in.readInt();
+            for (int movie = 0; movie < size; movie++) {
+                snapshot.indexOf(in.readLong());
+            }
+            for (int movie = 0; movie < size; movie++) {
+                int rowSize = in.readInt();
+                if (rowSize == 0) {
+                    continue;
+                }
+                snapshot.neighbors[movie] = new int[rowSize];
+                snapshot.counts[movie] = new int[rowSize];
+                for (int i = 0; i < rowSize; i++) {
+                    snapshot.neighbors[movie][i] = in.readInt();
+                    snapshot.counts[movie][i] = in.readInt();
+                }
+                snapshot.rowSizes[movie] = rowSize;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * The co-occurrence matrix: row {@code i} is the movie of id {@code movieIds[i]}, and its first {@code rowSizes[i]}
+     * {@code neighbors} and {@code counts} are the indexes of its co-watched movies and how many users watched both.
+     */
+    private static final class Matrix {
+
+        private final LongIntHashMap indexes = new LongIntHashMap();
+
+        private long[] movieIds = new long[INITIAL_CAPACITY];
+
+        private int[][] neighbors = new int[INITIAL_CAPACITY][];
+
+        private int[][] counts = new int[INITIAL_CAPACITY][];
+
+        private int[] rowSizes = new int[INITIAL_CAPACITY];
+
+        private int size;
+
+        private long lastSeenMovieId;
+
+        /**
+         * Gets the index of a movie, giving it the next one if it has none yet.
+         */
+        private int indexOf(long movieId) {
+            int index = indexes.getOrDefault(movieId, NONE);
+            if (index != NONE) {
+                return index;
+            }
+            if (size == movieIds.length) {
+                int capacity = size * 2;
+                movieIds = Arrays.copyOf(movieIds, capacity);
+                neighbors = Arrays.copyOf(neighbors, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                rowSizes = Arrays.copyOf(rowSizes, capacity);
+            }
+            movieIds[size] = movieId;
+            indexes.put(movieId, size);
+            return size++;
+        }
+
+        private void increment(int movie, int neighbor, int maxNeighbors) {
+            int[] row = neighbors[movie];
+            int rowSize = rowSizes[movie];
+            for (int i = 0; i < rowSize; i++) {
+                if (row[i] == neighbor) {
+                    counts[movie][i]++;
+                    return;
+                }
+            }
+            if (row == null || rowSize == row.length) {
+                if (row != null && row.length >= maxNeighbors) {
+                    int least = 0;
+                    for (int i = 1; i < rowSize; i++) {
+                        if (counts[movie][i] < counts[movie][least]) {
+                            least = i;
+                        }
+                    }
+                    row[least] = neighbor;
+                    counts[movie][least]++;
+                    return;
+                }
+                int capacity = row == null ? Math.min(INITIAL_ROW_CAPACITY, maxNeighbors) : Math.min(row.length * 2, maxNeighbors);
+                neighbors[movie] = row = row == null ? new int[capacity] : Arrays.copyOf(row, capacity);
+                counts[movie] = counts[movie] == null ? new int[capacity] : Arrays.copyOf(counts[movie], capacity);
+            }
+            row[rowSize] = neighbor;
+            counts[movie][rowSize] = 1;
+            rowSizes[movie] = rowSize + 1;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.domain.Contact;
+import fr.epita.movies.repository.ContactRepository;
+import fr.epita.movies.service.dto.ContactDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Service class for looking up {@link Contact} by email or name.
+ * <p>
+ * Lookups match the indexed keys derived by {@link Contact#updateLookupKeys()} whenever a contact is written: an email
+ * lookup is an index equality, and a name prefix lookup an index range scan over the keys starting with the folded
+ * prefix. The keys of the contacts written before they existed are filled in the background once the application is
+ * ready; until then, those contacts are not found.
+ */
+@Service
+public class ContactService {
+
+    private final Logger log = LoggerFactory.getLogger(ContactService.class);
+
+    private final ContactRepository contactRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.ContactLookup properties;
+
+    public ContactService(ContactRepository contactRepository, PlatformTransactionManager transactionManager,
+                          ApplicationProperties applicationProperties) {
+        this.contactRepository = contactRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getContactLookup();
+    }
+
+    /**
+     * Fills in the lookup keys of the contacts written before they existed, in the background, once the application
+     * is ready.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLookupKeys() {
+        try {
+            long updated = 0;
+            long after = Long.MIN_VALUE;
+            while (true) {
+                long from = after;
+                List<Object[]> contacts = transactionTemplate.execute(status ->
+                    contactRepository.findSourcesWithoutLookupKeysByIdGreaterThan(from, PageRequest.of(0, properties.getBackfillChunkSize())));
+                if (contacts.isEmpty()) {
+                    break;
+                }
+                updated += transactionTemplate.execute(status -> {
+                    int count = 0;
+                    for (Object[] contact : contacts) {
+                        count += contactRepository.updateLookupKeys((Long) contact[0], Contact.toEmailKey((String) contact[1]),
+                            Contact.toNameKey((String) contact[2]));
+                    }
+                    return count;
+                });
+                after = (Long) contacts.get(contacts.size() - 1)[0];
+            }
+            if (updated > 0) {
+                log.info("Filled in the lookup keys of {} Contacts", updated);
+            }
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not fill in the lookup keys of the Contacts, retrying at next startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the contacts with an email, ignoring case.
+     *
+     * @param email the email.
+     * @return the matching contacts, in id order.
+     */
+    @Transactional(readOnly = true)
+    public List<ContactDTO> findByEmail(String email) {
+        log.debug("Request to get the Contacts by email : {}", email);
+        String emailKey = Contact.toEmailKey(email);
+        if (emailKey.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return contactRepository.findDTOsByEmailKey(emailKey);
+    }
+
+    /**
+     * Gets a page of the contacts whose name starts with a prefix, ignoring case and accents.
+     *
+     * @param prefix the beginning of the name.
+     * @param afterNameKey the name key of the last contact received, or {@code null} to start from the first contact.
+     * @param afterId the id of the last contact received, if {@code afterNameKey} is set.
+     * @param size the maximum number of contacts.
+     * @return the matching contacts following ({@code afterNameKey}, {@code afterId}), in folded name then id order.
+     */
+    @Transactional(readOnly = true)
+    public List<ContactDTO> findByNamePrefix(String prefix, String afterNameKey, Long afterId, int size) {
+        log.debug("Request to get the Contacts by name prefix : {} after : {}, {}", prefix, afterNameKey, afterId);
+        String from = Contact.toNameKey(prefix);
+        if (from.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String to = from + Character.MAX_VALUE;
+        PageRequest page = PageRequest.of(0, size);
+        return afterNameKey == null
+            ? contactRepository.findDTOsByNameKeyBetweenAfter(from, from, Long.MIN_VALUE, to, page)
+            : contactRepository.findDTOsByNameKeyBetweenAfter(from, afterNameKey, afterId, to, page);
+    }
+}
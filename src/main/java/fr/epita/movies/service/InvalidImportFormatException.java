@@ -0,0 +1,11 @@
+package fr.epita.movies.service;
+
+public class InvalidImportFormatException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidImportFormatException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,296 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.domain.Movie;
+import fr.epita.movies.service.dto.MovieImportReportDTO;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Service class for bulk imports of {@link Movie}.
+ * <p>
+ * Uploads are read one line at a time and inserted in chunks, each in its own transaction, flushing and clearing the
+ * persistence context every {@code hibernate.jdbc.batch_size} rows so that inserts go out as JDBC batches and memory
+ * use does not depend on the size of the upload. If a chunk cannot be saved, its rows are retried one by one so that
+ * only the rows that actually fail are rejected.
+ */
+@Service
+public class MovieImportService {
+
+    /**
+     * Supported upload formats.
+     */
+    public enum Format {
+        /**
+         * {@code ;}-separated values with a header row, in the layout of {@code config/liquibase/fake-data/movie.csv}.
+         */
+        CSV,
+        /**
+         * One JSON movie per line.
+         */
+        NDJSON
+    }
+
+    private static final char CSV_SEPARATOR = ';';
+
+    private static final char CSV_QUOTE = '"';
+
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private final Logger log = LoggerFactory.getLogger(MovieImportService.class);
+
+    private final MovieService movieService;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationProperties.MovieImport properties;
+
+    private final int batchSize;
+
+    public MovieImportService(MovieService movieService, EntityManager entityManager,
+                              PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                              ApplicationProperties applicationProperties,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:25}") int batchSize) {
+        this.movieService = movieService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.properties = applicationProperties.getMovieImport();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports new movies from an upload.
+     * <p>
+     * Any id in the upload is ignored: every row becomes a new movie. Rows that cannot be read are skipped and reported.
+     *
+     * @param reader the upload.
+     * @param format the format of the upload.
+     * @return the number of imported and rejected rows, with the reason of the first rejections.
+     * @throws IOException if the upload could not be read.
+     * @throws InvalidImportFormatException if the CSV header is missing or has unknown columns.
+     */
+    public MovieImportReportDTO importMovies(Reader reader, Format format) throws IOException {
+        log.debug("Request to import Movies as {}", format);
+        MovieImportReportDTO report = new MovieImportReportDTO();
+        BufferedReader lines = new BufferedReader(reader);
+        Map<String, Integer> columns = null;
+        List<Movie> chunk = new ArrayList<>(properties.getChunkSize());
+        List<Long> chunkLines = new ArrayList<>(properties.getChunkSize());
+        long lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = readHeader(line);
+                continue;
+            }
+            Movie movie;
+            try {
+                movie = format == Format.CSV ? readCsvRow(line, columns) : readJsonRow(line);
+                validate(movie);
+            } catch (IllegalArgumentException | DateTimeParseException | JsonProcessingException e) {
+                reject(report, lineNumber, e.getMessage());
+                continue;
+            }
+            chunk.add(movie);
+            chunkLines.add(lineNumber);
+            if (chunk.size() == properties.getChunkSize()) {
+                saveChunk(chunk, chunkLines, report);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, chunkLines, report);
+        }
+        log.info("Movie import done: {} imported, {} rejected", report.getImported(), report.getRejected());
+        return report;
+    }
+
+    private void saveChunk(List<Movie> chunk, List<Long> lines, MovieImportReportDTO report) {
+        long firstLine = lines.get(0);
+        long lastLine = lines.get(lines.size() - 1);
+        try {
+            transactionTemplate.execute(status -> {
+                for (int i = 0; i < chunk.size(); i++) {
+                    movieService.save(chunk.get(i));
+                    if ((i + 1) % batchSize == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                }
+                return null;
+            });
+            report.setImported(report.getImported() + chunk.size());
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Movie import of lines {} to {} failed, retrying one row at a time: {}", firstLine, lastLine,
+                NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                saveOne(chunk.get(i), lines.get(i), report);
+            }
+        }
+        log.info("Movie import in progress: {} imported, {} rejected, line {}", report.getImported(), report.getRejected(), lastLine);
+        chunk.clear();
+        lines.clear();
+    }
+
+    private void saveOne(Movie movie, long line, MovieImportReportDTO report) {
+        // The rolled back chunk may have given the movie an id
+        movie.setId(null);
+        try {
+            transactionTemplate.execute(status -> movieService.save(movie));
+            report.setImported(report.getImported() + 1);
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            reject(report, line, "Could not be saved: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+    }
+
+    private void reject(MovieImportReportDTO report, long line, String reason) {
+        report.setRejected(report.getRejected() + 1);
+        addRejectedRow(report, line, reason);
+    }
+
+    private void addRejectedRow(MovieImportReportDTO report, long line, String reason) {
+        if (report.getRejectedRows().size() < properties.getMaxReportedRejections()) {
+            report.getRejectedRows().add(new MovieImportReportDTO.RejectedRow(line, reason));
+        }
+    }
+
+    private Map<String, Integer> readHeader(String line) {
+        List<String> names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "id":
+                case "title":
+                case "date":
+                case "external_id":
+                    columns.put(name, i);
+                    break;
+                default:
+                    throw new InvalidImportFormatException("Unknown column in CSV header: " + name);
+            }
+        }
+        if (!columns.containsKey("title")) {
+            throw new InvalidImportFormatException("The CSV header must have a title column");
+        }
+        return columns;
+    }
+
+    private Movie readCsvRow(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        if (values.size() != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " columns but found " + values.size());
+        }
+        Movie movie = new Movie()
+            .title(emptyToNull(values.get(columns.get("title"))));
+        if (columns.containsKey("date")) {
+            movie.setDate(parseDate(emptyToNull(values.get(columns.get("date")))));
+        }
+        if (columns.containsKey("external_id")) {
+            movie.setExternalId(emptyToNull(values.get(columns.get("external_id"))));
+        }
+        return movie;
+    }
+
+    private Movie readJsonRow(String line) throws JsonProcessingException {
+        Movie movie = objectMapper.readValue(line, Movie.class);
+        movie.setId(null);
+        return movie;
+    }
+
+    private static void validate(Movie movie) {
+        if (movie.getTitle() != null && movie.getTitle().length() > MAX_COLUMN_LENGTH) {
+            throw new IllegalArgumentException("Title is longer than " + MAX_COLUMN_LENGTH + " characters");
+        }
+        if (movie.getExternalId() != null && movie.getExternalId().length() > MAX_COLUMN_LENGTH) {
+            throw new IllegalArgumentException("External id is longer than " + MAX_COLUMN_LENGTH + " characters");
+        }
+    }
+
+    /**
+     * Parses a date either with an offset or, as in the Liquibase fake data, as a local date-time in UTC.
+     */
+    private static ZonedDateTime parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(value).atZone(ZoneOffset.UTC);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Splits a CSV line on {@link #CSV_SEPARATOR}, honouring double-quoted values and doubled quotes inside them.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == CSV_QUOTE && i + 1 < line.length() && line.charAt(i + 1) == CSV_QUOTE) {
+                    value.append(CSV_QUOTE);
+                    i++;
+                } else if (c == CSV_QUOTE) {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == CSV_QUOTE) {
+                quoted = true;
+            } else if (c == CSV_SEPARATOR) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
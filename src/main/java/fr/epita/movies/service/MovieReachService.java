@@ -0,0 +1,285 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.domain.MovieReach;
+import fr.epita.movies.domain.MovieReachId;
+import fr.epita.movies.repository.MovieReachRepository;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.MovieReachDTO;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.util.HyperLogLog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterCommit;
+
+/**
+ * Service class for the approximate number of distinct users who watched a {@link fr.epita.movies.domain.Movie},
+ * stored in {@link MovieReach}.
+ * <p>
+ * Each (movie, day) and (movie, month) has a {@link HyperLogLog} sketch of its users. New watch events are first added
+ * to an in-memory sketch per (movie, day), sparse while it holds few users, so that a popular movie does not lock its
+ * {@code movie_reach} rows on every watch, and {@link #flush()} periodically merges them into the stored ones of their
+ * day and month. Sketches merge into the sketch of their union, so the reach of a range of days is read by merging the
+ * sketches of its whole months and of its remaining days, pending ones included, whatever the number of watch events:
+ * a range of a year reads at most about 70 sketches.
+ * <p>
+ * Adding a user twice has no effect, so watch events may be replayed, as by {@link #backfill()}. Edited or deleted
+ * watch events are not taken back.
+ */
+@Service
+public class MovieReachService {
+
+    private final Logger log = LoggerFactory.getLogger(MovieReachService.class);
+
+    private final MovieReachRepository movieReachRepository;
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.MovieReach properties;
+
+    /**
+     * Sketches not flushed yet, by movie then day. The sketches of a movie are only read and updated through the atomic
+     * methods of the outer map, which serialize the updates of each movie, and are taken out as a whole by a flush.
+     */
+    private final ConcurrentMap<Long, Map<LocalDate, HyperLogLog>> pendingSketches = new ConcurrentHashMap<>();
+
+    public MovieReachService(MovieReachRepository movieReachRepository, SeenMovieRepository seenMovieRepository,
+                             PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties) {
+        this.movieReachRepository = movieReachRepository;
+        this.seenMovieRepository = seenMovieRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getMovieReach();
+    }
+
+    /**
+     * Builds the sketches from the watch events, in the background, once the application is ready, if there is no
+     * monthly one or a backfill was requested.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            boolean empty = !transactionTemplate.execute(status -> movieReachRepository.findFirstByIdMonthlyTrue().isPresent());
+            if (properties.isBackfill() || empty) {
+                backfill();
+            }
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not backfill the Movie reach: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the user of a new watch event to the sketch of its movie and day, once the current transaction (if any)
+     * commits.
+     *
+     * @param seenMovie the watch event, ignored unless it has a date, a movie and a user.
+     */
+    public void record(SeenMovieDTO seenMovie) {
+        if (seenMovie.getDate() == null || seenMovie.getMovieId() == null || seenMovie.getMovieUserId() == null) {
+            return;
+        }
+        afterCommit(() -> add(seenMovie));
+    }
+
+    /**
+     * Gets the approximate number of distinct users who watched a movie over a range of days.
+     *
+     * @param movieId the id of the movie.
+     * @param from the first day, in UTC.
+     * @param to the day after the last one, in UTC.
+     * @return the reach of the movie, with its relative standard error.
+     */
+    @Transactional(readOnly = true)
+    public MovieReachDTO findReach(Long movieId, LocalDate from, LocalDate to) {
+        log.debug("Request to get the reach of Movie : {} from : {} to : {}", movieId, from, to);
+        HyperLogLog reach = new HyperLogLog(properties.getPrecision());
+        LocalDate firstMonth = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate lastMonth = to.withDayOfMonth(1);
+        List<byte[]> sketches;
+        if (firstMonth.isBefore(lastMonth)) {
+            sketches = new ArrayList<>(
+                movieReachRepository.findSketchesByMovieIdAndDayBetween(movieId, false, from, firstMonth));
+            sketches.addAll(movieReachRepository.findSketchesByMovieIdAndDayBetween(movieId, true, firstMonth, lastMonth));
+            sketches.addAll(movieReachRepository.findSketchesByMovieIdAndDayBetween(movieId, false, lastMonth, to));
+        } else {
+            sketches = movieReachRepository.findSketchesByMovieIdAndDayBetween(movieId, false, from, to);
+        }
+        for (byte[] bytes : sketches) {
+            HyperLogLog sketch = HyperLogLog.fromBytes(bytes);
+            if (sketch.getPrecision() == reach.getPrecision()) {
+                reach.merge(sketch);
+            }
+        }
+        pendingSketches.computeIfPresent(movieId, (key, days) -> {
+            days.forEach((day, sketch) -> {
+                if (!day.isBefore(from) && day.isBefore(to)) {
+                    reach.merge(sketch);
+                }
+            });
+            return days;
+        });
+        return new MovieReachDTO(movieId, from, to, reach.estimate(), 1.04 / Math.sqrt(1 << reach.getPrecision()));
+    }
+
+    /**
+     * Merges the pending sketches into the stored ones of their days and months.
+     * <p>
+     * A stored sketch of another precision is replaced, and the sketches of deleted movies are dropped. If the database
+     * cannot be updated, the sketches are kept pending for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${application.movie-reach.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<MovieReachId, HyperLogLog> sketches = new HashMap<>();
+        for (Long movieId : pendingSketches.keySet()) {
+            Map<LocalDate, HyperLogLog> days = pendingSketches.remove(movieId);
+            if (days != null) {
+                days.forEach((day, sketch) -> sketches.put(new MovieReachId(movieId, day), sketch));
+            }
+        }
+        if (sketches.isEmpty()) {
+            return;
+        }
+        Map<MovieReachId, HyperLogLog> rows = new HashMap<>(sketches);
+        sketches.forEach((id, sketch) ->
+            rows.computeIfAbsent(id.toMonth(), month -> new HyperLogLog(sketch.getPrecision())).merge(sketch));
+        try {
+            save(rows);
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not flush the reach of {} Movie days, retrying later: {}", sketches.size(), e.getMessage());
+            sketches.forEach((id, sketch) -> requeue(id.getMovieId(), id.getDay(), sketch));
+            return;
+        }
+        log.debug("Flushed the reach of {} Movie days", sketches.size());
+    }
+
+    /**
+     * Adds every watch event of {@code seen_movie} to the sketches, in chunks of
+     * {@code application.movie-reach.backfill-chunk-size}, flushing after each chunk, after rolling the stored daily
+     * sketches up into the monthly ones. The stored sketches are merged into rather than replaced, so the users of
+     * archived watch events are kept.
+     */
+    public void backfill() {
+        log.info("Backfilling the Movie reach");
+        long days = 0;
+        for (int page = 0; ; page++) {
+            PageRequest pageRequest = PageRequest.of(page, properties.getBackfillChunkSize(),
+                Sort.by("id.movieId", "id.day"));
+            Page<MovieReach> reaches = transactionTemplate.execute(status ->
+                movieReachRepository.findAllByIdMonthlyFalse(pageRequest));
+            Map<MovieReachId, HyperLogLog> months = new HashMap<>();
+            for (MovieReach reach : reaches) {
+                HyperLogLog sketch = HyperLogLog.fromBytes(reach.getSketch());
+                if (sketch.getPrecision() == properties.getPrecision()) {
+                    months.computeIfAbsent(reach.getId().toMonth(), month -> new HyperLogLog(sketch.getPrecision()))
+                        .merge(sketch);
+                }
+            }
+            save(months);
+            days += reaches.getNumberOfElements();
+            if (!reaches.hasNext()) {
+                break;
+            }
+        }
+        log.info("Rolled up the reach of {} Movie days", days);
+        long count = 0;
+        long after = Long.MIN_VALUE;
+        while (true) {
+            long from = after;
+            List<SeenMovieDTO> seenMovies = transactionTemplate.execute(status ->
+                seenMovieRepository.findDTOsByIdGreaterThan(from, PageRequest.of(0, properties.getBackfillChunkSize())));
+            if (seenMovies.isEmpty()) {
+                break;
+            }
+            seenMovies.stream()
+                .filter(seenMovie -> seenMovie.getDate() != null && seenMovie.getMovieId() != null && seenMovie.getMovieUserId() != null)
+                .forEach(this::add);
+            flush();
+            count += seenMovies.size();
+            after = seenMovies.get(seenMovies.size() - 1).getId();
+        }
+        log.info("Backfilled the Movie reach from {} SeenMovies", count);
+    }
+
+    /**
+     * Merges sketches into the stored ones, in one transaction, while holding the lock of {@link #flush()} so that two
+     * merges do not both create the same row.
+     */
+    private synchronized void save(Map<MovieReachId, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        transactionTemplate.execute(status -> {
+            List<MovieReach> reaches = new ArrayList<>();
+            Map<MovieReachId, HyperLogLog> created = new HashMap<>(sketches);
+            for (MovieReach reach : movieReachRepository.findAllById(sketches.keySet())) {
+                HyperLogLog sketch = created.remove(reach.getId());
+                HyperLogLog stored = HyperLogLog.fromBytes(reach.getSketch());
+                if (stored.getPrecision() == sketch.getPrecision()) {
+                    stored.merge(sketch);
+                    sketch = stored;
+                }
+                reach.setSketch(sketch.toBytes());
+                reaches.add(reach);
+            }
+            Set<Long> movieIds = movieReachRepository.findExistingMovieIds(
+                created.keySet().stream().map(MovieReachId::getMovieId).collect(Collectors.toSet()));
+            created.forEach((id, sketch) -> {
+                if (movieIds.contains(id.getMovieId())) {
+                    reaches.add(new MovieReach(id, sketch.toBytes()));
+                }
+            });
+            return movieReachRepository.saveAll(reaches);
+        });
+    }
+
+    private void add(SeenMovieDTO seenMovie) {
+        LocalDate day = seenMovie.getDate().withZoneSameInstant(ZoneOffset.UTC).toLocalDate();
+        pendingSketches.compute(seenMovie.getMovieId(), (key, days) -> {
+            Map<LocalDate, HyperLogLog> updated = days != null ? days : new HashMap<>();
+            updated.computeIfAbsent(day, d -> new HyperLogLog(properties.getPrecision())).add(seenMovie.getMovieUserId());
+            return updated;
+        });
+    }
+
+    private void requeue(Long movieId, LocalDate day, HyperLogLog sketch) {
+        pendingSketches.compute(movieId, (key, days) -> {
+            Map<LocalDate, HyperLogLog> updated = days != null ? days : new HashMap<>();
+            updated.merge(day, sketch, (pending, failed) -> {
+                pending.merge(failed);
+                return pending;
+            });
+            return updated;
+        });
+    }
+}
@@ -0,0 +1,160 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.domain.Movie;
+import fr.epita.movies.service.dto.MovieDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterCommit;
+import static fr.epita.movies.util.TextUtils.fold;
+
+/**
+ * Service class for title autocompletion on {@link Movie}.
+ * <p>
+ * Titles are kept in memory, sorted by their normalized form, so that a prefix lookup is a range scan over the
+ * first matching keys. The index is loaded by {@link MovieService#warmUp()} when the application starts and is then kept
+ * up to date by {@link #index(Movie)} and {@link #remove(Long)}, which apply once the surrounding transaction commits.
+ */
+@Service
+public class MovieSearchService {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final Logger log = LoggerFactory.getLogger(MovieSearchService.class);
+
+    /**
+     * Suggestions sorted by normalized title, keyed by {@code normalizedTitle + '\0' + id}.
+     */
+    private final ConcurrentNavigableMap<String, Suggestion> suggestions = new ConcurrentSkipListMap<>();
+
+    /**
+     * Key of each indexed movie in {@link #suggestions}; every mutation goes through this map's per-key atomic operations.
+     */
+    private final ConcurrentMap<Long, String> keysById = new ConcurrentHashMap<>();
+
+    private final Set<Long> removedWhileRebuilding = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean rebuilding;
+
+    /**
+     * Starts a rebuild of the index: until {@link #endRebuild()}, movies indexed or removed take precedence over
+     * those passed to {@link #load(MovieDTO)}.
+     */
+    public void beginRebuild() {
+        log.debug("Rebuilding the Movie title index");
+        rebuilding = true;
+    }
+
+    /**
+     * Adds a movie read from the database during a rebuild, unless it was indexed or removed since the rebuild began.
+     *
+     * @param movie the movie read from the database.
+     */
+    public void load(MovieDTO movie) {
+        if (!removedWhileRebuilding.contains(movie.getId())) {
+            keysById.computeIfAbsent(movie.getId(), id -> put(id, movie.getTitle()));
+        }
+    }
+
+    /**
+     * Ends a rebuild started by {@link #beginRebuild()}.
+     */
+    public void endRebuild() {
+        rebuilding = false;
+        removedWhileRebuilding.clear();
+        log.info("Movie title index rebuilt with {} titles", keysById.size());
+    }
+
+    /**
+     * Adds or replaces the title of a movie, once the current transaction (if any) commits.
+     *
+     * @param movie the saved movie.
+     */
+    public void index(Movie movie) {
+        Long id = movie.getId();
+        String title = movie.getTitle();
+        afterCommit(() -> keysById.compute(id, (key, previous) -> {
+            if (previous != null) {
+                suggestions.remove(previous);
+            }
+            return put(id, title);
+        }));
+    }
+
+    /**
+     * Removes a movie from the index, once the current transaction (if any) commits.
+     *
+     * @param id the id of the deleted movie.
+     */
+    public void remove(Long id) {
+        afterCommit(() -> {
+            if (rebuilding) {
+                removedWhileRebuilding.add(id);
+            }
+            keysById.computeIfPresent(id, (key, previous) -> {
+                suggestions.remove(previous);
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Gets the movies whose title starts with the given prefix, ignoring case and accents.
+     *
+     * @param prefix the beginning of the title.
+     * @param limit the maximum number of suggestions.
+     * @return the matching movies, with only their id and title set, in title order.
+     */
+    public List<MovieDTO> suggest(String prefix, int limit) {
+        String from = normalize(prefix);
+        List<MovieDTO> result = new ArrayList<>(limit);
+        if (from.isEmpty()) {
+            return result;
+        }
+        for (Suggestion suggestion : suggestions.subMap(from, true, from + Character.MAX_VALUE, true).values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            MovieDTO movieDTO = new MovieDTO();
+            movieDTO.setId(suggestion.id);
+            movieDTO.setTitle(suggestion.title);
+            result.add(movieDTO);
+        }
+        return result;
+    }
+
+    private String put(Long id, String title) {
+        if (title == null) {
+            return null;
+        }
+        String key = normalize(title) + KEY_SEPARATOR + id;
+        suggestions.put(key, new Suggestion(id, title));
+        return key;
+    }
+
+    private static String normalize(String text) {
+        return text != null ? fold(text) : "";
+    }
+
+    private static final class Suggestion {
+
+        private final long id;
+
+        private final String title;
+
+        private Suggestion(long id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+    }
+}
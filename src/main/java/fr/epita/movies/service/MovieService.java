@@ -0,0 +1,213 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.domain.Movie;
+import fr.epita.movies.repository.MovieRepository;
+import fr.epita.movies.service.dto.MovieDTO;
+import fr.epita.movies.service.dto.MovieLookupDTO;
+import fr.epita.movies.service.dto.MovieMonthCountDTO;
+import fr.epita.movies.service.util.BloomFilter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service class for managing {@link Movie}.
+ * <p>
+ * Every write goes through {@link #save(Movie)} and {@link #delete(Long)}, which keep the in-memory movie indexes up to date.
+ */
+@Service
+@Transactional
+public class MovieService {
+
+    /**
+     * Spring cache of {@link #countByMonth(int)}, by year, cleared whenever a movie is written.
+     */
+    public static final String MONTH_COUNTS_CACHE = "movieMonthCounts";
+
+    private final Logger log = LoggerFactory.getLogger(MovieService.class);
+
+    private final MovieRepository movieRepository;
+
+    private final MovieSearchService movieSearchService;
+
+    private final BloomFilter externalIds;
+
+    /**
+     * Whether {@link #externalIds} holds every external id in the database; until then it cannot rule any out.
+     */
+    private volatile boolean externalIdsLoaded;
+
+    public MovieService(MovieRepository movieRepository, MovieSearchService movieSearchService, ApplicationProperties applicationProperties) {
+        this.movieRepository = movieRepository;
+        this.movieSearchService = movieSearchService;
+        ApplicationProperties.ExternalIdFilter filter = applicationProperties.getExternalIdFilter();
+        this.externalIds = new BloomFilter(filter.getExpectedInsertions(), filter.getFalsePositiveProbability());
+    }
+
+    /**
+     * Loads the in-memory movie indexes, in the background, once the application is ready.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        log.debug("Loading the Movie indexes");
+        movieSearchService.beginRebuild();
+        try {
+            forEachMovie(movie -> {
+                movieSearchService.load(movie);
+                if (movie.getExternalId() != null) {
+                    externalIds.put(movie.getExternalId());
+                }
+            });
+            externalIdsLoaded = true;
+        } finally {
+            movieSearchService.endRebuild();
+        }
+    }
+
+    /**
+     * Save a movie.
+     *
+     * @param movie the movie to save.
+     * @return the persisted movie.
+     */
+    @CacheEvict(cacheNames = MONTH_COUNTS_CACHE, allEntries = true)
+    public Movie save(Movie movie) {
+        log.debug("Request to save Movie : {}", movie);
+        Movie result = movieRepository.save(movie);
+        movieSearchService.index(result);
+        if (result.getExternalId() != null) {
+            externalIds.put(result.getExternalId());
+        }
+        return result;
+    }
+
+    /**
+     * Delete the "id" movie.
+     *
+     * @param id the id of the movie.
+     */
+    @CacheEvict(cacheNames = MONTH_COUNTS_CACHE, allEntries = true)
+    public void delete(Long id) {
+        log.debug("Request to delete Movie : {}", id);
+        movieRepository.deleteById(id);
+        movieSearchService.remove(id);
+    }
+
+    /**
+     * Get the scalar columns of several movies by id, with a single query.
+     *
+     * @param ids the ids of the movies; duplicates and {@code null} are ignored.
+     * @return the movies found in the order of {@code ids}, and the ids that match no movie.
+     */
+    @Transactional(readOnly = true)
+    public MovieLookupDTO findDTOsByIds(Collection<Long> ids) {
+        log.debug("Request to get Movies : {}", ids);
+        Set<Long> requestedIds = new LinkedHashSet<>(ids);
+        requestedIds.remove(null);
+        MovieLookupDTO result = new MovieLookupDTO();
+        if (requestedIds.isEmpty()) {
+            return result;
+        }
+        Map<Long, MovieDTO> moviesById = movieRepository.findDTOsByIdIn(requestedIds).stream()
+            .collect(Collectors.toMap(MovieDTO::getId, Function.identity()));
+        for (Long id : requestedIds) {
+            MovieDTO movie = moviesById.get(id);
+            if (movie != null) {
+                result.getMovies().add(movie);
+            } else {
+                result.getMissingIds().add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Count the movies dated in each month of a year, in UTC.
+     *
+     * @param year the year.
+     * @return the number of movies of each month that has any, in month order.
+     */
+    @Cacheable(MONTH_COUNTS_CACHE)
+    @Transactional(readOnly = true)
+    public List<MovieMonthCountDTO> countByMonth(int year) {
+        log.debug("Request to count Movies by month of : {}", year);
+        ZonedDateTime from = ZonedDateTime.of(year, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        return Collections.unmodifiableList(movieRepository.countByMonthBetween(from, from.plusYears(1)));
+    }
+
+    /**
+     * Get a movie by its external id.
+     * <p>
+     * Once the application has loaded every known external id, an unknown one is answered without querying the database.
+     *
+     * @param externalId the external id of the movie.
+     * @return the movie, if any.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Movie> findOneByExternalId(String externalId) {
+        log.debug("Request to get Movie by external id : {}", externalId);
+        if (!mightExist(externalId)) {
+            return Optional.empty();
+        }
+        return movieRepository.findOneByExternalId(externalId);
+    }
+
+    /**
+     * Get the scalar columns of a movie by its external id.
+     *
+     * @param externalId the external id of the movie.
+     * @return the movie, if any.
+     * @see #findOneByExternalId(String)
+     */
+    @Transactional(readOnly = true)
+    public Optional<MovieDTO> findOneDTOByExternalId(String externalId) {
+        log.debug("Request to get MovieDTO by external id : {}", externalId);
+        if (!mightExist(externalId)) {
+            return Optional.empty();
+        }
+        return movieRepository.findDTOByExternalId(externalId);
+    }
+
+    /**
+     * Walks every movie in id order off a server-side cursor.
+     * <p>
+     * Only the scalar columns are read, so nothing accumulates in the persistence context however large the table is.
+     *
+     * @param action the callback invoked for each movie.
+     */
+    @Transactional(readOnly = true)
+    public void forEachMovie(Consumer<MovieDTO> action) {
+        log.debug("Streaming all Movies");
+        try (Stream<MovieDTO> movies = movieRepository.streamAllDTOs()) {
+            movies.forEach(action);
+        }
+    }
+
+    private boolean mightExist(String externalId) {
+        return !externalIdsLoaded || externalIds.mightContain(externalId);
+    }
+}
@@ -0,0 +1,240 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.domain.MovieStats;
+import fr.epita.movies.repository.MovieStatsRepository;
+import fr.epita.movies.service.dto.MovieViewCountDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterCommit;
+
+/**
+ * Service class for the view counts of {@link fr.epita.movies.domain.Movie}, stored in {@link MovieStats}.
+ * <p>
+ * Views are first added to an in-memory {@link LongAdder} per movie, so that concurrent watches of a popular movie
+ * neither contend on a single counter nor lock its {@code movie_stats} row. {@link #flush()} periodically adds the
+ * accumulated deltas to the database and updates the most viewed movies, which are kept sorted in memory so that
+ * {@link #findTop(int)} never queries the database.
+ */
+@Service
+public class MovieStatsService {
+
+    private static final Comparator<MovieViewCountDTO> MOST_VIEWED_FIRST = Comparator
+        .comparingLong(MovieViewCountDTO::getViewCount).reversed()
+        .thenComparing(MovieViewCountDTO::getMovieId);
+
+    private final Logger log = LoggerFactory.getLogger(MovieStatsService.class);
+
+    private final MovieStatsRepository movieStatsRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int topCapacity;
+
+    /**
+     * Views not flushed yet, by movie id. A flush removes the adders of the movies not viewed since the previous one.
+     */
+    private final ConcurrentMap<Long, LongAdder> pendingViews = new ConcurrentHashMap<>();
+
+    /**
+     * Adders removed from {@link #pendingViews} by the last flush, drained once more by the next one so that a view
+     * added to an adder as it was removed is not lost. Only accessed while holding the lock of this service.
+     */
+    private final Map<Long, LongAdder> retiredViews = new HashMap<>();
+
+    /**
+     * Number of flushes in a row that could not update the database, only accessed while holding the lock of this
+     * service.
+     */
+    private int failedFlushes;
+
+    /**
+     * The {@link #topCapacity} most viewed movies, only accessed while holding the lock of this service.
+     */
+    private final NavigableSet<MovieViewCountDTO> top = new TreeSet<>(MOST_VIEWED_FIRST);
+
+    private final Map<Long, MovieViewCountDTO> topByMovieId = new HashMap<>();
+
+    /**
+     * Immutable copy of {@link #top}, published after each change for readers.
+     */
+    private volatile List<MovieViewCountDTO> topSnapshot = Collections.emptyList();
+
+    public MovieStatsService(MovieStatsRepository movieStatsRepository, PlatformTransactionManager transactionManager,
+                             ApplicationProperties applicationProperties) {
+        this.movieStatsRepository = movieStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.topCapacity = applicationProperties.getMovieStats().getTopCapacity();
+    }
+
+    /**
+     * Loads the most viewed movies, in the background, once the application is ready.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void warmUp() {
+        reloadTop();
+        log.info("Loaded the {} most viewed Movies", topSnapshot.size());
+    }
+
+    /**
+     * Adds views to a movie, once the current transaction (if any) commits.
+     *
+     * @param movieId the id of the movie.
+     * @param views the number of views to add, negative when watch events are deleted.
+     */
+    public void addViews(Long movieId, long views) {
+        if (movieId == null || views == 0) {
+            return;
+        }
+        afterCommit(() -> pendingViews.computeIfAbsent(movieId, id -> new LongAdder()).add(views));
+    }
+
+    /**
+     * Gets the most viewed movies.
+     *
+     * @param limit the maximum number of movies, at most {@link #getTopCapacity()}.
+     * @return the view counts of the most viewed movies, most viewed first, as of the last flush.
+     */
+    public List<MovieViewCountDTO> findTop(int limit) {
+        List<MovieViewCountDTO> snapshot = topSnapshot;
+        return snapshot.subList(0, Math.min(limit, snapshot.size()));
+    }
+
+    /**
+     * Gets the number of most viewed movies kept in memory.
+     *
+     * @return the maximum limit of {@link #findTop(int)}.
+     */
+    public int getTopCapacity() {
+        return topCapacity;
+    }
+
+    /**
+     * Writes the pending views to the database, then updates the most viewed movies.
+     * <p>
+     * If the database cannot be updated, the views are kept pending for the next flush. They are summed by movie, so the
+     * backlog is bounded by the number of movies viewed meanwhile, and reported at each failed flush.
+     */
+    @Scheduled(fixedDelayString = "${application.movie-stats.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<Long, Long> views = new HashMap<>();
+        retiredViews.forEach((movieId, adder) -> views.merge(movieId, adder.sumThenReset(), Long::sum));
+        retiredViews.clear();
+        pendingViews.forEach((movieId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                views.merge(movieId, delta, Long::sum);
+            } else if (pendingViews.remove(movieId, adder)) {
+                retiredViews.put(movieId, adder);
+            }
+        });
+        views.values().removeIf(delta -> delta == 0);
+        if (views.isEmpty()) {
+            return;
+        }
+        List<MovieViewCountDTO> viewCounts;
+        try {
+            viewCounts = transactionTemplate.execute(status -> {
+                views.forEach((movieId, delta) -> {
+                    if (movieStatsRepository.addViewCount(movieId, delta) == 0 && delta > 0) {
+                        movieStatsRepository.save(new MovieStats().movieId(movieId).viewCount(delta));
+                    }
+                });
+                return movieStatsRepository.findViewCountsByMovieIdIn(views.keySet());
+            });
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            failedFlushes++;
+            if (failedFlushes == 1) {
+                log.warn("Could not flush the views of {} Movies, retrying later: {}", views.size(), e.getMessage());
+            } else {
+                log.error("Could not flush the views of {} Movies for {} flushes in a row, retrying later: {}", views.size(),
+                    failedFlushes, e.getMessage());
+            }
+            views.forEach(this::addViews);
+            return;
+        }
+        failedFlushes = 0;
+        log.debug("Flushed the views of {} Movies", views.size());
+        updateTop(views, viewCounts);
+    }
+
+    /**
+     * Replaces the view counts of the flushed movies in {@link #top}.
+     * <p>
+     * A movie that only gains views either stays or enters the top, evicting the least viewed one once full. A movie of
+     * the top that loses views may fall behind a movie that is not kept in memory, so the top is then reloaded.
+     */
+    private void updateTop(Map<Long, Long> views, List<MovieViewCountDTO> viewCounts) {
+        Map<Long, MovieViewCountDTO> viewCountsByMovieId = new HashMap<>();
+        viewCounts.forEach(viewCount -> viewCountsByMovieId.put(viewCount.getMovieId(), viewCount));
+        for (Map.Entry<Long, Long> entry : views.entrySet()) {
+            if (entry.getValue() < 0 && topByMovieId.containsKey(entry.getKey())) {
+                reloadTop();
+                return;
+            }
+        }
+        for (MovieViewCountDTO viewCount : viewCountsByMovieId.values()) {
+            MovieViewCountDTO previous = topByMovieId.remove(viewCount.getMovieId());
+            if (previous != null) {
+                top.remove(previous);
+            }
+            offer(viewCount);
+        }
+        publishTop();
+    }
+
+    private void offer(MovieViewCountDTO viewCount) {
+        if (viewCount.getViewCount() <= 0) {
+            return;
+        }
+        if (top.size() == topCapacity) {
+            if (MOST_VIEWED_FIRST.compare(viewCount, top.last()) > 0) {
+                return;
+            }
+            topByMovieId.remove(top.pollLast().getMovieId());
+        }
+        top.add(viewCount);
+        topByMovieId.put(viewCount.getMovieId(), viewCount);
+    }
+
+    private void reloadTop() {
+        List<MovieViewCountDTO> viewCounts = transactionTemplate.execute(status ->
+            movieStatsRepository.findTopViewCounts(PageRequest.of(0, topCapacity)));
+        top.clear();
+        topByMovieId.clear();
+        viewCounts.forEach(this::offer);
+        publishTop();
+    }
+
+    private void publishTop() {
+        topSnapshot = Collections.unmodifiableList(new ArrayList<>(top));
+    }
+}
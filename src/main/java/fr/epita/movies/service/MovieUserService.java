@@ -0,0 +1,73 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.domain.MovieUser;
+import fr.epita.movies.repository.MovieUserRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service class for reading {@link MovieUser} with their roles.
+ * <p>
+ * A page of movieUsers is read in two phases: the ids of the page first, sorted and paged by the database, then the
+ * movieUsers with those ids, their roles and their contact in a single query. Fetching a collection cannot be paged by
+ * the database, so this keeps the cost of a page proportional to its size rather than to the number of users.
+ */
+@Service
+@Transactional(readOnly = true)
+public class MovieUserService {
+
+    private final Logger log = LoggerFactory.getLogger(MovieUserService.class);
+
+    private final MovieUserRepository movieUserRepository;
+
+    public MovieUserService(MovieUserRepository movieUserRepository) {
+        this.movieUserRepository = movieUserRepository;
+    }
+
+    /**
+     * Gets a page of movieUsers with their roles.
+     *
+     * @param pageable the pagination information, sorted on the columns of {@link MovieUser}.
+     * @return the page of movieUsers.
+     */
+    public Page<MovieUser> findAllWithEagerRelationships(Pageable pageable) {
+        log.debug("Request to get a page of MovieUsers with their roles : {}", pageable);
+        Page<Long> ids = movieUserRepository.findAllIds(pageable);
+        return new PageImpl<>(findAllWithEagerRelationshipsByIds(ids.getContent()), pageable, ids.getTotalElements());
+    }
+
+    /**
+     * Gets the movieUsers following an id, in id order, with their roles.
+     *
+     * @param after the id of the last movieUser received.
+     * @param size the maximum number of movieUsers.
+     * @return the movieUsers.
+     */
+    public List<MovieUser> findAllWithEagerRelationshipsAfter(Long after, int size) {
+        log.debug("Request to get {} MovieUsers with their roles after : {}", size, after);
+        return findAllWithEagerRelationshipsByIds(movieUserRepository.findIdsByIdGreaterThan(after, PageRequest.of(0, size)));
+    }
+
+    private List<MovieUser> findAllWithEagerRelationshipsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, MovieUser> movieUsers = movieUserRepository.findAllWithEagerRelationshipsByIdIn(ids).stream()
+            .collect(Collectors.toMap(MovieUser::getId, Function.identity()));
+        return ids.stream().map(movieUsers::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,143 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.MovieUserRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Service class for granting a {@link fr.epita.movies.domain.Role} to, or revoking it from, many
+ * {@link fr.epita.movies.domain.MovieUser}s at once.
+ * <p>
+ * Rather than loading and saving each user, the join table is updated by set-based {@code insert ... select} and
+ * {@code delete} statements, each over at most {@code application.role-membership.bulk-chunk-size} users in its own
+ * transaction, so that locks are held briefly. A failure thus leaves the chunks before it applied; running the same
+ * update again completes it, as granting a role skips the users who already have it. The cached memberships are
+ * reloaded once the update ends, whether it completed or not.
+ */
+@Service
+public class RoleBulkAssignmentService {
+
+    private final Logger log = LoggerFactory.getLogger(RoleBulkAssignmentService.class);
+
+    private final MovieUserRepository movieUserRepository;
+
+    private final RoleMembershipService roleMembershipService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.RoleMembership properties;
+
+    public RoleBulkAssignmentService(MovieUserRepository movieUserRepository, RoleMembershipService roleMembershipService,
+                                     PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties) {
+        this.movieUserRepository = movieUserRepository;
+        this.roleMembershipService = roleMembershipService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getRoleMembership();
+    }
+
+    /**
+     * Grants a role to the given users; unknown ids are ignored.
+     *
+     * @param roleId the id of the role.
+     * @param movieUserIds the ids of the users.
+     * @return the number of users who did not have the role yet.
+     */
+    public int addMembers(Long roleId, List<Long> movieUserIds) {
+        log.debug("Request to grant Role : {} to {} MovieUsers", roleId, movieUserIds.size());
+        return updateByIds(roleId, movieUserIds, movieUserRepository::insertRoleByIdIn);
+    }
+
+    /**
+     * Grants a role to the users without a contact.
+     *
+     * @param roleId the id of the role.
+     * @return the number of users who did not have the role yet.
+     */
+    public int addMembersWhereContactIsNull(Long roleId) {
+        log.debug("Request to grant Role : {} to the MovieUsers where contact is null", roleId);
+        try {
+            int count = 0;
+            long after = Long.MIN_VALUE;
+            while (true) {
+                long from = after;
+                List<Long> ids = transactionTemplate.execute(status ->
+                    movieUserRepository.findIdsByIdGreaterThan(from, PageRequest.of(0, properties.getBulkChunkSize())));
+                if (ids.isEmpty()) {
+                    return count;
+                }
+                after = ids.get(ids.size() - 1);
+                long to = after;
+                count += transactionTemplate.execute(status -> movieUserRepository.insertRoleByIdBetweenAndContactIsNull(roleId, from, to));
+            }
+        } finally {
+            roleMembershipService.invalidateRole(roleId);
+        }
+    }
+
+    /**
+     * Revokes a role from the given users; unknown ids are ignored.
+     *
+     * @param roleId the id of the role.
+     * @param movieUserIds the ids of the users.
+     * @return the number of users who had the role.
+     */
+    public int removeMembers(Long roleId, List<Long> movieUserIds) {
+        log.debug("Request to revoke Role : {} from {} MovieUsers", roleId, movieUserIds.size());
+        return updateByIds(roleId, movieUserIds, movieUserRepository::deleteRoleByIdIn);
+    }
+
+    /**
+     * Revokes a role from the users without a contact.
+     *
+     * @param roleId the id of the role.
+     * @return the number of users who had the role.
+     */
+    public int removeMembersWhereContactIsNull(Long roleId) {
+        log.debug("Request to revoke Role : {} from the MovieUsers where contact is null", roleId);
+        try {
+            int count = 0;
+            long after = Long.MIN_VALUE;
+            while (true) {
+                long from = after;
+                List<Long> ids = transactionTemplate.execute(status -> movieUserRepository.findIdsByRoleIdAndIdGreaterThan(roleId,
+                    from, PageRequest.of(0, properties.getBulkChunkSize())));
+                if (ids.isEmpty()) {
+                    return count;
+                }
+                after = ids.get(ids.size() - 1);
+                long to = after;
+                count += transactionTemplate.execute(status -> movieUserRepository.deleteRoleByIdBetweenAndContactIsNull(roleId, from, to));
+            }
+        } finally {
+            roleMembershipService.invalidateRole(roleId);
+        }
+    }
+
+    private int updateByIds(Long roleId, List<Long> movieUserIds, BiFunction<Long, List<Long>, Integer> update) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(movieUserIds));
+        ids.remove(null);
+        try {
+            int count = 0;
+            for (int from = 0; from < ids.size(); from += properties.getBulkChunkSize()) {
+                List<Long> chunk = ids.subList(from, Math.min(from + properties.getBulkChunkSize(), ids.size()));
+                count += transactionTemplate.execute(status -> update.apply(roleId, chunk));
+            }
+            return count;
+        } finally {
+            roleMembershipService.invalidateRole(roleId);
+        }
+    }
+}
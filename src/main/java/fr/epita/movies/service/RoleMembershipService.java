@@ -0,0 +1,321 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.MovieUserRepository;
+import fr.epita.movies.service.util.CompressedBitmap;
+import fr.epita.movies.service.util.WarmUp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterCommit;
+
+/**
+ * Service class for the roles of each {@link fr.epita.movies.domain.MovieUser}, cached in memory.
+ * <p>
+ * Each {@link fr.epita.movies.domain.Role} gets a small ordinal the first time it is seen, and the roles of a user are
+ * a {@code long[]} bitset of ordinals, so that {@link #hasAnyRole(Long, Collection)} reads a few words without locking.
+ * The members of each role are also kept as a {@link CompressedBitmap} of user ids.
+ * <p>
+ * The cache is built from {@code movie_user_role} in the background once the application is ready; until then the
+ * queries read the database, and a failed build is retried every
+ * {@code application.role-membership.warm-up-retry-interval-ms}. Writes to users and roles invalidate it once they
+ * commit, which reloads the roles of the user or the members of the role from the database.
+ */
+@Service
+public class RoleMembershipService {
+
+    private final Logger log = LoggerFactory.getLogger(RoleMembershipService.class);
+
+    private final MovieUserRepository movieUserRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.RoleMembership properties;
+
+    /**
+     * Ordinals by role id, assigned while holding the lock of this service and never reused.
+     */
+    private final ConcurrentMap<Long, Integer> ordinals = new ConcurrentHashMap<>();
+
+    /**
+     * Role ids by ordinal, only accessed while holding the lock of this service.
+     */
+    private final List<Long> roleIds = new ArrayList<>();
+
+    /**
+     * Role bitsets by user id, for the users with at least one role. A bitset is never modified once published, only
+     * replaced while holding the lock of this service.
+     */
+    private final ConcurrentMap<Long, long[]> userRoles = new ConcurrentHashMap<>();
+
+    /**
+     * Member ids by role id, only accessed while holding the lock of this service.
+     */
+    private final Map<Long, CompressedBitmap> members = new HashMap<>();
+
+    /**
+     * Whether the cache is built, with the invalidations committed while it was being built.
+     */
+    private final WarmUp loading = new WarmUp();
+
+    public RoleMembershipService(MovieUserRepository movieUserRepository, PlatformTransactionManager transactionManager,
+                                 ApplicationProperties applicationProperties) {
+        this.movieUserRepository = movieUserRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getRoleMembership();
+    }
+
+    /**
+     * Builds the cache from the roles of the users, in the background, once the application is ready.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!loading.start()) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                userRoles.clear();
+                members.clear();
+            }
+            long after = Long.MIN_VALUE;
+            long users = 0;
+            while (true) {
+                long from = after;
+                List<Long> ids = transactionTemplate.execute(status ->
+                    movieUserRepository.findIdsByIdGreaterThan(from, PageRequest.of(0, properties.getLoadChunkSize())));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                List<Object[]> pairs = transactionTemplate.execute(status -> movieUserRepository.findRoleIdPairsByIdIn(ids));
+                Map<Long, List<Long>> roleIdsByUser = new HashMap<>();
+                for (Object[] pair : pairs) {
+                    roleIdsByUser.computeIfAbsent((Long) pair[0], id -> new ArrayList<>()).add((Long) pair[1]);
+                }
+                synchronized (this) {
+                    roleIdsByUser.forEach(this::setRoles);
+                }
+                users += ids.size();
+                after = ids.get(ids.size() - 1);
+            }
+            loading.succeed();
+            log.info("Cached the roles of {} MovieUsers", users);
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not cache the roles of the MovieUsers, reading them from the database until the next attempt:"
+                + " {}", e.getMessage());
+        } finally {
+            if (!loading.isLoaded()) {
+                loading.fail();
+            }
+        }
+    }
+
+    /**
+     * Builds the cache again if it could not be built.
+     */
+    @Scheduled(fixedDelayString = "${application.role-membership.warm-up-retry-interval-ms:60000}",
+        initialDelayString = "${application.role-membership.warm-up-retry-interval-ms:60000}")
+    public void retryWarmUp() {
+        if (loading.isIdle()) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Reloads the roles of a user, once the current transaction (if any) commits.
+     *
+     * @param movieUserId the id of the created, updated or deleted user.
+     */
+    public void invalidateMovieUser(Long movieUserId) {
+        afterCommit(() -> loading.apply(() -> reloadMovieUser(movieUserId)));
+    }
+
+    /**
+     * Reloads the members of a role, once the current transaction (if any) commits.
+     *
+     * @param roleId the id of the updated or deleted role, or of the role whose members changed.
+     */
+    public void invalidateRole(Long roleId) {
+        afterCommit(() -> loading.apply(() -> reloadRole(roleId)));
+    }
+
+    /**
+     * Tells whether a user has any of the given roles.
+     *
+     * @param movieUserId the id of the user.
+     * @param roleIds the ids of the roles.
+     * @return {@code true} if the user has one of the roles.
+     */
+    public boolean hasAnyRole(Long movieUserId, Collection<Long> roleIds) {
+        if (roleIds.isEmpty()) {
+            return false;
+        }
+        if (!loading.isLoaded()) {
+            return transactionTemplate.execute(status -> movieUserRepository.existsByIdAndRolesIdIn(movieUserId, roleIds));
+        }
+        long[] bits = userRoles.get(movieUserId);
+        if (bits == null) {
+            return false;
+        }
+        for (Long roleId : roleIds) {
+            Integer ordinal = ordinals.get(roleId);
+            if (ordinal != null && ordinal >>> 6 < bits.length && (bits[ordinal >>> 6] & (1L << ordinal)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the ids of the users with a role, in ascending order.
+     *
+     * @param roleId the id of the role.
+     * @param after the id of the last user received, or {@code null} to start from the first one.
+     * @param limit the maximum number of ids.
+     * @return the ids of the members of the role following {@code after}.
+     */
+    public List<Long> findMemberIds(Long roleId, Long after, int limit) {
+        if (!loading.isLoaded()) {
+            return transactionTemplate.execute(status -> movieUserRepository.findIdsByRoleIdAndIdGreaterThan(roleId,
+                after != null ? after : Long.MIN_VALUE, PageRequest.of(0, limit)));
+        }
+        long[] ids;
+        synchronized (this) {
+            CompressedBitmap bitmap = members.get(roleId);
+            if (bitmap == null || (after != null && after == Long.MAX_VALUE)) {
+                return Collections.emptyList();
+            }
+            ids = bitmap.toArray(after != null ? after + 1 : 0, limit);
+        }
+        List<Long> memberIds = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            memberIds.add(id);
+        }
+        return memberIds;
+    }
+
+    /**
+     * Reads the roles of a user while holding the lock, so that concurrent reloads apply in the order they read.
+     */
+    private void reloadMovieUser(Long movieUserId) {
+        try {
+            synchronized (this) {
+                setRoles(movieUserId, transactionTemplate.execute(status -> movieUserRepository.findRoleIdsById(movieUserId)));
+            }
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not reload the roles of MovieUser {}: {}", movieUserId, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the members of a role while holding the lock, so that concurrent reloads apply in the order they read.
+     */
+    private void reloadRole(Long roleId) {
+        try {
+            synchronized (this) {
+                Set<Long> current = new HashSet<>(transactionTemplate.execute(status -> movieUserRepository.findIdsByRoleId(roleId)));
+                CompressedBitmap bitmap = members.get(roleId);
+                if (bitmap != null) {
+                    for (long memberId : bitmap.toArray(0, Integer.MAX_VALUE)) {
+                        if (!current.remove(memberId)) {
+                            setRole(memberId, roleId, false);
+                        }
+                    }
+                }
+                current.forEach(memberId -> setRole(memberId, roleId, true));
+            }
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not reload the members of Role {}: {}", roleId, e.getMessage());
+        }
+    }
+
+    private void setRoles(Long movieUserId, Collection<Long> ids) {
+        long[] previous = userRoles.getOrDefault(movieUserId, new long[0]);
+        long[] bits = new long[0];
+        for (Long roleId : ids) {
+            int ordinal = ordinal(roleId);
+            if (ordinal >>> 6 >= bits.length) {
+                bits = Arrays.copyOf(bits, (ordinal >>> 6) + 1);
+            }
+            bits[ordinal >>> 6] |= 1L << ordinal;
+        }
+        for (int word = 0; word < Math.max(previous.length, bits.length); word++) {
+            long before = word < previous.length ? previous[word] : 0;
+            long after = word < bits.length ? bits[word] : 0;
+            for (long changed = before ^ after; changed != 0; changed &= changed - 1) {
+                int ordinal = word * 64 + Long.numberOfTrailingZeros(changed);
+                CompressedBitmap bitmap = members.computeIfAbsent(roleIds.get(ordinal), id -> new CompressedBitmap());
+                if ((after & Long.lowestOneBit(changed)) != 0) {
+                    bitmap.add(movieUserId);
+                } else {
+                    bitmap.remove(movieUserId);
+                }
+            }
+        }
+        publish(movieUserId, bits);
+    }
+
+    private void setRole(long movieUserId, Long roleId, boolean member) {
+        int ordinal = ordinal(roleId);
+        long[] previous = userRoles.getOrDefault(movieUserId, new long[0]);
+        long[] bits = Arrays.copyOf(previous, Math.max(previous.length, (ordinal >>> 6) + 1));
+        if (member) {
+            bits[ordinal >>> 6] |= 1L << ordinal;
+            members.computeIfAbsent(roleId, id -> new CompressedBitmap()).add(movieUserId);
+        } else {
+            bits[ordinal >>> 6] &= ~(1L << ordinal);
+            members.computeIfAbsent(roleId, id -> new CompressedBitmap()).remove(movieUserId);
+        }
+        publish(movieUserId, bits);
+    }
+
+    private void publish(Long movieUserId, long[] bits) {
+        int length = bits.length;
+        while (length > 0 && bits[length - 1] == 0) {
+            length--;
+        }
+        if (length == 0) {
+            userRoles.remove(movieUserId);
+        } else {
+            userRoles.put(movieUserId, length == bits.length ? bits : Arrays.copyOf(bits, length));
+        }
+    }
+
+    private int ordinal(Long roleId) {
+        Integer ordinal = ordinals.get(roleId);
+        if (ordinal == null) {
+            ordinal = roleIds.size();
+            roleIds.add(roleId);
+            ordinals.put(roleId, ordinal);
+        }
+        return ordinal;
+    }
+}
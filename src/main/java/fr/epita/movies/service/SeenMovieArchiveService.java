@@ -0,0 +1,216 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.util.SeenMovieSegment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.PersistenceException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Service class for the archive of old {@link fr.epita.movies.domain.SeenMovie}.
+ * <p>
+ * {@link #archive(ZonedDateTime)} moves the watch events dated before a cutoff out of the database into
+ * {@link SeenMovieSegment} files, then deletes them from the database in chunks. {@link #findBetween} reads a range of
+ * the watch events of a movie or a user from both, so that callers need not know where the live window starts: the
+ * segments outside the range are skipped on the dates of their footer, so a range within the live window only costs
+ * the database query.
+ * <p>
+ * A segment is complete before any of its watch events is deleted, and a watch event found in both a segment and the
+ * database, as after a crash between the two, is only returned once. Archived watch events no longer count as seen in
+ * {@link SeenMovieIndexService}, nor in the paged lists of the watch events of a movie or a user, which only read the
+ * database.
+ */
+@Service
+public class SeenMovieArchiveService {
+
+    /**
+     * Orders watch events by date, then id, as the history queries do.
+     */
+    public static final Comparator<SeenMovieDTO> BY_DATE_AND_ID = Comparator
+        .comparing((SeenMovieDTO seenMovie) -> seenMovie.getDate().toInstant())
+        .thenComparing(SeenMovieDTO::getId);
+
+    private static final String SEGMENT_PREFIX = "seen-movie-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Logger log = LoggerFactory.getLogger(SeenMovieArchiveService.class);
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final SeenMovieIndexService seenMovieIndexService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.SeenMovieArchive properties;
+
+    private final Path directory;
+
+    private final List<SeenMovieSegment> segments = new CopyOnWriteArrayList<>();
+
+    public SeenMovieArchiveService(SeenMovieRepository seenMovieRepository, SeenMovieIndexService seenMovieIndexService,
+                                   PlatformTransactionManager transactionManager,
+                                   ApplicationProperties applicationProperties) {
+        this.seenMovieRepository = seenMovieRepository;
+        this.seenMovieIndexService = seenMovieIndexService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getSeenMovieArchive();
+        this.directory = Paths.get(properties.getDirectory());
+    }
+
+    /**
+     * Maps the existing segments.
+     *
+     * @throws IOException if a segment could not be read.
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(SeenMovieSegment.open(file));
+            }
+        }
+        log.info("Mapped {} SeenMovie segments", segments.size());
+    }
+
+    /**
+     * Archives the watch events older than the retention, if enabled.
+     */
+    @Scheduled(cron = "${application.seen-movie-archive.cron:0 0 3 * * *}")
+    public void archive() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            archive(ZonedDateTime.now(ZoneOffset.UTC).minus(properties.getRetention()));
+        } catch (IOException | DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not archive the SeenMovies, retrying on the next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the watch events dated before a cutoff to new segments, then deletes them from the database.
+     *
+     * @param cutoff the date before which watch events are archived.
+     * @return the number of archived watch events.
+     * @throws IOException if a segment could not be written; the watch events not archived yet stay in the database.
+     */
+    public synchronized long archive(ZonedDateTime cutoff) throws IOException {
+        log.debug("Request to archive SeenMovies dated before {}", cutoff);
+        Files.createDirectories(directory);
+        long archived = 0;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            long after = lastId;
+            List<SeenMovieDTO> seenMovies = transactionTemplate.execute(status ->
+                seenMovieRepository.findDTOsByDateBeforeAndIdGreaterThan(cutoff, after, PageRequest.of(0, properties.getSegmentSize())));
+            if (seenMovies.isEmpty()) {
+                break;
+            }
+            lastId = seenMovies.get(seenMovies.size() - 1).getId();
+            Path file = directory.resolve(SEGMENT_PREFIX + seenMovies.get(0).getId() + "-" + lastId + "-" +
+                System.currentTimeMillis() + SEGMENT_SUFFIX);
+            segments.add(SeenMovieSegment.write(file, seenMovies, properties.getBlockSize()));
+            List<Long> ids = seenMovies.stream().map(SeenMovieDTO::getId).collect(Collectors.toList());
+            for (int start = 0; start < ids.size(); start += properties.getDeleteChunkSize()) {
+                List<Long> chunk = ids.subList(start, Math.min(start + properties.getDeleteChunkSize(), ids.size()));
+                transactionTemplate.execute(status -> seenMovieRepository.deleteByIdIn(chunk));
+            }
+            seenMovieIndexService.recheckAll(seenMovies);
+            archived += seenMovies.size();
+            log.info("Archived {} SeenMovies to {}", seenMovies.size(), file);
+        }
+        return archived;
+    }
+
+    /**
+     * Gets the first UTC day from which the database still holds every watch event.
+     *
+     * @return the day after that of the latest archived watch event, or empty if none was archived.
+     */
+    public Optional<LocalDate> findFirstLiveDay() {
+        OptionalLong maxDate = segments.stream().mapToLong(SeenMovieSegment::getMaxDate).max();
+        if (!maxDate.isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(Instant.ofEpochMilli(maxDate.getAsLong()).atZone(ZoneOffset.UTC).toLocalDate().plusDays(1));
+    }
+
+    /**
+     * Gets the watch events of a movie or a user dated in a range, from the database and the archive.
+     *
+     * @param movieId the id of the movie, or {@code null} to get the watch events of {@code movieUserId}.
+     * @param movieUserId the id of the user, if {@code movieId} is {@code null}.
+     * @param from the start of the range, included.
+     * @param after the id of the last watch event received, dated {@code from}, or {@code null} to start from the first.
+     * @param to the end of the range, excluded.
+     * @param limit the maximum number of watch events.
+     * @return the watch events following ({@code from}, {@code after}), ordered by date then id.
+     * @throws IOException if a segment could not be read.
+     */
+    public List<SeenMovieDTO> findBetween(Long movieId, Long movieUserId, ZonedDateTime from, Long after, ZonedDateTime to,
+                                          int limit) throws IOException {
+        long afterId = after != null ? after : Long.MIN_VALUE;
+        PageRequest page = PageRequest.of(0, limit);
+        List<SeenMovieDTO> live = movieId != null
+            ? seenMovieRepository.findDTOsByMovieIdAndDateBetweenAfter(movieId, from, afterId, to, page)
+            : seenMovieRepository.findDTOsByMovieUserIdAndDateBetweenAfter(movieUserId, from, afterId, to, page);
+        if (segments.isEmpty()) {
+            return live;
+        }
+        SeenMovieDTO cursor = new SeenMovieDTO(afterId, from, null, null);
+        PriorityQueue<SeenMovieDTO> archived = new PriorityQueue<>(limit + 1, BY_DATE_AND_ID.reversed());
+        for (SeenMovieSegment segment : segments) {
+            segment.scan(from, to, seenMovie -> {
+                boolean matches = movieId != null ? movieId.equals(seenMovie.getMovieId()) : movieUserId.equals(seenMovie.getMovieUserId());
+                if (matches && BY_DATE_AND_ID.compare(seenMovie, cursor) > 0) {
+                    archived.add(seenMovie);
+                    if (archived.size() > limit) {
+                        archived.poll();
+                    }
+                }
+            });
+        }
+        List<SeenMovieDTO> merged = new ArrayList<>(live);
+        merged.addAll(archived);
+        merged.sort(BY_DATE_AND_ID);
+        Set<Long> ids = new HashSet<>();
+        return merged.stream().filter(seenMovie -> ids.add(seenMovie.getId())).limit(limit).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,153 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.util.StripedFifoSet;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterRollback;
+
+/**
+ * Service class suppressing resent {@link fr.epita.movies.domain.SeenMovie}.
+ * <p>
+ * Two watch events are the same if they have the same user, movie and date truncated to
+ * {@code application.seen-movie-dedupe.granularity}. The events seen recently are remembered in memory, so that most
+ * resends are dropped before reaching the database; the unique constraint on {@code SeenMovie.dateBucket} rejects the
+ * others. Suppressed events are counted by the {@code seenmovie.duplicates.suppressed} metric.
+ */
+@Service
+public class SeenMovieDeduplicator {
+
+    private final long granularityMillis;
+
+    private final StripedFifoSet<Key> recentKeys;
+
+    private final Counter suppressedCounter;
+
+    public SeenMovieDeduplicator(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.SeenMovieDedupe properties = applicationProperties.getSeenMovieDedupe();
+        this.granularityMillis = properties.getGranularity().toMillis();
+        this.recentKeys = new StripedFifoSet<>(properties.getStripes(), properties.getWindowSize());
+        this.suppressedCounter = Counter.builder("seenmovie.duplicates.suppressed")
+            .description("Resent watch events dropped before being saved")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Truncates the date of a watch event to the dedupe granularity.
+     *
+     * @param date the date of the watch event.
+     * @return the start of the bucket of the date, in UTC.
+     */
+    public ZonedDateTime bucketOf(ZonedDateTime date) {
+        if (date == null) {
+            return null;
+        }
+        long millis = date.toInstant().toEpochMilli();
+        return Instant.ofEpochMilli(millis - Math.floorMod(millis, granularityMillis)).atZone(ZoneOffset.UTC);
+    }
+
+    /**
+     * Remembers a watch event unless the same one was seen recently.
+     * <p>
+     * If the current transaction rolls back, the event is forgotten so that it can be sent again.
+     *
+     * @param movieUserId the id of the user.
+     * @param movieId the id of the movie.
+     * @param date the date of the watch event.
+     * @return {@code false} if the event is a recent duplicate, {@code true} otherwise, including when it cannot be
+     * deduplicated because its user, movie or date is missing.
+     */
+    public boolean markSeen(Long movieUserId, Long movieId, ZonedDateTime date) {
+        Key key = keyOf(movieUserId, movieId, date);
+        if (key == null) {
+            return true;
+        }
+        if (!recentKeys.add(key)) {
+            suppressedCounter.increment();
+            return false;
+        }
+        afterRollback(() -> recentKeys.remove(key));
+        return true;
+    }
+
+    /**
+     * Remembers a batch of watch events, keeping those not seen recently.
+     *
+     * @param seenMovies the watch events.
+     * @return the watch events that are not recent duplicates, in order.
+     * @see #markSeen(Long, Long, ZonedDateTime)
+     */
+    public List<SeenMovieDTO> markSeen(List<SeenMovieDTO> seenMovies) {
+        List<SeenMovieDTO> result = new ArrayList<>(seenMovies.size());
+        for (SeenMovieDTO seenMovie : seenMovies) {
+            if (markSeen(seenMovie.getMovieUserId(), seenMovie.getMovieId(), seenMovie.getDate())) {
+                result.add(seenMovie);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets watch events that were remembered but not saved, so that they can be sent again.
+     *
+     * @param seenMovies the watch events.
+     */
+    public void forget(List<SeenMovieDTO> seenMovies) {
+        for (SeenMovieDTO seenMovie : seenMovies) {
+            Key key = keyOf(seenMovie.getMovieUserId(), seenMovie.getMovieId(), seenMovie.getDate());
+            if (key != null) {
+                recentKeys.remove(key);
+            }
+        }
+    }
+
+    private Key keyOf(Long movieUserId, Long movieId, ZonedDateTime date) {
+        if (movieUserId == null || movieId == null || date == null) {
+            return null;
+        }
+        return new Key(movieUserId, movieId, bucketOf(date).toInstant().toEpochMilli());
+    }
+
+    private static final class Key {
+
+        private final long movieUserId;
+
+        private final long movieId;
+
+        private final long bucket;
+
+        private Key(long movieUserId, long movieId, long bucket) {
+            this.movieUserId = movieUserId;
+            this.movieId = movieId;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return movieUserId == other.movieUserId && movieId == other.movieId && bucket == other.bucket;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(movieUserId, movieId, bucket);
+        }
+    }
+}
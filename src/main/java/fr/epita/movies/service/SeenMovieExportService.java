@@ -0,0 +1,64 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.util.SeenMovieColumnFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+/**
+ * Service class for the export of every {@link fr.epita.movies.domain.SeenMovie} as a {@link SeenMovieColumnFile}.
+ */
+@Service
+public class SeenMovieExportService {
+
+    private final Logger log = LoggerFactory.getLogger(SeenMovieExportService.class);
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final ApplicationProperties.SeenMovieExport properties;
+
+    public SeenMovieExportService(SeenMovieRepository seenMovieRepository, ApplicationProperties applicationProperties) {
+        this.seenMovieRepository = seenMovieRepository;
+        this.properties = applicationProperties.getSeenMovieExport();
+    }
+
+    /**
+     * Writes every watch event in id order, read off a server-side cursor.
+     * <p>
+     * Only the scalar columns are read, so nothing accumulates in the persistence context, and the watch events are
+     * written one row group at a time, so memory use does not depend on the size of the table. Archived watch events
+     * are not exported.
+     *
+     * @param out the stream the column file is written to, closed once written.
+     * @return the number of exported watch events.
+     * @throws IOException if the file could not be written.
+     */
+    @Transactional(readOnly = true)
+    public long export(OutputStream out) throws IOException {
+        log.debug("Request to export all SeenMovies");
+        try (SeenMovieColumnFile.Writer writer = SeenMovieColumnFile.writer(out, properties.getRowGroupSize());
+             Stream<SeenMovieDTO> seenMovies = seenMovieRepository.streamAllDTOs()) {
+            seenMovies.forEach(seenMovie -> {
+                try {
+                    writer.write(seenMovie);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Exported {} SeenMovies", writer.getRowCount());
+            return writer.getRowCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
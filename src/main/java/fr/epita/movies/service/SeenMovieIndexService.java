@@ -0,0 +1,258 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.util.CompressedBitmap;
+import fr.epita.movies.service.util.WarmUp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterCommit;
+
+/**
+ * Service class for the movies seen by each {@link fr.epita.movies.domain.MovieUser}, held in memory as one
+ * {@link CompressedBitmap} of movie ids per user.
+ * <p>
+ * The bitmaps are built from {@code seen_movie} in the background once the application is ready, and kept up to date
+ * once write transactions commit: a new watch event sets its bit, and a deleted or edited one clears it unless the
+ * database holds another watch of the same movie by the same user. Until the bitmaps are built,
+ * {@link #findSeen(Long, List)} reads the database; if they could not be, they are built again every
+ * {@code application.seen-movie-index.warm-up-retry-interval-ms}. Archived watch events are not indexed: their bits are
+ * checked again once they are deleted from the database, as for any other deleted watch event.
+ */
+@Service
+public class SeenMovieIndexService {
+
+    private final Logger log = LoggerFactory.getLogger(SeenMovieIndexService.class);
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.SeenMovieIndex properties;
+
+    /**
+     * Bitmaps by user id, each only accessed while holding its own lock.
+     */
+    private final ConcurrentMap<Long, CompressedBitmap> bitmaps = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the bitmaps are built, with the watches that may have been deleted while they were being built.
+     */
+    private final WarmUp loading = new WarmUp();
+
+    public SeenMovieIndexService(SeenMovieRepository seenMovieRepository, PlatformTransactionManager transactionManager,
+                                 ApplicationProperties applicationProperties) {
+        this.seenMovieRepository = seenMovieRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getSeenMovieIndex();
+    }
+
+    /**
+     * Builds the bitmaps from the watch events, in the background, once the application is ready.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!loading.start()) {
+            return;
+        }
+        try {
+            bitmaps.clear();
+            long indexed = 0;
+            long after = Long.MIN_VALUE;
+            while (true) {
+                long from = after;
+                List<SeenMovieDTO> seenMovies = transactionTemplate.execute(status ->
+                    seenMovieRepository.findDTOsByIdGreaterThan(from, PageRequest.of(0, properties.getLoadChunkSize())));
+                if (seenMovies.isEmpty()) {
+                    break;
+                }
+                seenMovies.forEach(seenMovie -> set(seenMovie.getMovieUserId(), seenMovie.getMovieId()));
+                indexed += seenMovies.size();
+                after = seenMovies.get(seenMovies.size() - 1).getId();
+            }
+            loading.succeed();
+            log.info("Indexed {} SeenMovies of {} MovieUsers", indexed, bitmaps.size());
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not index the SeenMovies, reading them from the database until the next attempt: {}",
+                e.getMessage());
+        } finally {
+            if (!loading.isLoaded()) {
+                loading.fail();
+            }
+        }
+    }
+
+    /**
+     * Builds the bitmaps again if they could not be built.
+     */
+    @Scheduled(fixedDelayString = "${application.seen-movie-index.warm-up-retry-interval-ms:60000}",
+        initialDelayString = "${application.seen-movie-index.warm-up-retry-interval-ms:60000}")
+    public void retryWarmUp() {
+        if (loading.isIdle()) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Marks a movie as seen by a user, once the current transaction (if any) commits.
+     *
+     * @param movieUserId the id of the user, or {@code null} to do nothing.
+     * @param movieId the id of the movie, or {@code null} to do nothing.
+     */
+    public void add(Long movieUserId, Long movieId) {
+        afterCommit(() -> {
+            if (!loading.isIdle()) {
+                set(movieUserId, movieId);
+            }
+        });
+    }
+
+    /**
+     * Marks a movie as no longer seen by a user unless the database holds a watch of it, once the current transaction
+     * (if any) commits.
+     *
+     * @param seenMovie the watch event that was deleted or edited.
+     */
+    public void recheck(SeenMovieDTO seenMovie) {
+        if (seenMovie.getMovieUserId() == null || seenMovie.getMovieId() == null) {
+            return;
+        }
+        afterCommit(() -> loading.apply(() -> check(seenMovie)));
+    }
+
+    /**
+     * Marks the movies of many watch events as no longer seen by their users unless the database holds a watch of them,
+     * once the current transaction (if any) commits, with one query per user.
+     *
+     * @param seenMovies the watch events that were deleted, as by the archive.
+     */
+    public void recheckAll(List<SeenMovieDTO> seenMovies) {
+        Map<Long, Set<Long>> movieIdsByUser = seenMovies.stream()
+            .filter(seenMovie -> seenMovie.getMovieUserId() != null && seenMovie.getMovieId() != null)
+            .collect(Collectors.groupingBy(SeenMovieDTO::getMovieUserId,
+                Collectors.mapping(SeenMovieDTO::getMovieId, Collectors.toSet())));
+        afterCommit(() -> movieIdsByUser.forEach((movieUserId, movieIds) ->
+            loading.apply(() -> check(movieUserId, movieIds))));
+    }
+
+    /**
+     * Forgets a user, once the current transaction (if any) commits.
+     *
+     * @param movieUserId the id of the deleted user.
+     */
+    public void removeUser(Long movieUserId) {
+        afterCommit(() -> bitmaps.remove(movieUserId));
+    }
+
+    /**
+     * Tells which of the given movies a user has seen.
+     *
+     * @param movieUserId the id of the user.
+     * @param movieIds the ids of the movies.
+     * @return the set whose bit {@code i} is set if the user has seen {@code movieIds.get(i)}.
+     */
+    public BitSet findSeen(Long movieUserId, List<Long> movieIds) {
+        BitSet seen = new BitSet(movieIds.size());
+        if (movieIds.isEmpty()) {
+            return seen;
+        }
+        if (!loading.isLoaded()) {
+            Set<Long> seenMovieIds = transactionTemplate.execute(status ->
+                seenMovieRepository.findMovieIdsByMovieUserIdAndMovieIdIn(movieUserId, movieIds));
+            for (int i = 0; i < movieIds.size(); i++) {
+                seen.set(i, seenMovieIds.contains(movieIds.get(i)));
+            }
+            return seen;
+        }
+        CompressedBitmap bitmap = bitmaps.get(movieUserId);
+        if (bitmap == null) {
+            return seen;
+        }
+        synchronized (bitmap) {
+            for (int i = 0; i < movieIds.size(); i++) {
+                Long movieId = movieIds.get(i);
+                seen.set(i, movieId != null && bitmap.contains(movieId));
+            }
+        }
+        return seen;
+    }
+
+    private void set(Long movieUserId, Long movieId) {
+        if (movieUserId == null || movieId == null) {
+            return;
+        }
+        CompressedBitmap bitmap = bitmaps.computeIfAbsent(movieUserId, id -> new CompressedBitmap());
+        synchronized (bitmap) {
+            bitmap.add(movieId);
+        }
+    }
+
+    /**
+     * Clears the bit of a watch unless the database holds another one, while holding the lock of the bitmap, so that a
+     * concurrent new watch of the same movie is either seen by the query or sets its bit afterwards.
+     */
+    private void check(SeenMovieDTO seenMovie) {
+        CompressedBitmap bitmap = bitmaps.get(seenMovie.getMovieUserId());
+        if (bitmap == null) {
+            return;
+        }
+        try {
+            synchronized (bitmap) {
+                boolean seen = transactionTemplate.execute(status ->
+                    seenMovieRepository.existsByMovieUserIdAndMovieId(seenMovie.getMovieUserId(), seenMovie.getMovieId()));
+                if (!seen) {
+                    bitmap.remove(seenMovie.getMovieId());
+                }
+            }
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not check whether MovieUser {} has seen Movie {}: {}", seenMovie.getMovieUserId(),
+                seenMovie.getMovieId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Clears the bits of movies unless the database holds a watch of them, as {@link #check(SeenMovieDTO)} does.
+     */
+    private void check(Long movieUserId, Set<Long> movieIds) {
+        CompressedBitmap bitmap = bitmaps.get(movieUserId);
+        if (bitmap == null) {
+            return;
+        }
+        try {
+            synchronized (bitmap) {
+                Set<Long> seenMovieIds = transactionTemplate.execute(status ->
+                    seenMovieRepository.findMovieIdsByMovieUserIdAndMovieIdIn(movieUserId, movieIds));
+                movieIds.stream().filter(movieId -> !seenMovieIds.contains(movieId)).forEach(bitmap::remove);
+            }
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not check which of {} Movies MovieUser {} has seen: {}", movieIds.size(), movieUserId,
+                e.getMessage());
+        }
+    }
+}
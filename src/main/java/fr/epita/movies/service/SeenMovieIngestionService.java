@@ -0,0 +1,204 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Service class for the write-behind ingestion of {@link fr.epita.movies.domain.SeenMovie}.
+ * <p>
+ * Accepted watch events wait in a bounded in-memory queue until {@link #flush()} writes them in chunks, each in its own
+ * transaction, so that clients reporting watches do not hold a database connection. The flush runs on a thread of its
+ * own rather than on the shared scheduling pool, where long jobs such as the archive or the rollup backfill would
+ * delay it until the queue fills up. Queued events are lost if the
+ * application stops abruptly: clients that cannot afford it save their events synchronously with
+ * {@link SeenMovieService#saveAll(List)} instead. A watch event already saved is counted as dropped when it is written
+ * again, which only happens if {@link SeenMovieDeduplicator} forgot it.
+ * <p>
+ * Metrics: {@code seenmovie.ingestion.queue.depth} (events accepted and not written yet),
+ * {@code seenmovie.ingestion.flush} (time to write a chunk), {@code seenmovie.ingestion.rejected} (events refused
+ * because the queue was full) and {@code seenmovie.ingestion.dropped} (events that could not be written).
+ */
+@Service
+public class SeenMovieIngestionService {
+
+    private final Logger log = LoggerFactory.getLogger(SeenMovieIngestionService.class);
+
+    private final SeenMovieService seenMovieService;
+
+    private final SeenMovieDeduplicator seenMovieDeduplicator;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.SeenMovieIngestion properties;
+
+    private final Queue<SeenMovieDTO> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Free room in the queue: a batch takes as many permits as it has events, which are given back once written.
+     */
+    private final Semaphore room;
+
+    private final Timer flushTimer;
+
+    private final Counter rejectedCounter;
+
+    private final Counter droppedCounter;
+
+    private ThreadPoolTaskScheduler flushScheduler;
+
+    public SeenMovieIngestionService(SeenMovieService seenMovieService, SeenMovieDeduplicator seenMovieDeduplicator,
+                                     PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+                                     MeterRegistry meterRegistry) {
+        this.seenMovieService = seenMovieService;
+        this.seenMovieDeduplicator = seenMovieDeduplicator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getSeenMovieIngestion();
+        this.room = new Semaphore(properties.getQueueCapacity());
+        Gauge.builder("seenmovie.ingestion.queue.depth", room, r -> properties.getQueueCapacity() - r.availablePermits())
+            .description("Watch events accepted and not written yet")
+            .register(meterRegistry);
+        this.flushTimer = Timer.builder("seenmovie.ingestion.flush")
+            .description("Time to write a chunk of queued watch events")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("seenmovie.ingestion.rejected")
+            .description("Watch events refused because the queue was full")
+            .register(meterRegistry);
+        this.droppedCounter = Counter.builder("seenmovie.ingestion.dropped")
+            .description("Queued watch events that could not be written")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts writing the queued watch events every {@code application.seen-movie-ingestion.flush-interval-ms}, in
+     * write-behind mode only, as nothing is queued otherwise.
+     */
+    @PostConstruct
+    public void start() {
+        if (!properties.isWriteBehind()) {
+            return;
+        }
+        flushScheduler = new ThreadPoolTaskScheduler();
+        flushScheduler.setThreadNamePrefix("movies-ingestion-");
+        flushScheduler.setWaitForTasksToCompleteOnShutdown(true);
+        flushScheduler.initialize();
+        flushScheduler.scheduleWithFixedDelay(this::flush, properties.getFlushIntervalMs());
+    }
+
+    /**
+     * Whether batches of watch events are queued rather than saved synchronously by default.
+     *
+     * @return {@code true} in write-behind mode.
+     */
+    public boolean isWriteBehind() {
+        return properties.isWriteBehind();
+    }
+
+    /**
+     * Queues a batch of watch events, except the recent duplicates, unless the queue cannot take all of them.
+     *
+     * @param seenMovies the watch events to save; their ids are ignored.
+     * @return {@code true} if the batch was queued, {@code false} if the queue is too full and nothing was queued.
+     */
+    public boolean offer(List<SeenMovieDTO> seenMovies) {
+        List<SeenMovieDTO> newSeenMovies = seenMovieDeduplicator.markSeen(seenMovies);
+        if (!room.tryAcquire(newSeenMovies.size())) {
+            seenMovieDeduplicator.forget(newSeenMovies);
+            rejectedCounter.increment(newSeenMovies.size());
+            return false;
+        }
+        queue.addAll(newSeenMovies);
+        return true;
+    }
+
+    /**
+     * Writes the queued watch events, in chunks of {@code application.seen-movie-ingestion.chunk-size}.
+     * <p>
+     * If a chunk cannot be written, its events are retried one by one so that a single invalid event, such as one
+     * referencing a deleted movie, does not drop the others. Room in the queue is given back whatever the outcome, as
+     * events that cannot be written are dropped rather than kept.
+     */
+    public synchronized void flush() {
+        List<SeenMovieDTO> chunk = new ArrayList<>(properties.getChunkSize());
+        do {
+            chunk.clear();
+            SeenMovieDTO seenMovie;
+            while (chunk.size() < properties.getChunkSize() && (seenMovie = queue.poll()) != null) {
+                chunk.add(seenMovie);
+            }
+            if (!chunk.isEmpty()) {
+                try {
+                    flushTimer.record(() -> write(chunk));
+                } finally {
+                    room.release(chunk.size());
+                }
+            }
+        } while (chunk.size() == properties.getChunkSize());
+    }
+
+    /**
+     * Writes the queued watch events before the application stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (flushScheduler == null) {
+            return;
+        }
+        flushScheduler.shutdown();
+        log.info("Writing the queued watch events before shutdown");
+        flush();
+    }
+
+    private void write(List<SeenMovieDTO> chunk) {
+        try {
+            transactionTemplate.execute(status -> seenMovieService.insertAll(chunk));
+            log.debug("Wrote {} queued SeenMovies", chunk.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not write {} queued SeenMovies, retrying one by one: {}", chunk.size(),
+                NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            chunk.forEach(this::writeOne);
+        }
+    }
+
+    private void writeOne(SeenMovieDTO seenMovie) {
+        try {
+            transactionTemplate.execute(status -> seenMovieService.insertAll(Collections.singletonList(seenMovie)));
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Dropped queued SeenMovie {}: {}", seenMovie, NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            drop(seenMovie);
+        } catch (RuntimeException e) {
+            log.error("Dropped queued SeenMovie {} on an unexpected error", seenMovie, e);
+            drop(seenMovie);
+        }
+    }
+
+    private void drop(SeenMovieDTO seenMovie) {
+        seenMovieDeduplicator.forget(Collections.singletonList(seenMovie));
+        droppedCounter.increment();
+    }
+}
@@ -0,0 +1,228 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.domain.SeenMovieDaily;
+import fr.epita.movies.repository.SeenMovieDailyRepository;
+import fr.epita.movies.service.dto.SeenMovieDailyDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Service class for the daily rollup of {@link fr.epita.movies.domain.SeenMovie}, stored in {@link SeenMovieDaily}.
+ * <p>
+ * {@link #update()} periodically recomputes the rollup of each (movie, day) that got watch events since the last run,
+ * found from a high-water mark on {@code seen_movie.id}. Recomputing rather than adding keeps {@code distinct_users}
+ * exact. Ids are handed out before their transaction commits, so a run only goes up to the largest id seen by the
+ * previous run, giving transactions in flight one interval to commit.
+ * <p>
+ * {@link #backfill()} rebuilds the whole rollup. It runs instead of the first update, or at startup when
+ * {@code application.seen-movie-rollup.backfill} is set.
+ * <p>
+ * The rollup of the days whose watch events may have been moved to the {@link SeenMovieArchiveService archive} is kept
+ * as it is: neither an update nor a backfill recomputes a day before {@link SeenMovieArchiveService#findFirstLiveDay()}.
+ */
+@Service
+public class SeenMovieRollupService {
+
+    static final String ROLLUP_NAME = "seen_movie_daily";
+
+    /**
+     * First day of the rollup when nothing was archived.
+     */
+    private static final LocalDate FIRST_DAY = LocalDate.of(1, 1, 1);
+
+    private final Logger log = LoggerFactory.getLogger(SeenMovieRollupService.class);
+
+    private final SeenMovieDailyRepository seenMovieDailyRepository;
+
+    private final SeenMovieArchiveService seenMovieArchiveService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.SeenMovieRollup properties;
+
+    private boolean backfillRequested;
+
+    /**
+     * Largest watch event id seen by the previous run, which the next run may roll up to; only accessed while holding
+     * the lock of this service.
+     */
+    private Long settledMaxId;
+
+    public SeenMovieRollupService(SeenMovieDailyRepository seenMovieDailyRepository, SeenMovieArchiveService seenMovieArchiveService,
+                                  PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties) {
+        this.seenMovieDailyRepository = seenMovieDailyRepository;
+        this.seenMovieArchiveService = seenMovieArchiveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getSeenMovieRollup();
+        this.backfillRequested = properties.isBackfill();
+    }
+
+    /**
+     * Get the daily rollup of a movie.
+     *
+     * @param movieId the id of the movie.
+     * @param from the first day, in UTC.
+     * @param to the day after the last one, in UTC.
+     * @return the views and distinct users of each day that has any, in day order.
+     */
+    @Transactional(readOnly = true)
+    public List<SeenMovieDailyDTO> findByMovieId(Long movieId, LocalDate from, LocalDate to) {
+        log.debug("Request to get the daily SeenMovies of Movie : {} from : {} to : {}", movieId, from, to);
+        return seenMovieDailyRepository.findDTOsByMovieIdAndDayBetween(movieId, from, to);
+    }
+
+    /**
+     * Rolls up the watch events added since the last run, or backfills the rollup if it was never built or a backfill
+     * was requested.
+     * <p>
+     * If the database cannot be updated, the high-water mark stays where it was and the next run starts over from it.
+     */
+    @Scheduled(fixedDelayString = "${application.seen-movie-rollup.update-interval-ms:60000}")
+    public synchronized void update() {
+        try {
+            Optional<Long> highWaterMark = transactionTemplate.execute(status ->
+                seenMovieDailyRepository.findHighWaterMark(ROLLUP_NAME));
+            if (backfillRequested || !highWaterMark.isPresent()) {
+                backfill();
+                return;
+            }
+            long from = highWaterMark.get();
+            Long to = settledMaxId;
+            settledMaxId = transactionTemplate.execute(status -> seenMovieDailyRepository.findMaxSeenMovieId().orElse(from));
+            if (to == null || to <= from) {
+                return;
+            }
+            LocalDate firstLiveDay = firstLiveDay();
+            int movieDays = transactionTemplate.execute(status -> {
+                List<Object[]> rows = seenMovieDailyRepository.findMovieDaysByIdBetween(from, to);
+                int recomputed = 0;
+                for (Object[] row : rows) {
+                    LocalDate day = toLocalDate(row[1]);
+                    if (!day.isBefore(firstLiveDay)) {
+                        recompute(((Number) row[0]).longValue(), day);
+                        recomputed++;
+                    }
+                }
+                saveHighWaterMark(to);
+                return recomputed;
+            });
+            log.debug("Rolled up the SeenMovies from id {} to {} into {} movie days", from, to, movieDays);
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not roll up the SeenMovies, retrying later: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the whole rollup.
+     * <p>
+     * The range of movie ids is split across a {@link ForkJoinPool}, each slice being rolled up by a single statement
+     * in its own transaction. Slices hold disjoint (movie, day) pairs, so {@code distinct_users} needs no merging and
+     * readers see either the old or the new rollup of each movie. Watch events added meanwhile are rolled up by the
+     * following updates. Only the days from {@link SeenMovieArchiveService#findFirstLiveDay()} are rebuilt, as the
+     * watch events of the earlier ones may be gone from the database.
+     */
+    public synchronized void backfill() {
+        log.info("Backfilling the daily SeenMovie rollup");
+        long maxId = transactionTemplate.execute(status -> seenMovieDailyRepository.findMaxSeenMovieId().orElse(0L));
+        Object[] range = transactionTemplate.execute(status -> seenMovieDailyRepository.findSeenMovieIdRange().get(0));
+        long fromMovieId = range[0] != null ? ((Number) range[0]).longValue() : 0L;
+        long toMovieId = range[1] != null ? ((Number) range[1]).longValue() + 1 : 0L;
+        ForkJoinPool pool = new ForkJoinPool(properties.getBackfillParallelism());
+        try {
+            pool.invoke(new BackfillAction(fromMovieId, toMovieId));
+        } finally {
+            pool.shutdown();
+        }
+        LocalDate firstLiveDay = firstLiveDay();
+        transactionTemplate.execute(status -> {
+            seenMovieDailyRepository.deleteByMovieIdNotBetweenAndDayGreaterThanEqual(fromMovieId, toMovieId, firstLiveDay);
+            saveHighWaterMark(maxId);
+            return null;
+        });
+        settledMaxId = maxId;
+        backfillRequested = false;
+        log.info("Backfilled the daily SeenMovie rollup up to id {}", maxId);
+    }
+
+    private void recompute(long movieId, LocalDate day) {
+        ZonedDateTime from = day.atStartOfDay(ZoneOffset.UTC);
+        seenMovieDailyRepository.deleteByMovieIdAndDay(movieId, day);
+        seenMovieDailyRepository.insertByMovieIdAndDateBetween(movieId, from, from.plusDays(1));
+    }
+
+    /**
+     * Gets the first day whose rollup can be recomputed from the database, checked before each statement as the
+     * archive may move on meanwhile.
+     */
+    private LocalDate firstLiveDay() {
+        return seenMovieArchiveService.findFirstLiveDay().orElse(FIRST_DAY);
+    }
+
+    private void saveHighWaterMark(long mark) {
+        if (seenMovieDailyRepository.updateHighWaterMark(ROLLUP_NAME, mark) == 0) {
+            seenMovieDailyRepository.insertHighWaterMark(ROLLUP_NAME, mark);
+        }
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof Date ? ((Date) value).toLocalDate() : (LocalDate) value;
+    }
+
+    /**
+     * Rolls up the movies with an id in {@code [fromMovieId, toMovieId)}, splitting the range in halves down to
+     * {@code application.seen-movie-rollup.backfill-slice-size} ids.
+     */
+    private final class BackfillAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long fromMovieId;
+
+        private final long toMovieId;
+
+        private BackfillAction(long fromMovieId, long toMovieId) {
+            this.fromMovieId = fromMovieId;
+            this.toMovieId = toMovieId;
+        }
+
+        @Override
+        protected void compute() {
+            if (toMovieId - fromMovieId > properties.getBackfillSliceSize()) {
+                long middle = fromMovieId + (toMovieId - fromMovieId) / 2;
+                invokeAll(new BackfillAction(fromMovieId, middle), new BackfillAction(middle, toMovieId));
+                return;
+            }
+            if (toMovieId <= fromMovieId) {
+                return;
+            }
+            LocalDate firstLiveDay = firstLiveDay();
+            int movieDays = transactionTemplate.execute(status -> {
+                seenMovieDailyRepository.deleteByMovieIdBetweenAndDayGreaterThanEqual(fromMovieId, toMovieId, firstLiveDay);
+                return seenMovieDailyRepository.insertByMovieIdBetweenAndDateGreaterThanEqual(fromMovieId, toMovieId,
+                    firstLiveDay.atStartOfDay(ZoneOffset.UTC));
+            });
+            log.debug("Backfilled movies {} to {} into {} movie days", fromMovieId, toMovieId, movieDays);
+        }
+    }
+}
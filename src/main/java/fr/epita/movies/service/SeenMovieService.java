@@ -0,0 +1,176 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.domain.Movie;
+import fr.epita.movies.domain.MovieUser;
+import fr.epita.movies.domain.SeenMovie;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Service class for managing {@link SeenMovie}.
+ * <p>
+ * Every write goes through this service, which keeps the view counts, reach and trend of the watched movies, the
+ * movies seen by each user and the also-watched engine up to date and, with {@link SeenMovieDeduplicator}, stores a resent watch event only once.
+ */
+@Service
+@Transactional
+public class SeenMovieService {
+
+    private final Logger log = LoggerFactory.getLogger(SeenMovieService.class);
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final MovieStatsService movieStatsService;
+
+    private final SeenMovieDeduplicator seenMovieDeduplicator;
+
+    private final AlsoWatchedService alsoWatchedService;
+
+    private final MovieReachService movieReachService;
+
+    private final TrendingService trendingService;
+
+    private final SeenMovieIndexService seenMovieIndexService;
+
+    private final EntityManager entityManager;
+
+    private final int batchSize;
+
+    public SeenMovieService(SeenMovieRepository seenMovieRepository, MovieStatsService movieStatsService,
+                            SeenMovieDeduplicator seenMovieDeduplicator, AlsoWatchedService alsoWatchedService,
+                            MovieReachService movieReachService, TrendingService trendingService,
+                            SeenMovieIndexService seenMovieIndexService, EntityManager entityManager,
+                            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:25}") int batchSize) {
+        this.seenMovieRepository = seenMovieRepository;
+        this.movieStatsService = movieStatsService;
+        this.seenMovieDeduplicator = seenMovieDeduplicator;
+        this.alsoWatchedService = alsoWatchedService;
+        this.movieReachService = movieReachService;
+        this.trendingService = trendingService;
+        this.seenMovieIndexService = seenMovieIndexService;
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Save a seenMovie.
+     * <p>
+     * A new seenMovie that was recently saved already is not saved again: the existing one is returned instead.
+     *
+     * @param seenMovie the seenMovie to save.
+     * @return the persisted seenMovie.
+     */
+    public SeenMovie save(SeenMovie seenMovie) {
+        log.debug("Request to save SeenMovie : {}", seenMovie);
+        seenMovie.setDateBucket(seenMovieDeduplicator.bucketOf(seenMovie.getDate()));
+        if (seenMovie.getId() == null) {
+            Long movieUserId = seenMovie.getMovieUser() == null ? null : seenMovie.getMovieUser().getId();
+            Long movieId = seenMovie.getMovie() == null ? null : seenMovie.getMovie().getId();
+            if (!seenMovieDeduplicator.markSeen(movieUserId, movieId, seenMovie.getDate())) {
+                Optional<SeenMovie> existing = seenMovieRepository
+                    .findFirstByMovieUserIdAndMovieIdAndDateBucket(movieUserId, movieId, seenMovie.getDateBucket());
+                if (existing.isPresent()) {
+                    log.debug("Suppressed resent SeenMovie : {}", seenMovie);
+                    return existing.get();
+                }
+            }
+        }
+        boolean isNew = seenMovie.getId() == null;
+        SeenMovieDTO previous = isNew ? null : seenMovieRepository.findDTOById(seenMovie.getId()).orElse(null);
+        Long previousMovieId = previous == null ? null : previous.getMovieId();
+        SeenMovie result = seenMovieRepository.save(seenMovie);
+        Long movieId = result.getMovie() == null ? null : result.getMovie().getId();
+        Long movieUserId = result.getMovieUser() == null ? null : result.getMovieUser().getId();
+        if (!Objects.equals(previousMovieId, movieId)) {
+            movieStatsService.addViews(previousMovieId, -1);
+            movieStatsService.addViews(movieId, 1);
+        }
+        if (previous != null && !(Objects.equals(previousMovieId, movieId) && Objects.equals(previous.getMovieUserId(), movieUserId))) {
+            seenMovieIndexService.recheck(previous);
+        }
+        seenMovieIndexService.add(movieUserId, movieId);
+        if (isNew) {
+            SeenMovieDTO seenMovieDTO = new SeenMovieDTO(result.getId(), result.getDate(), movieId, movieUserId);
+            alsoWatchedService.record(seenMovieDTO);
+            movieReachService.record(seenMovieDTO);
+            trendingService.record(seenMovieDTO);
+        }
+        return result;
+    }
+
+    /**
+     * Save new seenMovies in bulk, except those recently saved already.
+     *
+     * @param seenMovies the seenMovies to save; their ids are ignored.
+     * @return the number of saved seenMovies.
+     * @see #insertAll(List)
+     */
+    public int saveAll(List<SeenMovieDTO> seenMovies) {
+        return insertAll(seenMovieDeduplicator.markSeen(seenMovies));
+    }
+
+    /**
+     * Save new seenMovies in bulk, which {@link SeenMovieDeduplicator} has already checked.
+     * <p>
+     * The movies and users are referenced by id without being loaded, and the persistence context is flushed and
+     * cleared every {@code hibernate.jdbc.batch_size} seenMovies so that inserts go out as JDBC batches.
+     *
+     * @param seenMovies the seenMovies to save; their ids are ignored.
+     * @return the number of saved seenMovies.
+     */
+    public int insertAll(List<SeenMovieDTO> seenMovies) {
+        log.debug("Request to save {} SeenMovies", seenMovies.size());
+        for (int i = 0; i < seenMovies.size(); i++) {
+            SeenMovieDTO seenMovieDTO = seenMovies.get(i);
+            SeenMovie seenMovie = new SeenMovie()
+                .date(seenMovieDTO.getDate())
+                .movie(reference(Movie.class, seenMovieDTO.getMovieId()))
+                .movieUser(reference(MovieUser.class, seenMovieDTO.getMovieUserId()));
+            seenMovie.setDateBucket(seenMovieDeduplicator.bucketOf(seenMovieDTO.getDate()));
+            entityManager.persist(seenMovie);
+            movieStatsService.addViews(seenMovieDTO.getMovieId(), 1);
+            SeenMovieDTO persisted = new SeenMovieDTO(seenMovie.getId(), seenMovieDTO.getDate(), seenMovieDTO.getMovieId(),
+                seenMovieDTO.getMovieUserId());
+            alsoWatchedService.record(persisted);
+            movieReachService.record(persisted);
+            trendingService.record(persisted);
+            seenMovieIndexService.add(seenMovieDTO.getMovieUserId(), seenMovieDTO.getMovieId());
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        return seenMovies.size();
+    }
+
+    /**
+     * Delete the "id" seenMovie.
+     *
+     * @param id the id of the seenMovie.
+     */
+    public void delete(Long id) {
+        log.debug("Request to delete SeenMovie : {}", id);
+        SeenMovieDTO previous = seenMovieRepository.findDTOById(id).orElse(null);
+        seenMovieRepository.deleteById(id);
+        if (previous != null) {
+            movieStatsService.addViews(previous.getMovieId(), -1);
+            seenMovieIndexService.recheck(previous);
+        }
+    }
+
+    private <T> T reference(Class<T> entityClass, Long id) {
+        return id == null ? null : entityManager.getReference(entityClass, id);
+    }
+}
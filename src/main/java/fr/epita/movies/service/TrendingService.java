@@ -0,0 +1,274 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.MovieViewCountDTO;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import static fr.epita.movies.service.util.TransactionUtils.afterCommit;
+
+/**
+ * Service class for the trending {@link fr.epita.movies.domain.Movie}, the most watched over a recent window.
+ * <p>
+ * Each window is split into {@code buckets} buckets, and each watched movie has a ring of {@code buckets + 1} counters
+ * per window in a single {@link AtomicLongArray}: a watch event increments the counter of the bucket of its date with
+ * one atomic add, so recording never locks, even for concurrent watches of the same movie. The count of a movie over a
+ * window is the sum of its ring but for the counter of the next bucket, which {@link #recompute()} clears before it
+ * comes up: a window therefore slides one bucket at a time, and counts the whole of its oldest bucket.
+ * <p>
+ * {@link #recompute()} also periodically ranks the movies of each window and publishes the {@code topCapacity} most
+ * watched, so that {@link #findTrending(Duration, int)} never scans the counters. Edited or deleted watch events are
+ * not taken back.
+ */
+@Service
+public class TrendingService {
+
+    private static final Comparator<MovieViewCountDTO> MOST_VIEWED_FIRST = Comparator
+        .comparingLong(MovieViewCountDTO::getViewCount).reversed()
+        .thenComparing(MovieViewCountDTO::getMovieId);
+
+    private final Logger log = LoggerFactory.getLogger(TrendingService.class);
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Trending properties;
+
+    private final List<Duration> windows;
+
+    private final long[] bucketMillis;
+
+    private final int slots;
+
+    /**
+     * Counters by movie id, {@link #slots} per window. Counters are never removed, so that no concurrent watch can be
+     * lost to a removed one: there is one array per movie watched since startup.
+     */
+    private final ConcurrentMap<Long, AtomicLongArray> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Last bucket of each window whose counters were cleared, only accessed while holding the lock of this service.
+     */
+    private final long[] clearedBuckets;
+
+    /**
+     * Ids above {@link #replayedIdsAbove} of the watch events counted while replaying the recent ones at startup, or
+     * {@code null} outside of it.
+     */
+    private volatile Set<Long> replayedIds;
+
+    /**
+     * Largest id saved before the recent watch events are replayed, written before {@link #replayedIds} is published.
+     * Only the events committed since, whose ids come from later sequence values, can be both replayed and recorded, so
+     * only their ids are kept in {@link #replayedIds}, which is thus bounded by the traffic during the replay rather
+     * than by the events of the longest window.
+     */
+    private long replayedIdsAbove;
+
+    /**
+     * Trending movies by window, published after each recomputation for readers.
+     */
+    private volatile Map<Duration, List<MovieViewCountDTO>> topSnapshots = Collections.emptyMap();
+
+    public TrendingService(SeenMovieRepository seenMovieRepository, PlatformTransactionManager transactionManager,
+                           ApplicationProperties applicationProperties) {
+        this.seenMovieRepository = seenMovieRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getTrending();
+        this.windows = properties.getWindows().stream().distinct().sorted().collect(Collectors.toList());
+        this.slots = properties.getBuckets() + 1;
+        this.bucketMillis = new long[windows.size()];
+        this.clearedBuckets = new long[windows.size()];
+        long now = System.currentTimeMillis();
+        for (int window = 0; window < windows.size(); window++) {
+            bucketMillis[window] = Math.max(1, windows.get(window).toMillis() / properties.getBuckets());
+            clearedBuckets[window] = now / bucketMillis[window] + 1;
+        }
+    }
+
+    /**
+     * Counts the watch events of the longest window saved before startup, in the background, once the application is
+     * ready.
+     * <p>
+     * Watch events are read backwards from the most recent id until a whole chunk is older than the window, so that
+     * only the primary key is used.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long since = System.currentTimeMillis() - windows.get(windows.size() - 1).toMillis();
+        try {
+            Optional<Long> maxId = transactionTemplate.execute(status -> seenMovieRepository.findMaxId());
+            long above = maxId.orElse(Long.MIN_VALUE);
+            replayedIdsAbove = above;
+            Set<Long> replaying = ConcurrentHashMap.newKeySet();
+            replayedIds = replaying;
+            long replayed = 0;
+            long before = Long.MAX_VALUE;
+            while (true) {
+                long to = before;
+                List<SeenMovieDTO> seenMovies = transactionTemplate.execute(status ->
+                    seenMovieRepository.findDTOsByIdLessThan(to, PageRequest.of(0, properties.getReplayChunkSize())));
+                boolean recent = false;
+                for (SeenMovieDTO seenMovie : seenMovies) {
+                    if (seenMovie.getDate() != null && seenMovie.getDate().toInstant().toEpochMilli() >= since) {
+                        recent = true;
+                        if (seenMovie.getMovieId() != null
+                            && (seenMovie.getId() <= above || replaying.add(seenMovie.getId()))) {
+                            add(seenMovie.getMovieId(), seenMovie.getDate().toInstant().toEpochMilli());
+                            replayed++;
+                        }
+                    }
+                }
+                if (!recent) {
+                    break;
+                }
+                before = seenMovies.get(seenMovies.size() - 1).getId();
+            }
+            log.info("Counted {} recent SeenMovies in the trending Movies", replayed);
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            log.warn("Could not count the recent SeenMovies in the trending Movies: {}", e.getMessage());
+        } finally {
+            replayedIds = null;
+        }
+        recompute();
+    }
+
+    /**
+     * Counts a new watch event, once the current transaction (if any) commits.
+     *
+     * @param seenMovie the watch event, ignored unless it has a date and a movie.
+     */
+    public void record(SeenMovieDTO seenMovie) {
+        if (seenMovie.getDate() == null || seenMovie.getMovieId() == null) {
+            return;
+        }
+        afterCommit(() -> {
+            Set<Long> replaying = replayedIds;
+            if (replaying == null || seenMovie.getId() == null || seenMovie.getId() <= replayedIdsAbove
+                || replaying.add(seenMovie.getId())) {
+                add(seenMovie.getMovieId(), seenMovie.getDate().toInstant().toEpochMilli());
+            }
+        });
+    }
+
+    /**
+     * Gets the trending movies of a window.
+     *
+     * @param window one of {@link #getWindows()}.
+     * @param limit the maximum number of movies, at most {@link #getTopCapacity()}.
+     * @return the number of watch events of the most watched movies over the window, most watched first, as of the last
+     * recomputation.
+     */
+    public List<MovieViewCountDTO> findTrending(Duration window, int limit) {
+        List<MovieViewCountDTO> snapshot = topSnapshots.getOrDefault(window, Collections.emptyList());
+        return snapshot.subList(0, Math.min(limit, snapshot.size()));
+    }
+
+    /**
+     * @return the windows the watch events are counted over, shortest first.
+     */
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    /**
+     * @return the maximum limit of {@link #findTrending(Duration, int)}.
+     */
+    public int getTopCapacity() {
+        return properties.getTopCapacity();
+    }
+
+    /**
+     * Clears the counters of the buckets that are about to come up, then ranks the movies of each window.
+     * <p>
+     * If this runs late by more than a bucket, the watch events of the current bucket recorded meanwhile are cleared
+     * along with the expired ones.
+     */
+    @Scheduled(fixedDelayString = "${application.trending.recompute-interval-ms:5000}")
+    public synchronized void recompute() {
+        long now = System.currentTimeMillis();
+        Map<Duration, List<MovieViewCountDTO>> snapshots = new HashMap<>();
+        for (int window = 0; window < windows.size(); window++) {
+            long nextBucket = now / bucketMillis[window] + 1;
+            int offset = window * slots;
+            for (long bucket = Math.max(clearedBuckets[window] + 1, nextBucket - slots + 1); bucket <= nextBucket; bucket++) {
+                int slot = offset + (int) (bucket % slots);
+                counters.values().forEach(counts -> counts.set(slot, 0));
+            }
+            clearedBuckets[window] = nextBucket;
+            int nextSlot = (int) (nextBucket % slots);
+            PriorityQueue<MovieViewCountDTO> top = new PriorityQueue<>(getTopCapacity() + 1, MOST_VIEWED_FIRST.reversed());
+            counters.forEach((movieId, counts) -> {
+                long viewCount = 0;
+                for (int slot = 0; slot < slots; slot++) {
+                    if (slot != nextSlot) {
+                        viewCount += counts.get(offset + slot);
+                    }
+                }
+                if (viewCount > 0) {
+                    top.add(new MovieViewCountDTO(movieId, viewCount));
+                    if (top.size() > getTopCapacity()) {
+                        top.poll();
+                    }
+                }
+            });
+            List<MovieViewCountDTO> snapshot = new ArrayList<>(top);
+            snapshot.sort(MOST_VIEWED_FIRST);
+            snapshots.put(windows.get(window), Collections.unmodifiableList(snapshot));
+        }
+        topSnapshots = snapshots;
+    }
+
+    /**
+     * Increments the counters of a movie for the bucket of a date, in each window that still covers it. A date in the
+     * future counts in the current bucket.
+     */
+    void add(long movieId, long date) {
+        long now = System.currentTimeMillis();
+        AtomicLongArray counts = counters.get(movieId);
+        if (counts == null) {
+            counts = counters.computeIfAbsent(movieId, id -> new AtomicLongArray(windows.size() * slots));
+        }
+        for (int window = 0; window < windows.size(); window++) {
+            long currentBucket = now / bucketMillis[window];
+            long bucket = Math.min(date / bucketMillis[window], currentBucket);
+            if (bucket > currentBucket - slots + 1) {
+                counts.incrementAndGet(window * slots + (int) (bucket % slots));
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package fr.epita.movies.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for a movie watched by the users who watched another one, and how many of them did.
+ */
+public class AlsoWatchedDTO implements Serializable {
+
+    private Long movieId;
+
+    private long count;
+
+    public AlsoWatchedDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public AlsoWatchedDTO(Long movieId, long count) {
+        this.movieId = movieId;
+        this.count = count;
+    }
+
+    public Long getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(Long movieId) {
+        this.movieId = movieId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AlsoWatchedDTO)) {
+            return false;
+        }
+        AlsoWatchedDTO other = (AlsoWatchedDTO) o;
+        return Objects.equals(movieId, other.movieId) && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(movieId, count);
+    }
+
+    @Override
+    public String toString() {
+        return "AlsoWatchedDTO{" +
+            "movieId=" + getMovieId() +
+            ", count=" + getCount() +
+            "}";
+    }
+}
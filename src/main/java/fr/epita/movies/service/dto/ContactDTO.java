@@ -21,7 +21,20 @@ public class ContactDTO implements Serializable {
 
 
     private Long movieUserId;
-    
+
+    public ContactDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ContactDTO(Long id, String name, ZonedDateTime birthDate, String gender, String email, Long movieUserId) {
+        this.id = id;
+        this.name = name;
+        this.birthDate = birthDate;
+        this.gender = gender;
+        this.email = email;
+        this.movieUserId = movieUserId;
+    }
+
     public Long getId() {
         return id;
     }
@@ -17,7 +17,17 @@ public class MovieDTO implements Serializable {
 
     private String externalId;
 
-    
+    public MovieDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public MovieDTO(Long id, String title, ZonedDateTime date, String externalId) {
+        this.id = id;
+        this.title = title;
+        this.date = date;
+        this.externalId = externalId;
+    }
+
     public Long getId() {
         return id;
     }
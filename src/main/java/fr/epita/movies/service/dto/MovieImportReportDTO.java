@@ -0,0 +1,83 @@
+package fr.epita.movies.service.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO representing the outcome of a bulk movie import.
+ */
+public class MovieImportReportDTO {
+
+    private long imported;
+
+    private long rejected;
+
+    private List<RejectedRow> rejectedRows = new ArrayList<>();
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<RejectedRow> getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public void setRejectedRows(List<RejectedRow> rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieImportReportDTO{" +
+            "imported=" + getImported() +
+            ", rejected=" + getRejected() +
+            "}";
+    }
+
+    /**
+     * A row of the upload that was not imported.
+     */
+    public static class RejectedRow {
+
+        private long line;
+
+        private String reason;
+
+        public RejectedRow() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public RejectedRow(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public void setReason(String reason) {
+            this.reason = reason;
+        }
+    }
+}
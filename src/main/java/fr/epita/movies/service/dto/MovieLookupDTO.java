@@ -0,0 +1,44 @@
+package fr.epita.movies.service.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO representing the outcome of a lookup of movies by id.
+ */
+public class MovieLookupDTO {
+
+    private List<MovieDTO> movies = new ArrayList<>();
+
+    private List<Long> missingIds = new ArrayList<>();
+
+    /**
+     * @return the movies found, in the order their ids were requested.
+     */
+    public List<MovieDTO> getMovies() {
+        return movies;
+    }
+
+    public void setMovies(List<MovieDTO> movies) {
+        this.movies = movies;
+    }
+
+    /**
+     * @return the requested ids that match no movie, in the order they were requested.
+     */
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieLookupDTO{" +
+            "movies=" + getMovies().size() +
+            ", missingIds=" + getMissingIds() +
+            "}";
+    }
+}
@@ -0,0 +1,65 @@
+package fr.epita.movies.service.dto;
+
+import java.io.Serializable;
+import java.time.YearMonth;
+import java.util.Objects;
+
+/**
+ * A DTO for the number of {@link fr.epita.movies.domain.Movie} dated in a month.
+ */
+public class MovieMonthCountDTO implements Serializable {
+
+    private YearMonth month;
+
+    private long count;
+
+    public MovieMonthCountDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public MovieMonthCountDTO(Integer year, Integer month, Long count) {
+        this.month = YearMonth.of(year, month);
+        this.count = count;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public void setMonth(YearMonth month) {
+        this.month = month;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MovieMonthCountDTO)) {
+            return false;
+        }
+        MovieMonthCountDTO other = (MovieMonthCountDTO) o;
+        return Objects.equals(month, other.month) && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(month, count);
+    }
+
+    @Override
+    public String toString() {
+        return "MovieMonthCountDTO{" +
+            "month=" + getMonth() +
+            ", count=" + getCount() +
+            "}";
+    }
+}
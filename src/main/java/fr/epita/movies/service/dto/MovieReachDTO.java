@@ -0,0 +1,106 @@
+package fr.epita.movies.service.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * A DTO for the approximate number of distinct users who watched a {@link fr.epita.movies.domain.Movie} over a range
+ * of days, in UTC.
+ */
+public class MovieReachDTO implements Serializable {
+
+    private Long movieId;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    private long reach;
+
+    private double standardError;
+
+    public MovieReachDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public MovieReachDTO(Long movieId, LocalDate from, LocalDate to, long reach, double standardError) {
+        this.movieId = movieId;
+        this.from = from;
+        this.to = to;
+        this.reach = reach;
+        this.standardError = standardError;
+    }
+
+    public Long getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(Long movieId) {
+        this.movieId = movieId;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public long getReach() {
+        return reach;
+    }
+
+    public void setReach(long reach) {
+        this.reach = reach;
+    }
+
+    /**
+     * @return the relative standard error of {@link #getReach()}.
+     */
+    public double getStandardError() {
+        return standardError;
+    }
+
+    public void setStandardError(double standardError) {
+        this.standardError = standardError;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MovieReachDTO)) {
+            return false;
+        }
+        MovieReachDTO other = (MovieReachDTO) o;
+        return Objects.equals(movieId, other.movieId) && Objects.equals(from, other.from) && Objects.equals(to, other.to)
+            && reach == other.reach && standardError == other.standardError;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(movieId, from, to, reach, standardError);
+    }
+
+    @Override
+    public String toString() {
+        return "MovieReachDTO{" +
+            "movieId=" + getMovieId() +
+            ", from='" + getFrom() + "'" +
+            ", to='" + getTo() + "'" +
+            ", reach=" + getReach() +
+            ", standardError=" + getStandardError() +
+            "}";
+    }
+}
@@ -15,7 +15,20 @@ public class MovieUserDTO implements Serializable {
     private String username;
 
     private Set<RoleDTO> roles = new HashSet<>();
-    
+
+    public MovieUserDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    /**
+     * Creates a DTO without its roles, which are left {@code null} as for a movieUser whose roles are not loaded.
+     */
+    public MovieUserDTO(Long id, String username) {
+        this.id = id;
+        this.username = username;
+        this.roles = null;
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,64 @@
+package fr.epita.movies.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for the view count of a {@link fr.epita.movies.domain.Movie}.
+ */
+public class MovieViewCountDTO implements Serializable {
+
+    private Long movieId;
+
+    private long viewCount;
+
+    public MovieViewCountDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public MovieViewCountDTO(Long movieId, long viewCount) {
+        this.movieId = movieId;
+        this.viewCount = viewCount;
+    }
+
+    public Long getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(Long movieId) {
+        this.movieId = movieId;
+    }
+
+    public long getViewCount() {
+        return viewCount;
+    }
+
+    public void setViewCount(long viewCount) {
+        this.viewCount = viewCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MovieViewCountDTO)) {
+            return false;
+        }
+        MovieViewCountDTO other = (MovieViewCountDTO) o;
+        return Objects.equals(movieId, other.movieId) && viewCount == other.viewCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(movieId, viewCount);
+    }
+
+    @Override
+    public String toString() {
+        return "MovieViewCountDTO{" +
+            "movieId=" + getMovieId() +
+            ", viewCount=" + getViewCount() +
+            "}";
+    }
+}
@@ -0,0 +1,72 @@
+package fr.epita.movies.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO telling which of a list of {@link fr.epita.movies.domain.Movie} a {@link fr.epita.movies.domain.MovieUser}
+ * has seen.
+ */
+public class SeenFlagsDTO implements Serializable {
+
+    private int size;
+
+    private String bits;
+
+    public SeenFlagsDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public SeenFlagsDTO(int size, String bits) {
+        this.size = size;
+        this.bits = bits;
+    }
+
+    /**
+     * @return the number of movies asked about.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the flags in base64, little-endian: bit {@code i % 8} of byte {@code i / 8} is set if the user has seen
+     * the {@code i}-th movie. Trailing zero bytes are left out.
+     */
+    public String getBits() {
+        return bits;
+    }
+
+    public void setBits(String bits) {
+        this.bits = bits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeenFlagsDTO)) {
+            return false;
+        }
+        SeenFlagsDTO other = (SeenFlagsDTO) o;
+        return size == other.size && Objects.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, bits);
+    }
+
+    @Override
+    public String toString() {
+        return "SeenFlagsDTO{" +
+            "size=" + getSize() +
+            ", bits='" + getBits() + "'" +
+            "}";
+    }
+}
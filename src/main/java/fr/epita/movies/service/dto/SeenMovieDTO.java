@@ -17,7 +17,18 @@ public class SeenMovieDTO implements Serializable {
     private Long movieId;
 
     private Long movieUserId;
-    
+
+    public SeenMovieDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public SeenMovieDTO(Long id, ZonedDateTime date, Long movieId, Long movieUserId) {
+        this.id = id;
+        this.date = date;
+        this.movieId = movieId;
+        this.movieUserId = movieUserId;
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,77 @@
+package fr.epita.movies.service.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * A DTO for the watch events of a {@link fr.epita.movies.domain.Movie} on one day, in UTC.
+ */
+public class SeenMovieDailyDTO implements Serializable {
+
+    private LocalDate day;
+
+    private long views;
+
+    private long distinctUsers;
+
+    public SeenMovieDailyDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public SeenMovieDailyDTO(LocalDate day, long views, long distinctUsers) {
+        this.day = day;
+        this.views = views;
+        this.distinctUsers = distinctUsers;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public long getViews() {
+        return views;
+    }
+
+    public void setViews(long views) {
+        this.views = views;
+    }
+
+    public long getDistinctUsers() {
+        return distinctUsers;
+    }
+
+    public void setDistinctUsers(long distinctUsers) {
+        this.distinctUsers = distinctUsers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeenMovieDailyDTO)) {
+            return false;
+        }
+        SeenMovieDailyDTO other = (SeenMovieDailyDTO) o;
+        return Objects.equals(day, other.day) && views == other.views && distinctUsers == other.distinctUsers;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(day, views, distinctUsers);
+    }
+
+    @Override
+    public String toString() {
+        return "SeenMovieDailyDTO{" +
+            "day='" + getDay() + "'" +
+            ", views=" + getViews() +
+            ", distinctUsers=" + getDistinctUsers() +
+            "}";
+    }
+}
@@ -0,0 +1,89 @@
+package fr.epita.movies.service.dto;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * A DTO for an entry of the watch history of a {@link fr.epita.movies.domain.MovieUser}: a
+ * {@link fr.epita.movies.domain.SeenMovie} with the title of its movie.
+ */
+public class SeenMovieHistoryDTO implements Serializable {
+
+    private Long id;
+
+    private ZonedDateTime date;
+
+    private Long movieId;
+
+    private String movieTitle;
+
+    public SeenMovieHistoryDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public SeenMovieHistoryDTO(Long id, ZonedDateTime date, Long movieId, String movieTitle) {
+        this.id = id;
+        this.date = date;
+        this.movieId = movieId;
+        this.movieTitle = movieTitle;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(ZonedDateTime date) {
+        this.date = date;
+    }
+
+    public Long getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(Long movieId) {
+        this.movieId = movieId;
+    }
+
+    public String getMovieTitle() {
+        return movieTitle;
+    }
+
+    public void setMovieTitle(String movieTitle) {
+        this.movieTitle = movieTitle;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeenMovieHistoryDTO)) {
+            return false;
+        }
+        return id != null && id.equals(((SeenMovieHistoryDTO) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "SeenMovieHistoryDTO{" +
+            "id=" + getId() +
+            ", date='" + getDate() + "'" +
+            ", movieId=" + getMovieId() +
+            ", movieTitle='" + getMovieTitle() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,112 @@
+package fr.epita.movies.service.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The encodings shared by the file formats of archived and exported watch events: zigzag-encoded deltas, written as
+ * variable-length longs of 7 bits per byte, least significant first, in deflated blocks.
+ */
+final class BlockCodec {
+
+    private BlockCodec() {
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads a variable-length long.
+     *
+     * @param bytes the encoded bytes.
+     * @param position the position of the long in {@code bytes}, moved past it.
+     * @return the long.
+     */
+    static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Deflates a block into a stream.
+     *
+     * @param deflater the deflater, reset before use and left open.
+     * @param raw the bytes to deflate.
+     * @param chunk the buffer the deflated bytes go through.
+     * @param out the stream the deflated bytes are written to.
+     * @return the number of deflated bytes.
+     * @throws IOException if the stream could not be written.
+     */
+    static int deflate(Deflater deflater, byte[] raw, byte[] chunk, OutputStream out) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            int count = deflater.deflate(chunk);
+            out.write(chunk, 0, count);
+            length += count;
+        }
+        return length;
+    }
+
+    /**
+     * Inflates a block of a file.
+     *
+     * @param file the content of the file.
+     * @param offset the offset of the deflated block in the file.
+     * @param length the length of the deflated block.
+     * @param rawLength the length of the block once inflated.
+     * @return the inflated block.
+     * @throws DataFormatException if the block is corrupt or does not inflate to {@code rawLength} bytes.
+     */
+    static byte[] inflate(ByteBuffer file, long offset, int length, int rawLength) throws DataFormatException {
+        byte[] compressed = new byte[length];
+        ByteBuffer view = file.duplicate();
+        view.position((int) offset);
+        view.get(compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, raw.length - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != raw.length) {
+                throw new DataFormatException("Inflated " + read + " bytes instead of " + raw.length);
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+}
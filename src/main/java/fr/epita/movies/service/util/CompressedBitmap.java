@@ -0,0 +1,287 @@
+package fr.epita.movies.service.util;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative {@code long} values, laid out as a Roaring bitmap.
+ * <p>
+ * Values are grouped by their high bits into chunks of 65536, each held by a container in a sorted array: a chunk of
+ * at most {@value #ARRAY_CONTAINER_MAX} values is a sorted array of their low 16 bits, two bytes per value, and a
+ * denser chunk is a fixed 8 kB bitmap. Sets of a few values, such as the movies watched by a user, thus take a few
+ * bytes per value, while lookups stay a binary search at most.
+ * <p>
+ * A bitmap is not thread-safe.
+ */
+public class CompressedBitmap {
+
+    /**
+     * Maximum number of values of an array container: past it, a bitmap container is smaller.
+     */
+    static final int ARRAY_CONTAINER_MAX = 4096;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] keys = new long[0];
+
+    private Container[] containers = new Container[0];
+
+    private int size;
+
+    private long cardinality;
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value, which must not be negative.
+     * @return {@code true} if the value was not in the set yet.
+     */
+    public boolean add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        long key = value >>> 16;
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        if (!container.add((char) value)) {
+            return false;
+        }
+        if (container instanceof ArrayContainer && container.cardinality > ARRAY_CONTAINER_MAX) {
+            containers[index] = ((ArrayContainer) container).toBitmapContainer();
+        }
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value the value.
+     * @return {@code true} if the value was in the set.
+     */
+    public boolean remove(long value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, value >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        if (!container.remove((char) value)) {
+            return false;
+        }
+        if (container.cardinality == 0) {
+            removeContainer(index);
+        } else if (container instanceof BitmapContainer && container.cardinality <= ARRAY_CONTAINER_MAX) {
+            containers[index] = ((BitmapContainer) container).toArrayContainer();
+        }
+        cardinality--;
+        return true;
+    }
+
+    /**
+     * Tells whether a value is in the set.
+     *
+     * @param value the value.
+     * @return {@code true} if the value is in the set.
+     */
+    public boolean contains(long value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, value >>> 16);
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * Lists the values of the set from a given one, in ascending order.
+     *
+     * @param from the smallest value to list.
+     * @param limit the maximum number of values to list.
+     * @return the values.
+     */
+    public long[] toArray(long from, int limit) {
+        long start = Math.max(0, from);
+        long[] values = new long[(int) Math.min(limit, cardinality)];
+        int count = 0;
+        int index = Arrays.binarySearch(keys, 0, size, start >>> 16);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (; index < size && count < values.length; index++) {
+            int low = keys[index] == start >>> 16 ? (int) (start & 0xFFFF) : 0;
+            count = containers[index].copyTo(low, keys[index] << 16, values, count);
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * @return the number of values in the set.
+     */
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    private void insertContainer(int index, long key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private abstract static class Container {
+
+        int cardinality;
+
+        abstract boolean add(char value);
+
+        abstract boolean remove(char value);
+
+        abstract boolean contains(char value);
+
+        /**
+         * Copies the values of the container from {@code low}, with the given high bits, until {@code values} is full.
+         *
+         * @return the number of values in {@code values} afterwards.
+         */
+        abstract int copyTo(int low, long high, long[] values, int count);
+    }
+
+    /**
+     * The sorted low bits of the values of a sparse chunk.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values = new char[INITIAL_CAPACITY];
+
+        @Override
+        boolean add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length + (values.length >> 1) + 1, ARRAY_CONTAINER_MAX + 1));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return true;
+        }
+
+        @Override
+        boolean remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int copyTo(int low, long high, long[] values, int count) {
+            int index = Arrays.binarySearch(this.values, 0, cardinality, (char) low);
+            for (int i = index >= 0 ? index : -index - 1; i < cardinality && count < values.length; i++) {
+                values[count++] = high | this.values[i];
+            }
+            return count;
+        }
+
+        private BitmapContainer toBitmapContainer() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * One bit per possible value of a dense chunk.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words = new long[1 << 10];
+
+        @Override
+        boolean add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                return false;
+            }
+            words[value >>> 6] |= bit;
+            cardinality++;
+            return true;
+        }
+
+        @Override
+        boolean remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                return false;
+            }
+            words[value >>> 6] &= ~bit;
+            cardinality--;
+            return true;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int copyTo(int low, long high, long[] values, int count) {
+            for (int word = low >>> 6; word < words.length && count < values.length; word++) {
+                long bits = word == low >>> 6 ? words[word] & (-1L << low) : words[word];
+                while (bits != 0 && count < values.length) {
+                    values[count++] = high | (word * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return count;
+        }
+
+        private ArrayContainer toArrayContainer() {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[cardinality];
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+                while (bits != 0) {
+                    array.values[array.cardinality++] = (char) (word * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return array;
+        }
+    }
+}
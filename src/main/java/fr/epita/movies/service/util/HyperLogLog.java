@@ -0,0 +1,311 @@
+package fr.epita.movies.service.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch, estimating the number of distinct {@code long} values added to it.
+ * <p>
+ * The sketch has {@code 2^precision} one-byte registers and a standard error of about {@code 1.04 / sqrt(2^precision)},
+ * whatever the number of values. Two sketches of the same precision merge into the sketch of the union of their values,
+ * so that sketches of disjoint periods add up to the sketch of the whole period. Adding a value twice has no effect.
+ * <p>
+ * A sketch starts sparse, as a sorted array of its non-empty registers, and only allocates every register once more
+ * than an eighth of them are set, so that the many sketches of few values, as of a movie on a day, stay small.
+ * <p>
+ * A sketch is not thread-safe.
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+
+    public static final int MAX_PRECISION = 16;
+
+    private static final byte DENSE = 0;
+
+    private static final byte SPARSE = 1;
+
+    private final int precision;
+
+    /**
+     * The registers, or {@code null} while the sketch is sparse.
+     */
+    private byte[] registers;
+
+    /**
+     * The non-empty registers while the sketch is sparse, as {@code index << 8 | value}, sorted by index.
+     */
+    private int[] entries = new int[4];
+
+    private int entryCount;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param precision the number of index bits, between {@link #MIN_PRECISION} and {@link #MAX_PRECISION}.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * Reads a sketch written by {@link #toBytes()}.
+     *
+     * @param bytes the serialized sketch.
+     * @return the sketch.
+     * @throws IllegalArgumentException if the bytes are not a sketch.
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            byte format = buffer.get();
+            HyperLogLog sketch = new HyperLogLog(buffer.get());
+            if (format == DENSE) {
+                sketch.densify();
+                buffer.get(sketch.registers);
+            } else if (format == SPARSE) {
+                while (buffer.hasRemaining()) {
+                    int index = buffer.getShort() & 0xffff;
+                    if (index >= 1 << sketch.precision) {
+                        throw new IllegalArgumentException("Register " + index + " out of range");
+                    }
+                    sketch.set(index, buffer.get());
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown sketch format " + format);
+            }
+            return sketch;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Not a sketch", e);
+        }
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value the value to add.
+     */
+    public void add(long value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), Long.SIZE - precision) + 1;
+        set(index, rank);
+    }
+
+    /**
+     * Adds the values of another sketch to this one.
+     *
+     * @param other a sketch of the same precision.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge a sketch of precision " + other.precision + " into one of " + precision);
+        }
+        if (other.registers == null) {
+            for (int i = 0; i < other.entryCount; i++) {
+                set(other.entries[i] >>> 8, other.entries[i] & 0xff);
+            }
+            return;
+        }
+        densify();
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values added, using linear counting while many registers are still empty.
+     *
+     * @return the estimated number of distinct values.
+     */
+    public long estimate() {
+        int registerCount = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        if (registers == null) {
+            zeros = registerCount - entryCount;
+            sum = zeros;
+            for (int i = 0; i < entryCount; i++) {
+                sum += 1.0 / (1L << (entries[i] & 0xff));
+            }
+        } else {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        }
+        double estimate = alpha(registerCount) * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Tells whether no value was added.
+     *
+     * @return {@code true} if the sketch is empty.
+     */
+    public boolean isEmpty() {
+        if (registers == null) {
+            return entryCount == 0;
+        }
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serializes the sketch: a format byte, the precision, then either every register, or the index and value of the
+     * non-empty ones when that is shorter, as for the sketches of few values.
+     *
+     * @return the serialized sketch.
+     */
+    public byte[] toBytes() {
+        if (registers == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 + entryCount * 3);
+            buffer.put(SPARSE).put((byte) precision);
+            for (int i = 0; i < entryCount; i++) {
+                buffer.putShort((short) (entries[i] >>> 8)).put((byte) entries[i]);
+            }
+            return buffer.array();
+        }
+        int nonEmpty = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonEmpty++;
+            }
+        }
+        if (nonEmpty * 3 < registers.length) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 + nonEmpty * 3);
+            buffer.put(SPARSE).put((byte) precision);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    buffer.putShort((short) i).put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2 + registers.length);
+        buffer.put(DENSE).put((byte) precision).put(registers);
+        return buffer.array();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HyperLogLog)) {
+            return false;
+        }
+        HyperLogLog other = (HyperLogLog) o;
+        return precision == other.precision && Arrays.equals(toRegisters(), other.toRegisters());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toRegisters());
+    }
+
+    /**
+     * Raises a register to a value, if lower.
+     */
+    private void set(int index, int value) {
+        if (registers != null) {
+            if (value > registers[index]) {
+                registers[index] = (byte) value;
+            }
+            return;
+        }
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleIndex = entries[middle] >>> 8;
+            if (middleIndex < index) {
+                low = middle + 1;
+            } else if (middleIndex > index) {
+                high = middle - 1;
+            } else {
+                if (value > (entries[middle] & 0xff)) {
+                    entries[middle] = index << 8 | value;
+                }
+                return;
+            }
+        }
+        if (entryCount == (1 << precision) / 8) {
+            densify();
+            registers[index] = (byte) value;
+            return;
+        }
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        System.arraycopy(entries, low, entries, low + 1, entryCount - low);
+        entries[low] = index << 8 | value;
+        entryCount++;
+    }
+
+    /**
+     * Allocates every register, if the sketch is sparse.
+     */
+    private void densify() {
+        if (registers == null) {
+            registers = toRegisters();
+            entries = null;
+            entryCount = 0;
+        }
+    }
+
+    private byte[] toRegisters() {
+        if (registers != null) {
+            return registers;
+        }
+        byte[] dense = new byte[1 << precision];
+        for (int i = 0; i < entryCount; i++) {
+            dense[entries[i] >>> 8] = (byte) entries[i];
+        }
+        return dense;
+    }
+
+    private static double alpha(int registerCount) {
+        switch (registerCount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+
+    /**
+     * The MurmurHash3 finalizer, which spreads consecutive ids over the whole range.
+     */
+    static long hash(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
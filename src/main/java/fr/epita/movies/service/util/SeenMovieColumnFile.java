@@ -0,0 +1,369 @@
+package fr.epita.movies.service.util;
+
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import static fr.epita.movies.service.util.BlockCodec.inflate;
+import static fr.epita.movies.service.util.BlockCodec.readVarLong;
+import static fr.epita.movies.service.util.BlockCodec.unzigzag;
+import static fr.epita.movies.service.util.BlockCodec.writeVarLong;
+import static fr.epita.movies.service.util.BlockCodec.zigzag;
+
+/**
+ * A columnar export of {@link fr.epita.movies.domain.SeenMovie}, written in a single pass to a stream.
+ * <p>
+ * The file starts with {@link #MAGIC}, then holds row groups of up to {@code rowGroupSize} watch events, then a footer
+ * and a fixed-size trailer:
+ * <ul>
+ *     <li>a row group holds one deflated chunk per column of {@link #COLUMNS}, in order: the id, the date in epoch
+ *     milliseconds, the movie id and the movie user id. A chunk is a sequence of variable-length longs, one per row,
+ *     {@code 0} meaning none and any other value being the zigzag-encoded delta from the previous value of the chunk,
+ *     plus one;</li>
+ *     <li>the footer holds the number of columns and rows, the number of row groups, then the number of rows of each
+ *     row group followed by the offset, compressed and uncompressed length, null count, and min and max value of each
+ *     of its chunks;</li>
+ *     <li>the trailer holds the offset of the footer and {@link #MAGIC}.</li>
+ * </ul>
+ * The min and max values of the footer let a reader skip the row groups outside the range it looks for, and read only
+ * the columns it needs. Memory use while writing depends on the row group size only.
+ */
+public final class SeenMovieColumnFile {
+
+    static final int MAGIC = 0x534d4331;
+
+    /**
+     * Names of the columns, in file order.
+     */
+    public static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList("id", "date", "movie_id", "movie_user_id"));
+
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private SeenMovieColumnFile() {
+    }
+
+    /**
+     * Starts writing a file.
+     *
+     * @param out the stream the file is written to, closed with the writer.
+     * @param rowGroupSize the maximum number of watch events per row group.
+     * @return the writer.
+     * @throws IOException if the header could not be written.
+     */
+    public static Writer writer(OutputStream out, int rowGroupSize) throws IOException {
+        return new Writer(out, rowGroupSize);
+    }
+
+    /**
+     * Reads the row groups of a file from its footer.
+     *
+     * @param file the content of the file.
+     * @return the row groups, in file order.
+     * @throws IOException if the content is not such a file.
+     */
+    public static List<RowGroup> readRowGroups(ByteBuffer file) throws IOException {
+        if (file.capacity() < Integer.BYTES + TRAILER_SIZE || file.getInt(0) != MAGIC
+            || file.getInt(file.capacity() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a SeenMovie column file");
+        }
+        ByteBuffer footer = file.duplicate();
+        footer.position((int) file.getLong(file.capacity() - TRAILER_SIZE));
+        int columnCount = footer.getInt();
+        footer.getLong();
+        List<RowGroup> rowGroups = new ArrayList<>();
+        for (int group = footer.getInt(); group > 0; group--) {
+            int rowCount = footer.getInt();
+            ColumnChunk[] chunks = new ColumnChunk[columnCount];
+            for (int column = 0; column < columnCount; column++) {
+                chunks[column] = new ColumnChunk(footer.getLong(), footer.getInt(), footer.getInt(), footer.getInt(),
+                    footer.getLong(), footer.getLong());
+            }
+            rowGroups.add(new RowGroup(rowCount, chunks));
+        }
+        return rowGroups;
+    }
+
+    /**
+     * Reads every watch event of a file, in the order they were written.
+     *
+     * @param file the content of the file.
+     * @param action the callback invoked for each watch event.
+     * @throws IOException if the content is not such a file or a chunk is corrupt.
+     */
+    public static void scan(ByteBuffer file, Consumer<SeenMovieDTO> action) throws IOException {
+        for (RowGroup rowGroup : readRowGroups(file)) {
+            Long[][] columns = new Long[COLUMNS.size()][];
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = decode(file, rowGroup.getColumn(column), rowGroup.getRowCount());
+            }
+            for (int row = 0; row < rowGroup.getRowCount(); row++) {
+                Long date = columns[1][row];
+                action.accept(new SeenMovieDTO(columns[0][row],
+                    date != null ? ZonedDateTime.ofInstant(Instant.ofEpochMilli(date), ZoneOffset.UTC) : null,
+                    columns[2][row], columns[3][row]));
+            }
+        }
+    }
+
+    private static Long[] decode(ByteBuffer file, ColumnChunk chunk, int rowCount) throws IOException {
+        byte[] raw;
+        try {
+            raw = inflate(file, chunk.offset, chunk.length, chunk.rawLength);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt chunk at offset " + chunk.offset, e);
+        }
+        Long[] values = new Long[rowCount];
+        int[] position = {0};
+        long previous = 0;
+        for (int row = 0; row < rowCount; row++) {
+            long encoded = readVarLong(raw, position);
+            if (encoded != 0) {
+                previous += unzigzag(encoded - 1);
+                values[row] = previous;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes watch events to a column file, one row group at a time.
+     */
+    public static final class Writer implements Closeable {
+
+        private final OutputStream out;
+
+        private final int rowGroupSize;
+
+        private final ColumnBuffer[] columns = new ColumnBuffer[COLUMNS.size()];
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        private final byte[] deflated = new byte[64 * 1024];
+
+        private final ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream footer = new DataOutputStream(footerBytes);
+
+        private long offset;
+
+        private int rowGroupCount;
+
+        private int rows;
+
+        private long totalRows;
+
+        private Writer(OutputStream out, int rowGroupSize) throws IOException {
+            if (rowGroupSize < 1) {
+                throw new IllegalArgumentException("Row group size must be positive: " + rowGroupSize);
+            }
+            this.out = out;
+            this.rowGroupSize = rowGroupSize;
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = new ColumnBuffer();
+            }
+            writeInt(MAGIC);
+        }
+
+        /**
+         * Appends a watch event, writing the current row group once full.
+         *
+         * @param seenMovie the watch event.
+         * @throws IOException if the row group could not be written.
+         */
+        public void write(SeenMovieDTO seenMovie) throws IOException {
+            columns[0].add(seenMovie.getId());
+            columns[1].add(seenMovie.getDate() != null ? seenMovie.getDate().toInstant().toEpochMilli() : null);
+            columns[2].add(seenMovie.getMovieId());
+            columns[3].add(seenMovie.getMovieUserId());
+            if (++rows == rowGroupSize) {
+                writeRowGroup();
+            }
+        }
+
+        /**
+         * @return the number of watch events written so far.
+         */
+        public long getRowCount() {
+            return totalRows + rows;
+        }
+
+        /**
+         * Writes the last row group, the footer and the trailer, then closes the stream.
+         *
+         * @throws IOException if the end of the file could not be written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (rows > 0) {
+                    writeRowGroup();
+                }
+                long footerOffset = offset;
+                DataOutputStream header = new DataOutputStream(out);
+                header.writeInt(columns.length);
+                header.writeLong(totalRows);
+                header.writeInt(rowGroupCount);
+                footerBytes.writeTo(out);
+                header.writeLong(footerOffset);
+                header.writeInt(MAGIC);
+                header.flush();
+            } finally {
+                deflater.end();
+                out.close();
+            }
+        }
+
+        private void writeRowGroup() throws IOException {
+            footer.writeInt(rows);
+            for (ColumnBuffer column : columns) {
+                footer.writeLong(offset);
+                footer.writeInt(deflate(column.raw));
+                footer.writeInt(column.raw.size());
+                footer.writeInt(column.nullCount);
+                footer.writeLong(column.min);
+                footer.writeLong(column.max);
+                column.reset();
+            }
+            rowGroupCount++;
+            totalRows += rows;
+            rows = 0;
+        }
+
+        private int deflate(ByteArrayOutputStream raw) throws IOException {
+            int length = BlockCodec.deflate(deflater, raw.toByteArray(), deflated, out);
+            offset += length;
+            return length;
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+            offset += Integer.BYTES;
+        }
+    }
+
+    /**
+     * The encoded values of a column of the current row group, with their statistics.
+     */
+    private static final class ColumnBuffer {
+
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+
+        private long previous;
+
+        private int nullCount;
+
+        private long min = Long.MAX_VALUE;
+
+        private long max = Long.MIN_VALUE;
+
+        private void add(Long value) {
+            if (value == null) {
+                raw.write(0);
+                nullCount++;
+                return;
+            }
+            writeVarLong(raw, zigzag(value - previous) + 1);
+            previous = value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        private void reset() {
+            raw.reset();
+            previous = 0;
+            nullCount = 0;
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * The chunks of a row group, as described by the footer.
+     */
+    public static final class RowGroup {
+
+        private final int rowCount;
+
+        private final ColumnChunk[] columns;
+
+        private RowGroup(int rowCount, ColumnChunk[] columns) {
+            this.rowCount = rowCount;
+            this.columns = columns;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @param column the index of the column in {@link #COLUMNS}.
+         * @return the chunk of the column.
+         */
+        public ColumnChunk getColumn(int column) {
+            return columns[column];
+        }
+    }
+
+    /**
+     * The location and statistics of a chunk, as described by the footer.
+     */
+    public static final class ColumnChunk {
+
+        private final long offset;
+
+        private final int length;
+
+        private final int rawLength;
+
+        private final int nullCount;
+
+        private final long min;
+
+        private final long max;
+
+        private ColumnChunk(long offset, int length, int rawLength, int nullCount, long min, long max) {
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.nullCount = nullCount;
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getNullCount() {
+            return nullCount;
+        }
+
+        /**
+         * @return the smallest value of the chunk, or {@link Long#MAX_VALUE} if it only holds nulls.
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * @return the largest value of the chunk, or {@link Long#MIN_VALUE} if it only holds nulls.
+         */
+        public long getMax() {
+            return max;
+        }
+    }
+}
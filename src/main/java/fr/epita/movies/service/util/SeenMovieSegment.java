@@ -0,0 +1,243 @@
+package fr.epita.movies.service.util;
+
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import static fr.epita.movies.service.util.BlockCodec.deflate;
+import static fr.epita.movies.service.util.BlockCodec.inflate;
+import static fr.epita.movies.service.util.BlockCodec.readVarLong;
+import static fr.epita.movies.service.util.BlockCodec.unzigzag;
+import static fr.epita.movies.service.util.BlockCodec.writeVarLong;
+import static fr.epita.movies.service.util.BlockCodec.zigzag;
+
+/**
+ * An append-only file of archived {@link fr.epita.movies.domain.SeenMovie}, read through a memory mapping.
+ * <p>
+ * The file holds blocks of watch events, each deflated on its own, then a footer and a fixed-size trailer:
+ * <ul>
+ *     <li>a block is a sequence of watch events, each as four variable-length longs: the id and the date, in epoch
+ *     milliseconds, as zigzag-encoded deltas from the previous event, then the movie id and the movie user id plus one,
+ *     {@code 0} meaning none;</li>
+ *     <li>the footer holds the number of blocks, then the offset, compressed and uncompressed length, and min and max
+ *     date of each block, then the min date, max date and number of events of the whole segment;</li>
+ *     <li>the trailer holds the offset of the footer and {@link #MAGIC}.</li>
+ * </ul>
+ * The dates of the footer let a reader skip the segments and blocks outside the range it looks for, without inflating them.
+ * A segment is written to a temporary file which is then renamed, so that a segment file is always complete.
+ */
+public final class SeenMovieSegment {
+
+    static final int MAGIC = 0x534d5331;
+
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+
+    private final MappedByteBuffer buffer;
+
+    private final Block[] blocks;
+
+    private final long minDate;
+
+    private final long maxDate;
+
+    private final long count;
+
+    private SeenMovieSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < TRAILER_SIZE || buffer.getInt(buffer.capacity() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a SeenMovie segment: " + path);
+        }
+        ByteBuffer footer = buffer.duplicate();
+        footer.position((int) buffer.getLong(buffer.capacity() - TRAILER_SIZE));
+        this.blocks = new Block[footer.getInt()];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new Block(footer.getLong(), footer.getInt(), footer.getInt(), footer.getLong(), footer.getLong());
+        }
+        this.minDate = footer.getLong();
+        this.maxDate = footer.getLong();
+        this.count = footer.getLong();
+    }
+
+    /**
+     * Writes watch events to a new segment.
+     *
+     * @param path the path of the segment, which must not exist.
+     * @param seenMovies the watch events, all dated.
+     * @param blockSize the number of watch events per block.
+     * @return the written segment.
+     * @throws IOException if the segment could not be written.
+     */
+    public static SeenMovieSegment write(Path path, List<SeenMovieDTO> seenMovies, int blockSize) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+        DataOutputStream footer = new DataOutputStream(footerBytes);
+        long offset = 0;
+        long minDate = Long.MAX_VALUE;
+        long maxDate = Long.MIN_VALUE;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] chunk = new byte[8192];
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            int blockCount = (seenMovies.size() + blockSize - 1) / blockSize;
+            footer.writeInt(blockCount);
+            for (int start = 0; start < seenMovies.size(); start += blockSize) {
+                List<SeenMovieDTO> block = seenMovies.subList(start, Math.min(start + blockSize, seenMovies.size()));
+                ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                long blockMinDate = Long.MAX_VALUE;
+                long blockMaxDate = Long.MIN_VALUE;
+                long previousId = 0;
+                long previousDate = 0;
+                for (SeenMovieDTO seenMovie : block) {
+                    long date = seenMovie.getDate().toInstant().toEpochMilli();
+                    writeVarLong(raw, zigzag(seenMovie.getId() - previousId));
+                    writeVarLong(raw, zigzag(date - previousDate));
+                    writeVarLong(raw, seenMovie.getMovieId() != null ? seenMovie.getMovieId() + 1 : 0);
+                    writeVarLong(raw, seenMovie.getMovieUserId() != null ? seenMovie.getMovieUserId() + 1 : 0);
+                    previousId = seenMovie.getId();
+                    previousDate = date;
+                    blockMinDate = Math.min(blockMinDate, date);
+                    blockMaxDate = Math.max(blockMaxDate, date);
+                }
+                int length = deflate(deflater, raw.toByteArray(), chunk, out);
+                footer.writeLong(offset);
+                footer.writeInt(length);
+                footer.writeInt(raw.size());
+                footer.writeLong(blockMinDate);
+                footer.writeLong(blockMaxDate);
+                offset += length;
+                minDate = Math.min(minDate, blockMinDate);
+                maxDate = Math.max(maxDate, blockMaxDate);
+            }
+            footer.writeLong(minDate);
+            footer.writeLong(maxDate);
+            footer.writeLong(seenMovies.size());
+            footer.writeLong(offset);
+            footer.writeInt(MAGIC);
+            footerBytes.writeTo(out);
+            channel.force(true);
+        } finally {
+            deflater.end();
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    /**
+     * Maps an existing segment.
+     *
+     * @param path the path of the segment.
+     * @return the segment.
+     * @throws IOException if the file could not be read or is not a segment.
+     */
+    public static SeenMovieSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SeenMovieSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the date of the oldest watch event, in epoch milliseconds.
+     */
+    public long getMinDate() {
+        return minDate;
+    }
+
+    /**
+     * @return the date of the most recent watch event, in epoch milliseconds.
+     */
+    public long getMaxDate() {
+        return maxDate;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Reads the watch events dated in a range, in the order they were written, inflating only the blocks that may
+     * hold some.
+     *
+     * @param from the start of the range, included.
+     * @param to the end of the range, excluded.
+     * @param action the callback invoked for each watch event of the range.
+     * @throws IOException if a block is corrupt.
+     */
+    public void scan(ZonedDateTime from, ZonedDateTime to, Consumer<SeenMovieDTO> action) throws IOException {
+        long fromMillis = from.toInstant().toEpochMilli();
+        long toMillis = to.toInstant().toEpochMilli();
+        if (maxDate < fromMillis || minDate >= toMillis) {
+            return;
+        }
+        for (Block block : blocks) {
+            if (block.maxDate < fromMillis || block.minDate >= toMillis) {
+                continue;
+            }
+            byte[] raw;
+            try {
+                raw = inflate(buffer, block.offset, block.length, block.rawLength);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block at offset " + block.offset + " of " + path, e);
+            }
+            int[] position = {0};
+            long id = 0;
+            long date = 0;
+            while (position[0] < raw.length) {
+                id += unzigzag(readVarLong(raw, position));
+                date += unzigzag(readVarLong(raw, position));
+                long movieId = readVarLong(raw, position);
+                long movieUserId = readVarLong(raw, position);
+                if (date >= fromMillis && date < toMillis) {
+                    action.accept(new SeenMovieDTO(id, ZonedDateTime.ofInstant(Instant.ofEpochMilli(date), ZoneOffset.UTC),
+                        movieId != 0 ? movieId - 1 : null, movieUserId != 0 ? movieUserId - 1 : null));
+                }
+            }
+        }
+    }
+
+    private static final class Block {
+
+        private final long offset;
+
+        private final int length;
+
+        private final int rawLength;
+
+        private final long minDate;
+
+        private final long maxDate;
+
+        private Block(long offset, int length, int rawLength, long minDate, long maxDate) {
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.minDate = minDate;
+            this.maxDate = maxDate;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package fr.epita.movies.service.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded set that forgets its oldest elements first, split into independently locked stripes.
+ * <p>
+ * Each element belongs to the stripe selected by its hash, and each stripe evicts the element it has held the longest
+ * once it holds more than its share of the capacity: adding an element again does not make it any younger, so the set
+ * remembers a window of the latest additions. Threads adding elements of different stripes never wait for each other.
+ *
+ * @param <T> the type of the elements.
+ */
+public class StripedFifoSet<T> {
+
+    private final Map<T, Boolean>[] stripes;
+
+    private final int mask;
+
+    /**
+     * @param stripes the number of stripes, rounded up to a power of two.
+     * @param capacity the approximate number of elements remembered.
+     */
+    @SuppressWarnings("unchecked")
+    public StripedFifoSet(int stripes, int capacity) {
+        if (stripes < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Stripes and capacity must be positive");
+        }
+        int stripeCount = Integer.highestOneBit(stripes);
+        if (stripeCount < stripes) {
+            stripeCount <<= 1;
+        }
+        int stripeCapacity = Math.max(1, capacity / stripeCount);
+        this.stripes = new Map[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new LinkedHashMap<T, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<T, Boolean> eldest) {
+                    return size() > stripeCapacity;
+                }
+            };
+        }
+        this.mask = stripeCount - 1;
+    }
+
+    /**
+     * Adds an element unless it is already remembered.
+     *
+     * @param element the element.
+     * @return {@code true} if the element was not remembered.
+     */
+    public boolean add(T element) {
+        Map<T, Boolean> stripe = stripeOf(element);
+        synchronized (stripe) {
+            return stripe.putIfAbsent(element, Boolean.TRUE) == null;
+        }
+    }
+
+    /**
+     * Forgets an element.
+     *
+     * @param element the element.
+     */
+    public void remove(T element) {
+        Map<T, Boolean> stripe = stripeOf(element);
+        synchronized (stripe) {
+            stripe.remove(element);
+        }
+    }
+
+    private Map<T, Boolean> stripeOf(T element) {
+        int hash = element.hashCode();
+        return stripes[(hash ^ hash >>> 16) & mask];
+    }
+}
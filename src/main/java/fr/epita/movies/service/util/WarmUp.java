@@ -0,0 +1,89 @@
+package fr.epita.movies.service.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The state of an in-memory cache built from the database in the background, and of the updates committed meanwhile.
+ * <p>
+ * A build starts with {@link #start()}, which fails if one is already running or done, and ends with
+ * {@link #succeed()} or {@link #fail()}, after which it can be started again. Updates passed to {@link #apply(Runnable)}
+ * run at once when the cache is built, are queued while it is being built and run once it is, and are dropped
+ * otherwise, as the next build reads their outcome from the database: nothing piles up while no build runs.
+ */
+public class WarmUp {
+
+    private enum State { IDLE, LOADING, LOADED }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @return {@code true} once a build succeeded, meaning the cache can be read.
+     */
+    public boolean isLoaded() {
+        return state.get() == State.LOADED;
+    }
+
+    /**
+     * @return {@code true} if no build is running and none succeeded, so that one should be started.
+     */
+    public boolean isIdle() {
+        return state.get() == State.IDLE;
+    }
+
+    /**
+     * Starts a build, unless one is running or succeeded. The cache must then be cleared before reading the database.
+     *
+     * @return {@code true} if the caller must build the cache.
+     */
+    public boolean start() {
+        if (!state.compareAndSet(State.IDLE, State.LOADING)) {
+            return false;
+        }
+        pending.clear();
+        return true;
+    }
+
+    /**
+     * Ends a build that read the whole database, then runs the updates queued meanwhile.
+     */
+    public void succeed() {
+        state.set(State.LOADED);
+        runPending();
+    }
+
+    /**
+     * Ends a build that failed, dropping the updates queued meanwhile.
+     */
+    public void fail() {
+        state.set(State.IDLE);
+        pending.clear();
+    }
+
+    /**
+     * Applies an update committed to the database to the cache.
+     *
+     * @param update the update of the cache.
+     */
+    public void apply(Runnable update) {
+        State current = state.get();
+        if (current == State.LOADED) {
+            update.run();
+        } else if (current == State.LOADING) {
+            pending.add(update);
+            if (isLoaded()) {
+                runPending();
+            }
+        }
+    }
+
+    private void runPending() {
+        Runnable update;
+        while ((update = pending.poll()) != null) {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Compact in-memory data structures, file formats and transaction helpers used by the service layer.
+ */
+package fr.epita.movies.service.util;
@@ -0,0 +1,30 @@
+package fr.epita.movies.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class for normalizing text before comparing it.
+ */
+public final class TextUtils {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private TextUtils() {
+    }
+
+    /**
+     * Folds a text for case- and accent-insensitive comparisons: trims it, strips its diacritics and lower-cases it.
+     *
+     * @param text the text, or {@code null}.
+     * @return the folded text, or {@code null} if {@code text} is.
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Utilities shared by the domain and service layers.
+ */
+package fr.epita.movies.util;
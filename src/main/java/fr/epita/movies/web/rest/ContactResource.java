@@ -2,6 +2,8 @@ package fr.epita.movies.web.rest;
 
 import fr.epita.movies.domain.Contact;
 import fr.epita.movies.repository.ContactRepository;
+import fr.epita.movies.service.ContactService;
+import fr.epita.movies.service.dto.ContactDTO;
 import fr.epita.movies.web.rest.errors.BadRequestAlertException;
 
 import io.github.jhipster.web.util.HeaderUtil;
@@ -9,12 +11,16 @@ import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,13 +36,18 @@ public class ContactResource {
 
     private static final String ENTITY_NAME = "contact";
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final ContactRepository contactRepository;
 
-    public ContactResource(ContactRepository contactRepository) {
+    private final ContactService contactService;
+
+    public ContactResource(ContactRepository contactRepository, ContactService contactService) {
         this.contactRepository = contactRepository;
+        this.contactService = contactService;
     }
 
     /**
@@ -90,6 +101,78 @@ public class ContactResource {
         return contactRepository.findAll();
     }
 
+    /**
+     * {@code GET  /contacts?email=:email} : get the contacts with the given email, ignoring case.
+     *
+     * @param email the email.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of contacts in body, in id order.
+     */
+    @GetMapping(value = "/contacts", params = "email")
+    @Transactional(readOnly = true)
+    public List<ContactDTO> getContactsByEmail(@RequestParam String email) {
+        log.debug("REST request to get Contacts by email : {}", email);
+        return contactService.findByEmail(email);
+    }
+
+    /**
+     * {@code GET  /contacts?namePrefix=:namePrefix} : get a page of the contacts whose name starts with the given prefix,
+     * ignoring case and accents.
+     * <p>
+     * Contacts come in name order. Pages are addressed by cursor rather than offset: the {@code Link} header with
+     * {@code rel="next"} sets {@code after} to the folded name and id of the last contact received, separated by a comma
+     * and encoded in URL-safe Base64, so that no character of the name is altered by the query string.
+     *
+     * @param namePrefix the beginning of the name.
+     * @param after the encoded folded name and id of the last contact received, or none to start from the first contact.
+     * @param size the maximum number of contacts to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of contacts in body,
+     * or with status {@code 400 (Bad Request)} if the cursor is invalid or the page size is out of range.
+     */
+    @GetMapping(value = "/contacts", params = "namePrefix")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<ContactDTO>> getContactsByNamePrefix(@RequestParam String namePrefix,
+                                                                    @RequestParam(required = false) String after,
+                                                                    @RequestParam(required = false, defaultValue = "20") int size) {
+        log.debug("REST request to get a page of Contacts by name prefix : {} after : {}", namePrefix, after);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("Page size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "pagesizeinvalid");
+        }
+        String afterNameKey = null;
+        Long afterId = null;
+        if (after != null) {
+            String cursor;
+            try {
+                cursor = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+            }
+            // The id follows the last comma, as the name key may hold commas too
+            int separator = cursor.lastIndexOf(',');
+            if (separator < 0) {
+                throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+            }
+            try {
+                afterId = Long.valueOf(cursor.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+            }
+            afterNameKey = cursor.substring(0, separator);
+        }
+        List<ContactDTO> contacts = contactService.findByNamePrefix(namePrefix, afterNameKey, afterId, size);
+        HttpHeaders headers = new HttpHeaders();
+        if (contacts.size() == size) {
+            ContactDTO last = contacts.get(contacts.size() - 1);
+            String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((Contact.toNameKey(last.getName()) + "," + last.getId()).getBytes(StandardCharsets.UTF_8));
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", cursor)
+                .replaceQueryParam("size", size)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(contacts);
+    }
+
     /**
      * {@code GET  /contacts/:id} : get the "id" contact.
      *
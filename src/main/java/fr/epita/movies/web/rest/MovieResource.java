@@ -2,19 +2,58 @@ package fr.epita.movies.web.rest;
 
 import fr.epita.movies.domain.Movie;
 import fr.epita.movies.repository.MovieRepository;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.AlsoWatchedService;
+import fr.epita.movies.service.InvalidImportFormatException;
+import fr.epita.movies.service.MovieImportService;
+import fr.epita.movies.service.MovieReachService;
+import fr.epita.movies.service.MovieSearchService;
+import fr.epita.movies.service.MovieService;
+import fr.epita.movies.service.MovieStatsService;
+import fr.epita.movies.service.TrendingService;
+import fr.epita.movies.service.dto.AlsoWatchedDTO;
+import fr.epita.movies.service.dto.MovieDTO;
+import fr.epita.movies.service.dto.MovieImportReportDTO;
+import fr.epita.movies.service.dto.MovieLookupDTO;
+import fr.epita.movies.service.dto.MovieMonthCountDTO;
+import fr.epita.movies.service.dto.MovieReachDTO;
+import fr.epita.movies.service.dto.MovieViewCountDTO;
+import fr.epita.movies.service.dto.SeenMovieDTO;
 import fr.epita.movies.web.rest.errors.BadRequestAlertException;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.HeaderUtil;
+import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,13 +69,53 @@ public class MovieResource {
 
     private static final String ENTITY_NAME = "movie";
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_SUGGESTIONS = 100;
+
+    private static final int MAX_LOOKUP_IDS = 1000;
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final MovieRepository movieRepository;
 
-    public MovieResource(MovieRepository movieRepository) {
+    private final MovieService movieService;
+
+    private final MovieSearchService movieSearchService;
+
+    private final MovieImportService movieImportService;
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final MovieStatsService movieStatsService;
+
+    private final AlsoWatchedService alsoWatchedService;
+
+    private final TrendingService trendingService;
+
+    private final MovieReachService movieReachService;
+
+    private final ObjectMapper objectMapper;
+
+    public MovieResource(MovieRepository movieRepository, MovieService movieService, MovieSearchService movieSearchService,
+                         MovieImportService movieImportService, SeenMovieRepository seenMovieRepository,
+                         MovieStatsService movieStatsService, AlsoWatchedService alsoWatchedService,
+                         TrendingService trendingService, MovieReachService movieReachService, ObjectMapper objectMapper) {
         this.movieRepository = movieRepository;
+        this.seenMovieRepository = seenMovieRepository;
+        this.movieStatsService = movieStatsService;
+        this.alsoWatchedService = alsoWatchedService;
+        this.trendingService = trendingService;
+        this.movieReachService = movieReachService;
+        this.movieService = movieService;
+        this.movieSearchService = movieSearchService;
+        this.movieImportService = movieImportService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -52,12 +131,40 @@ public class MovieResource {
         if (movie.getId() != null) {
             throw new BadRequestAlertException("A new movie cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        Movie result = movieRepository.save(movie);
+        Movie result = movieService.save(movie);
         return ResponseEntity.created(new URI("/api/movies/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
             .body(result);
     }
 
+    /**
+     * {@code POST  /movies/import} : Import new movies in bulk.
+     * <p>
+     * The body is either {@code text/csv}, {@code ;}-separated with a header row as in the Liquibase fake data,
+     * or {@code application/x-ndjson}, one JSON movie per line. It is read as it arrives and saved in chunks,
+     * so the upload can be of any size. Ids in the upload are ignored.
+     *
+     * @param request the request whose body holds the movies to import.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the number of imported and rejected rows,
+     * or with status {@code 400 (Bad Request)} if the CSV header is not valid.
+     * @throws IOException if the body could not be read.
+     */
+    @PostMapping(value = "/movies/import", consumes = {TEXT_CSV_VALUE, APPLICATION_NDJSON_VALUE})
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<MovieImportReportDTO> importMovies(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Movies as {}", request.getContentType());
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        MovieImportService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+            ? MovieImportService.Format.CSV
+            : MovieImportService.Format.NDJSON;
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        try (Reader reader = new InputStreamReader(request.getInputStream(), charset)) {
+            return ResponseEntity.ok(movieImportService.importMovies(reader, format));
+        } catch (InvalidImportFormatException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "importformatinvalid");
+        }
+    }
+
     /**
      * {@code PUT  /movies} : Updates an existing movie.
      *
@@ -73,21 +180,184 @@ public class MovieResource {
         if (movie.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        Movie result = movieRepository.save(movie);
+        Movie result = movieService.save(movie);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, movie.getId().toString()))
             .body(result);
     }
 
     /**
-     * {@code GET  /movies} : get all the movies.
+     * {@code PUT  /movies/external/:externalId} : Creates or updates the movie with the given external id.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movies in body.
+     * @param externalId the external id of the movie to create or update.
+     * @param movie the movie to save; its id and external id are ignored.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new movie if no movie had this external id,
+     * or with status {@code 200 (OK)} and with body the updated movie.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PutMapping("/movies/external/{externalId}")
+    public ResponseEntity<Movie> upsertMovieByExternalId(@PathVariable String externalId, @RequestBody Movie movie) throws URISyntaxException {
+        log.debug("REST request to upsert Movie by external id {} : {}", externalId, movie);
+        Optional<Movie> existing = movieService.findOneByExternalId(externalId);
+        if (existing.isPresent()) {
+            Movie result = movieService.save(existing.get().title(movie.getTitle()).date(movie.getDate()));
+            return ResponseEntity.ok()
+                .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
+                .body(result);
+        }
+        movie.setId(null);
+        Movie result = movieService.save(movie.externalId(externalId));
+        return ResponseEntity.created(new URI("/api/movies/" + result.getId()))
+            .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
+            .body(result);
+    }
+
+    /**
+     * {@code GET  /movies} : get a page of movies, ordered by id.
+     * <p>
+     * Only the scalar columns of each movie are read and returned. Pages are addressed by cursor rather than offset: pass the id of the last movie received as {@code after}
+     * to get the next page. A {@code Link} header with {@code rel="next"} is returned while more movies may follow.
+     *
+     * @param after the id after which to start, or none to start from the first movie.
+     * @param size the maximum number of movies to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movies in body,
+     * or with status {@code 400 (Bad Request)} if the page size is out of range.
      */
     @GetMapping("/movies")
-    public List<Movie> getAllMovies() {
-        log.debug("REST request to get all Movies");
-        return movieRepository.findAll();
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<MovieDTO>> getAllMovies(@RequestParam(required = false) Long after,
+                                                    @RequestParam(required = false, defaultValue = "20") int size) {
+        log.debug("REST request to get a page of Movies after : {}", after);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("Page size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "pagesizeinvalid");
+        }
+        List<MovieDTO> movies = movieRepository.findDTOsByIdGreaterThan(after != null ? after : Long.MIN_VALUE, PageRequest.of(0, size));
+        HttpHeaders headers = new HttpHeaders();
+        if (movies.size() == size) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", movies.get(movies.size() - 1).getId())
+                .replaceQueryParam("size", size)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(movies);
+    }
+
+    /**
+     * {@code GET  /movies?from=:from&to=:to} : get a page of the movies dated in a range, ordered by date then id.
+     * <p>
+     * Pages are addressed by cursor: the {@code Link} header with {@code rel="next"} moves {@code from} to the date of the
+     * last movie received and sets {@code after} to its id.
+     *
+     * @param from the start of the range, included.
+     * @param to the end of the range, excluded.
+     * @param after the id of the last movie received, dated {@code from}, or none to start from the first movie of the range.
+     * @param size the maximum number of movies to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movies in body,
+     * or with status {@code 400 (Bad Request)} if the range is empty or the page size is out of range.
+     */
+    @GetMapping(value = "/movies", params = {"from", "to"})
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<MovieDTO>> getMoviesBetween(@RequestParam ZonedDateTime from, @RequestParam ZonedDateTime to,
+                                                         @RequestParam(required = false) Long after,
+                                                         @RequestParam(required = false, defaultValue = "20") int size) {
+        log.debug("REST request to get a page of Movies from {} to {} after : {}", from, to, after);
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The start of the range must be before its end", ENTITY_NAME, "rangeinvalid");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("Page size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "pagesizeinvalid");
+        }
+        PageRequest page = PageRequest.of(0, size);
+        List<MovieDTO> movies = after == null
+            ? movieRepository.findDTOsByDateBetween(from, to, page)
+            : movieRepository.findDTOsByDateBetweenAfter(from, after, to, page);
+        HttpHeaders headers = new HttpHeaders();
+        if (movies.size() == size) {
+            MovieDTO last = movies.get(movies.size() - 1);
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("from", last.getDate().toInstant())
+                .replaceQueryParam("after", last.getId())
+                .replaceQueryParam("size", size)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(movies);
+    }
+
+    /**
+     * {@code GET  /movies/calendar?year=:year} : count the movies dated in each month of a year, in UTC.
+     *
+     * @param year the year.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and in body the number of movies of each month that has any.
+     */
+    @GetMapping("/movies/calendar")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<MovieMonthCountDTO>> getMovieCalendar(@RequestParam int year) {
+        log.debug("REST request to count Movies by month of : {}", year);
+        return ResponseEntity.ok(movieService.countByMonth(year));
+    }
+
+    /**
+     * {@code GET  /movies?ids=:ids} : get the movies with the given ids.
+     *
+     * @param ids the comma-separated ids of the movies.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and in body the movies found, in the order of {@code ids},
+     * and the ids that match no movie, or with status {@code 400 (Bad Request)} if there are too many ids.
+     * @see #lookupMovies(List)
+     */
+    @GetMapping(value = "/movies", params = "ids")
+    @Transactional(readOnly = true)
+    public ResponseEntity<MovieLookupDTO> getMoviesByIds(@RequestParam List<Long> ids) {
+        return lookupMovies(ids);
+    }
+
+    /**
+     * {@code POST  /movies/lookup} : get the movies with the given ids, for lists too long for a query string.
+     * <p>
+     * All the movies are read with a single query; duplicate ids are only returned once.
+     *
+     * @param ids the ids of the movies.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and in body the movies found, in the order of {@code ids},
+     * and the ids that match no movie, or with status {@code 400 (Bad Request)} if there are too many ids.
+     */
+    @PostMapping("/movies/lookup")
+    @Transactional(readOnly = true)
+    public ResponseEntity<MovieLookupDTO> lookupMovies(@RequestBody List<Long> ids) {
+        log.debug("REST request to get Movies : {}", ids);
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new BadRequestAlertException("At most " + MAX_LOOKUP_IDS + " ids can be looked up at once", ENTITY_NAME, "idsinvalid");
+        }
+        return ResponseEntity.ok(movieService.findDTOsByIds(ids));
+    }
+
+    /**
+     * {@code GET  /movies?stream=true} : stream all the movies.
+     * <p>
+     * Movies are written to the response as they are read from a database cursor, so memory use does not depend on
+     * the size of the catalog. The web client lists movies this way, as its list page and dropdowns show all of them.
+     *
+     * @param response the response the JSON array of movies is written to.
+     * @throws IOException if the response could not be written.
+     */
+    @GetMapping(value = "/movies", params = "stream=true")
+    @Transactional(readOnly = true)
+    public void streamAllMovies(HttpServletResponse response) throws IOException {
+        log.debug("REST request to stream all Movies");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            movieService.forEachMovie(movie -> {
+                try {
+                    generator.writeObject(movie);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
@@ -97,9 +367,43 @@ public class MovieResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the movie, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/movies/{id}")
-    public ResponseEntity<Movie> getMovie(@PathVariable Long id) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<MovieDTO> getMovie(@PathVariable Long id) {
         log.debug("REST request to get Movie : {}", id);
-        Optional<Movie> movie = movieRepository.findById(id);
+        Optional<MovieDTO> movie = movieRepository.findDTOById(id);
+        return ResponseUtil.wrapOrNotFound(movie);
+    }
+
+    /**
+     * {@code GET  /movies/:id/seen-movies} : get a page of the watch events of the "id" movie.
+     * <p>
+     * Only the watch events still in the database are listed: those archived by {@code application.seen-movie-archive}
+     * are read with {@code GET /seen-movies?movieId&from&to}.
+     *
+     * @param id the id of the movie.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of seenMovies in body.
+     */
+    @GetMapping("/movies/{id}/seen-movies")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<SeenMovieDTO>> getMovieSeenMovies(@PathVariable Long id, Pageable pageable) {
+        log.debug("REST request to get a page of SeenMovies of Movie : {}", id);
+        Page<SeenMovieDTO> page = seenMovieRepository.findDTOsByMovieId(id, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /movies/external/:externalId} : get the movie with the given external id.
+     *
+     * @param externalId the external id of the movie to retrieve.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the movie, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/movies/external/{externalId}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<MovieDTO> getMovieByExternalId(@PathVariable String externalId) {
+        log.debug("REST request to get Movie by external id : {}", externalId);
+        Optional<MovieDTO> movie = movieService.findOneDTOByExternalId(externalId);
         return ResponseUtil.wrapOrNotFound(movie);
     }
 
@@ -112,7 +416,121 @@ public class MovieResource {
     @DeleteMapping("/movies/{id}")
     public ResponseEntity<Void> deleteMovie(@PathVariable Long id) {
         log.debug("REST request to delete Movie : {}", id);
-        movieRepository.deleteById(id);
+        movieService.delete(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString())).build();
     }
+
+    /**
+     * {@code GET  /_search/movies/suggest?q=:prefix} : suggest movies from the beginning of their title.
+     *
+     * @param q the beginning of the title, matched ignoring case and accents.
+     * @param limit the maximum number of suggestions.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the matching movies in body, with only their id and title,
+     * or with status {@code 400 (Bad Request)} if the limit is out of range.
+     */
+    @GetMapping("/_search/movies/suggest")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<List<MovieDTO>> suggestMovies(@RequestParam String q,
+                                                        @RequestParam(required = false, defaultValue = "10") int limit) {
+        log.debug("REST request to suggest Movies for : {}", q);
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new BadRequestAlertException("Limit must be between 1 and " + MAX_SUGGESTIONS, ENTITY_NAME, "limitinvalid");
+        }
+        return ResponseEntity.ok(movieSearchService.suggest(q, limit));
+    }
+
+    /**
+     * {@code GET  /movies/top} : get the most viewed movies.
+     * <p>
+     * View counts are maintained incrementally and may lag the latest watch events by a few seconds.
+     *
+     * @param limit the maximum number of movies.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the view counts of the most viewed movies in body,
+     * most viewed first, or with status {@code 400 (Bad Request)} if the limit is out of range.
+     */
+    @GetMapping("/movies/top")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<List<MovieViewCountDTO>> getTopMovies(@RequestParam(required = false, defaultValue = "10") int limit) {
+        log.debug("REST request to get the {} most viewed Movies", limit);
+        if (limit < 1 || limit > movieStatsService.getTopCapacity()) {
+            throw new BadRequestAlertException("Limit must be between 1 and " + movieStatsService.getTopCapacity(), ENTITY_NAME, "limitinvalid");
+        }
+        return ResponseEntity.ok(movieStatsService.findTop(limit));
+    }
+
+    /**
+     * {@code GET  /movies/trending} : get the movies most watched over a recent window.
+     * <p>
+     * Windows slide by a twelfth of their duration by default, and trending movies are recomputed every few seconds.
+     *
+     * @param window the window, one of {@code application.trending.windows}, such as {@code 1h}.
+     * @param limit the maximum number of movies.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the view counts of the trending movies over the
+     * window in body, most viewed first, or with status {@code 400 (Bad Request)} if the window is not counted or the
+     * limit is out of range.
+     */
+    @GetMapping("/movies/trending")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<List<MovieViewCountDTO>> getTrendingMovies(@RequestParam(required = false, defaultValue = "1h") String window,
+                                                                     @RequestParam(required = false, defaultValue = "10") int limit) {
+        log.debug("REST request to get the {} trending Movies over {}", limit, window);
+        Duration duration;
+        try {
+            duration = DurationStyle.detectAndParse(window);
+        } catch (IllegalArgumentException e) {
+            duration = null;
+        }
+        if (duration == null || !trendingService.getWindows().contains(duration)) {
+            throw new BadRequestAlertException("Window must be one of " + trendingService.getWindows(), ENTITY_NAME, "windowinvalid");
+        }
+        if (limit < 1 || limit > trendingService.getTopCapacity()) {
+            throw new BadRequestAlertException("Limit must be between 1 and " + trendingService.getTopCapacity(), ENTITY_NAME, "limitinvalid");
+        }
+        return ResponseEntity.ok(trendingService.findTrending(duration, limit));
+    }
+
+    /**
+     * {@code GET  /movies/:id/also-watched} : get the movies most watched by the users who watched the "id" movie.
+     * <p>
+     * Counts are maintained incrementally from the new watch events and may lag them by a second or so.
+     *
+     * @param id the id of the movie.
+     * @param limit the maximum number of movies.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the co-watched movies in body, most watched first,
+     * or with status {@code 400 (Bad Request)} if the limit is out of range.
+     */
+    @GetMapping("/movies/{id}/also-watched")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<List<AlsoWatchedDTO>> getAlsoWatchedMovies(@PathVariable Long id,
+                                                                     @RequestParam(required = false, defaultValue = "10") int limit) {
+        log.debug("REST request to get the {} Movies also watched with Movie : {}", limit, id);
+        if (limit < 1 || limit > alsoWatchedService.getMaxNeighbors()) {
+            throw new BadRequestAlertException("Limit must be between 1 and " + alsoWatchedService.getMaxNeighbors(), ENTITY_NAME, "limitinvalid");
+        }
+        return ResponseEntity.ok(alsoWatchedService.findAlsoWatched(id, limit));
+    }
+
+    /**
+     * {@code GET  /movies/:id/reach} : get the approximate number of distinct users who watched the "id" movie over a
+     * range of days.
+     * <p>
+     * Days are in UTC. The reach is estimated from one sketch per day, so its cost does not depend on the number of
+     * watch events, and comes with its relative standard error.
+     *
+     * @param id the id of the movie.
+     * @param from the first day, inclusive.
+     * @param to the last day, exclusive.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the reach in body,
+     * or with status {@code 400 (Bad Request)} if {@code from} is not before {@code to}.
+     */
+    @GetMapping("/movies/{id}/reach")
+    @Transactional(readOnly = true)
+    public ResponseEntity<MovieReachDTO> getMovieReach(@PathVariable Long id, @RequestParam LocalDate from,
+                                                       @RequestParam LocalDate to) {
+        log.debug("REST request to get the reach of Movie : {} from : {} to : {}", id, from, to);
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The start of the range must be before its end", ENTITY_NAME, "rangeinvalid");
+        }
+        return ResponseEntity.ok(movieReachService.findReach(id, from, to));
+    }
 }
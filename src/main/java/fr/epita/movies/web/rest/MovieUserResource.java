@@ -2,23 +2,45 @@ package fr.epita.movies.web.rest;
 
 import fr.epita.movies.domain.MovieUser;
 import fr.epita.movies.repository.MovieUserRepository;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.MovieUserService;
+import fr.epita.movies.service.RoleMembershipService;
+import fr.epita.movies.service.SeenMovieIndexService;
+import fr.epita.movies.service.dto.MovieUserDTO;
+import fr.epita.movies.service.dto.SeenFlagsDTO;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.dto.SeenMovieHistoryDTO;
 import fr.epita.movies.web.rest.errors.BadRequestAlertException;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.HeaderUtil;
+import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.ZonedDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.stream.Stream;
 
 /**
  * REST controller for managing {@link fr.epita.movies.domain.MovieUser}.
@@ -32,13 +54,34 @@ public class MovieUserResource {
 
     private static final String ENTITY_NAME = "movieUser";
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_SEEN_FLAGS_IDS = 1000;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final MovieUserRepository movieUserRepository;
 
-    public MovieUserResource(MovieUserRepository movieUserRepository) {
+    private final MovieUserService movieUserService;
+
+    private final SeenMovieRepository seenMovieRepository;
+
+    private final SeenMovieIndexService seenMovieIndexService;
+
+    private final RoleMembershipService roleMembershipService;
+
+    private final ObjectMapper objectMapper;
+
+    public MovieUserResource(MovieUserRepository movieUserRepository, MovieUserService movieUserService,
+                             SeenMovieRepository seenMovieRepository, SeenMovieIndexService seenMovieIndexService,
+                             RoleMembershipService roleMembershipService, ObjectMapper objectMapper) {
         this.movieUserRepository = movieUserRepository;
+        this.movieUserService = movieUserService;
+        this.seenMovieRepository = seenMovieRepository;
+        this.seenMovieIndexService = seenMovieIndexService;
+        this.roleMembershipService = roleMembershipService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -55,6 +98,7 @@ public class MovieUserResource {
             throw new BadRequestAlertException("A new movieUser cannot already have an ID", ENTITY_NAME, "idexists");
         }
         MovieUser result = movieUserRepository.save(movieUser);
+        roleMembershipService.invalidateMovieUser(result.getId());
         return ResponseEntity.created(new URI("/api/movie-users/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -76,29 +120,89 @@ public class MovieUserResource {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
         MovieUser result = movieUserRepository.save(movieUser);
+        roleMembershipService.invalidateMovieUser(result.getId());
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, movieUser.getId().toString()))
             .body(result);
     }
 
     /**
-     * {@code GET  /movie-users} : get all the movieUsers.
+     * {@code GET  /movie-users} : get a page of the movieUsers, with their roles.
+     * <p>
+     * Pages are addressed either by number, in any order, or by cursor, in id order: with {@code after}, the
+     * {@code Link} header with {@code rel="next"} sets {@code after} to the id of the last movieUser received.
      *
+     * @param pageable the pagination information.
+     * @param after the id of the last movieUser received, to page by cursor instead of by number.
      * @param eagerload flag to eager load entities from relationships (This is applicable for many-to-many).
-     * @param filter the filter of the request.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movieUsers in body.
      */
     @GetMapping("/movie-users")
-    public List<MovieUser> getAllMovieUsers(@RequestParam(required = false) String filter,@RequestParam(required = false, defaultValue = "false") boolean eagerload) {
-        if ("contact-is-null".equals(filter)) {
-            log.debug("REST request to get all MovieUsers where contact is null");
-            return StreamSupport
-                .stream(movieUserRepository.findAll().spliterator(), false)
-                .filter(movieUser -> movieUser.getContact() == null)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<MovieUser>> getAllMovieUsers(Pageable pageable, @RequestParam(required = false) Long after,
+                                                            @RequestParam(required = false, defaultValue = "false") boolean eagerload) {
+        log.debug("REST request to get a page of MovieUsers");
+        if (after == null) {
+            Page<MovieUser> page = movieUserService.findAllWithEagerRelationships(pageable);
+            HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+            return ResponseEntity.ok().headers(headers).body(page.getContent());
+        }
+        List<MovieUser> movieUsers = movieUserService.findAllWithEagerRelationshipsAfter(after, pageable.getPageSize());
+        HttpHeaders headers = new HttpHeaders();
+        if (movieUsers.size() == pageable.getPageSize()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", movieUsers.get(movieUsers.size() - 1).getId())
+                .replaceQueryParam("size", pageable.getPageSize())
+                .replaceQueryParam("page")
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
         }
-        log.debug("REST request to get all MovieUsers");
-        return movieUserRepository.findAllWithEagerRelationships();
+        return ResponseEntity.ok().headers(headers).body(movieUsers);
+    }
+
+    /**
+     * {@code GET  /movie-users?filter=contact-is-null} : stream all the movieUsers without a contact.
+     * <p>
+     * MovieUsers are written to the response as they are read from a database cursor, without their roles, so memory
+     * use does not depend on the number of users.
+     *
+     * @param response the response the JSON array of movieUsers is written to.
+     * @throws IOException if the response could not be written.
+     */
+    @GetMapping(value = "/movie-users", params = "filter=contact-is-null")
+    @Transactional(readOnly = true)
+    public void streamAllMovieUsersWhereContactIsNull(HttpServletResponse response) throws IOException {
+        log.debug("REST request to get all MovieUsers where contact is null");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+             Stream<MovieUserDTO> movieUsers = movieUserRepository.streamDTOsByContactIsNull()) {
+            generator.writeStartArray();
+            movieUsers.forEach(movieUser -> {
+                try {
+                    generator.writeObject(movieUser);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * {@code GET  /movie-users?filter=contact-is-null&page=:page} : get a page of the movieUsers without a contact.
+     *
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movieUsers in body, without their roles.
+     */
+    @GetMapping(value = "/movie-users", params = {"filter=contact-is-null", "page"})
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<MovieUserDTO>> getAllMovieUsersWhereContactIsNull(Pageable pageable) {
+        log.debug("REST request to get a page of MovieUsers where contact is null");
+        Page<MovieUserDTO> page = movieUserRepository.findDTOsByContactIsNull(pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
     /**
@@ -114,6 +218,103 @@ public class MovieUserResource {
         return ResponseUtil.wrapOrNotFound(movieUser);
     }
 
+    /**
+     * {@code GET  /movie-users/:id/seen-movies} : get a page of the watch events of the "id" movieUser.
+     * <p>
+     * Only the watch events still in the database are listed: those archived by {@code application.seen-movie-archive}
+     * are read with {@code GET /seen-movies?movieUserId&from&to}.
+     *
+     * @param id the id of the movieUser.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of seenMovies in body.
+     */
+    @GetMapping("/movie-users/{id}/seen-movies")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<SeenMovieDTO>> getMovieUserSeenMovies(@PathVariable Long id, Pageable pageable) {
+        log.debug("REST request to get a page of SeenMovies of MovieUser : {}", id);
+        Page<SeenMovieDTO> page = seenMovieRepository.findDTOsByMovieUserId(id, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /movie-users/:id/history} : get a page of the watch history of the "id" movieUser, most recent first.
+     * <p>
+     * Only dated watch events still in the database are listed: those archived by {@code application.seen-movie-archive}
+     * are read with {@code GET /seen-movies?movieUserId&from&to}. Pages are addressed by cursor: the {@code Link} header with {@code rel="next"}
+     * sets {@code before} to the date of the last entry received and {@code beforeId} to its id.
+     *
+     * @param id the id of the movieUser.
+     * @param before the date before which to start, or none to start from the most recent watch.
+     * @param beforeId the id of the last entry received, dated {@code before}, to also list the older entries of that date.
+     * @param size the maximum number of entries to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of entries in body,
+     * or with status {@code 400 (Bad Request)} if the page size is out of range.
+     */
+    @GetMapping("/movie-users/{id}/history")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<SeenMovieHistoryDTO>> getMovieUserHistory(@PathVariable Long id,
+                                                                         @RequestParam(required = false) ZonedDateTime before,
+                                                                         @RequestParam(required = false) Long beforeId,
+                                                                         @RequestParam(required = false, defaultValue = "20") int size) {
+        log.debug("REST request to get a page of the history of MovieUser : {} before : {}", id, before);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("Page size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "pagesizeinvalid");
+        }
+        PageRequest page = PageRequest.of(0, size);
+        List<SeenMovieHistoryDTO> history = before == null
+            ? seenMovieRepository.findHistoryByMovieUserId(id, page)
+            : seenMovieRepository.findHistoryByMovieUserIdBefore(id, before, beforeId != null ? beforeId : Long.MIN_VALUE, page);
+        HttpHeaders headers = new HttpHeaders();
+        if (history.size() == size) {
+            SeenMovieHistoryDTO last = history.get(history.size() - 1);
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("before", last.getDate().toInstant())
+                .replaceQueryParam("beforeId", last.getId())
+                .replaceQueryParam("size", size)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(history);
+    }
+
+    /**
+     * {@code POST  /movie-users/:id/seen-flags} : tell which of the given movies the "id" movieUser has seen.
+     * <p>
+     * Answered from an in-memory index of the watch events, so that a page of movies can be flagged without a query.
+     *
+     * @param id the id of the movieUser.
+     * @param movieIds the ids of the movies.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the flags of the movies in body,
+     * or with status {@code 400 (Bad Request)} if there are too many ids.
+     */
+    @PostMapping("/movie-users/{id}/seen-flags")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<SeenFlagsDTO> getMovieUserSeenFlags(@PathVariable Long id, @RequestBody List<Long> movieIds) {
+        log.debug("REST request to get the seen flags of MovieUser : {} for {} Movies", id, movieIds.size());
+        if (movieIds.size() > MAX_SEEN_FLAGS_IDS) {
+            throw new BadRequestAlertException("At most " + MAX_SEEN_FLAGS_IDS + " ids can be looked up at once", ENTITY_NAME, "idsinvalid");
+        }
+        byte[] bits = seenMovieIndexService.findSeen(id, movieIds).toByteArray();
+        return ResponseEntity.ok(new SeenFlagsDTO(movieIds.size(), Base64.getEncoder().encodeToString(bits)));
+    }
+
+    /**
+     * {@code GET  /movie-users/:id/has-role?roleIds=:roleIds} : tell whether the "id" movieUser has any of the given roles.
+     * <p>
+     * Answered from an in-memory cache of the roles of each movieUser.
+     *
+     * @param id the id of the movieUser.
+     * @param roleIds the ids of the roles.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and {@code true} in body if the movieUser has one of the roles.
+     */
+    @GetMapping("/movie-users/{id}/has-role")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<Boolean> hasAnyRole(@PathVariable Long id, @RequestParam List<Long> roleIds) {
+        log.debug("REST request to check whether MovieUser : {} has any Role of {}", id, roleIds);
+        return ResponseEntity.ok(roleMembershipService.hasAnyRole(id, roleIds));
+    }
+
     /**
      * {@code DELETE  /movie-users/:id} : delete the "id" movieUser.
      *
@@ -124,6 +325,8 @@ public class MovieUserResource {
     public ResponseEntity<Void> deleteMovieUser(@PathVariable Long id) {
         log.debug("REST request to delete MovieUser : {}", id);
         movieUserRepository.deleteById(id);
+        seenMovieIndexService.removeUser(id);
+        roleMembershipService.invalidateMovieUser(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString())).build();
     }
 }
@@ -2,6 +2,9 @@ package fr.epita.movies.web.rest;
 
 import fr.epita.movies.domain.Role;
 import fr.epita.movies.repository.RoleRepository;
+import fr.epita.movies.security.AuthoritiesConstants;
+import fr.epita.movies.service.RoleBulkAssignmentService;
+import fr.epita.movies.service.RoleMembershipService;
 import fr.epita.movies.web.rest.errors.BadRequestAlertException;
 
 import io.github.jhipster.web.util.HeaderUtil;
@@ -9,9 +12,13 @@ import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -30,13 +37,24 @@ public class RoleResource {
 
     private static final String ENTITY_NAME = "role";
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_MEMBER_IDS = 100_000;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final RoleRepository roleRepository;
 
-    public RoleResource(RoleRepository roleRepository) {
+    private final RoleMembershipService roleMembershipService;
+
+    private final RoleBulkAssignmentService roleBulkAssignmentService;
+
+    public RoleResource(RoleRepository roleRepository, RoleMembershipService roleMembershipService,
+                        RoleBulkAssignmentService roleBulkAssignmentService) {
         this.roleRepository = roleRepository;
+        this.roleMembershipService = roleMembershipService;
+        this.roleBulkAssignmentService = roleBulkAssignmentService;
     }
 
     /**
@@ -74,6 +92,7 @@ public class RoleResource {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
         Role result = roleRepository.save(role);
+        roleMembershipService.invalidateRole(result.getId());
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, role.getId().toString()))
             .body(result);
@@ -103,6 +122,119 @@ public class RoleResource {
         return ResponseUtil.wrapOrNotFound(role);
     }
 
+    /**
+     * {@code GET  /roles/:id/members} : get the ids of the movieUsers with the "id" role, in ascending order.
+     * <p>
+     * Answered from an in-memory cache of the roles of each movieUser. The {@code Link} header with {@code rel="next"}
+     * sets {@code after} to the last id received.
+     *
+     * @param id the id of the role.
+     * @param after the id of the last movieUser received, if any.
+     * @param size the maximum number of ids.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movieUser ids in body,
+     * or with status {@code 400 (Bad Request)} if the size is not valid.
+     */
+    @GetMapping("/roles/{id}/members")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<List<Long>> getRoleMembers(@PathVariable Long id, @RequestParam(required = false) Long after,
+                                                     @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get the members of Role : {}", id);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("Page size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "pagesizeinvalid");
+        }
+        List<Long> memberIds = roleMembershipService.findMemberIds(id, after, size);
+        HttpHeaders headers = new HttpHeaders();
+        if (memberIds.size() == size) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", memberIds.get(memberIds.size() - 1))
+                .replaceQueryParam("size", size)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(memberIds);
+    }
+
+    /**
+     * {@code POST  /roles/:id/members} : grant the "id" role to the given movieUsers.
+     * <p>
+     * The role is granted by set-based statements over chunks of movieUsers, each in its own transaction: on failure,
+     * the chunks before it stay granted and the same request can be sent again.
+     *
+     * @param id the id of the role.
+     * @param movieUserIds the ids of the movieUsers; unknown ids are ignored.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of movieUsers who did not have the role yet in body,
+     * or with status {@code 400 (Bad Request)} if there are too many ids,
+     * or with status {@code 404 (Not Found)} if the role does not exist.
+     */
+    @PostMapping("/roles/{id}/members")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<Integer> addRoleMembers(@PathVariable Long id, @RequestBody List<Long> movieUserIds) {
+        log.debug("REST request to grant Role : {} to {} MovieUsers", id, movieUserIds.size());
+        checkMemberIds(movieUserIds);
+        if (!roleRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return membersUpdated(id, roleBulkAssignmentService.addMembers(id, movieUserIds));
+    }
+
+    /**
+     * {@code POST  /roles/:id/members?filter=contact-is-null} : grant the "id" role to the movieUsers without a contact.
+     *
+     * @param id the id of the role.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of movieUsers who did not have the role yet in body,
+     * or with status {@code 404 (Not Found)} if the role does not exist.
+     */
+    @PostMapping(value = "/roles/{id}/members", params = "filter=contact-is-null")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<Integer> addRoleMembersWhereContactIsNull(@PathVariable Long id) {
+        log.debug("REST request to grant Role : {} to the MovieUsers where contact is null", id);
+        if (!roleRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return membersUpdated(id, roleBulkAssignmentService.addMembersWhereContactIsNull(id));
+    }
+
+    /**
+     * {@code DELETE  /roles/:id/members} : revoke the "id" role from the given movieUsers.
+     *
+     * @param id the id of the role.
+     * @param movieUserIds the ids of the movieUsers; unknown ids are ignored.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of movieUsers who had the role in body,
+     * or with status {@code 400 (Bad Request)} if there are too many ids,
+     * or with status {@code 404 (Not Found)} if the role does not exist.
+     */
+    @DeleteMapping("/roles/{id}/members")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<Integer> removeRoleMembers(@PathVariable Long id, @RequestBody List<Long> movieUserIds) {
+        log.debug("REST request to revoke Role : {} from {} MovieUsers", id, movieUserIds.size());
+        checkMemberIds(movieUserIds);
+        if (!roleRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return membersUpdated(id, roleBulkAssignmentService.removeMembers(id, movieUserIds));
+    }
+
+    /**
+     * {@code DELETE  /roles/:id/members?filter=contact-is-null} : revoke the "id" role from the movieUsers without a contact.
+     *
+     * @param id the id of the role.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of movieUsers who had the role in body,
+     * or with status {@code 404 (Not Found)} if the role does not exist.
+     */
+    @DeleteMapping(value = "/roles/{id}/members", params = "filter=contact-is-null")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<Integer> removeRoleMembersWhereContactIsNull(@PathVariable Long id) {
+        log.debug("REST request to revoke Role : {} from the MovieUsers where contact is null", id);
+        if (!roleRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return membersUpdated(id, roleBulkAssignmentService.removeMembersWhereContactIsNull(id));
+    }
+
     /**
      * {@code DELETE  /roles/:id} : delete the "id" role.
      *
@@ -113,6 +245,19 @@ public class RoleResource {
     public ResponseEntity<Void> deleteRole(@PathVariable Long id) {
         log.debug("REST request to delete Role : {}", id);
         roleRepository.deleteById(id);
+        roleMembershipService.invalidateRole(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString())).build();
     }
+
+    private void checkMemberIds(List<Long> movieUserIds) {
+        if (movieUserIds.size() > MAX_MEMBER_IDS) {
+            throw new BadRequestAlertException("At most " + MAX_MEMBER_IDS + " ids can be sent at once", ENTITY_NAME, "idsinvalid");
+        }
+    }
+
+    private ResponseEntity<Integer> membersUpdated(Long id, int count) {
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, id.toString()))
+            .body(count);
+    }
 }
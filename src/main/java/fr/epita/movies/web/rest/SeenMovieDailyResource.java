@@ -0,0 +1,50 @@
+package fr.epita.movies.web.rest;
+
+import fr.epita.movies.service.SeenMovieRollupService;
+import fr.epita.movies.service.dto.SeenMovieDailyDTO;
+import fr.epita.movies.web.rest.errors.BadRequestAlertException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * REST controller for reading {@link fr.epita.movies.domain.SeenMovieDaily}.
+ */
+@RestController
+@RequestMapping("/api")
+public class SeenMovieDailyResource {
+
+    private final Logger log = LoggerFactory.getLogger(SeenMovieDailyResource.class);
+
+    private static final String ENTITY_NAME = "seenMovieDaily";
+
+    private final SeenMovieRollupService seenMovieRollupService;
+
+    public SeenMovieDailyResource(SeenMovieRollupService seenMovieRollupService) {
+        this.seenMovieRollupService = seenMovieRollupService;
+    }
+
+    /**
+     * {@code GET  /movies/:id/daily-views} : get the views and distinct users of the "id" movie on each day of a range.
+     * <p>
+     * Days are in UTC and read from the daily rollup, which lags the watch events by up to two update intervals.
+     *
+     * @param id the id of the movie.
+     * @param from the first day, inclusive.
+     * @param to the last day, exclusive.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the days that have any view in body, in day order,
+     * or with status {@code 400 (Bad Request)} if {@code from} is not before {@code to}.
+     */
+    @GetMapping("/movies/{id}/daily-views")
+    public List<SeenMovieDailyDTO> getMovieDailyViews(@PathVariable Long id, @RequestParam LocalDate from, @RequestParam LocalDate to) {
+        log.debug("REST request to get the daily views of Movie : {} from : {} to : {}", id, from, to);
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The start of the range must be before its end", ENTITY_NAME, "rangeinvalid");
+        }
+        return seenMovieRollupService.findByMovieId(id, from, to);
+    }
+}
@@ -2,6 +2,12 @@ package fr.epita.movies.web.rest;
 
 import fr.epita.movies.domain.SeenMovie;
 import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.security.AuthoritiesConstants;
+import fr.epita.movies.service.SeenMovieArchiveService;
+import fr.epita.movies.service.SeenMovieExportService;
+import fr.epita.movies.service.SeenMovieIngestionService;
+import fr.epita.movies.service.SeenMovieService;
+import fr.epita.movies.service.dto.SeenMovieDTO;
 import fr.epita.movies.web.rest.errors.BadRequestAlertException;
 
 import io.github.jhipster.web.util.HeaderUtil;
@@ -9,12 +15,22 @@ import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,13 +46,36 @@ public class SeenMovieResource {
 
     private static final String ENTITY_NAME = "seenMovie";
 
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Seconds a client should wait before retrying a batch refused because the ingestion queue is full.
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final SeenMovieRepository seenMovieRepository;
 
-    public SeenMovieResource(SeenMovieRepository seenMovieRepository) {
+    private final SeenMovieService seenMovieService;
+
+    private final SeenMovieIngestionService seenMovieIngestionService;
+
+    private final SeenMovieArchiveService seenMovieArchiveService;
+
+    private final SeenMovieExportService seenMovieExportService;
+
+    public SeenMovieResource(SeenMovieRepository seenMovieRepository, SeenMovieService seenMovieService,
+                             SeenMovieIngestionService seenMovieIngestionService, SeenMovieArchiveService seenMovieArchiveService,
+                             SeenMovieExportService seenMovieExportService) {
         this.seenMovieRepository = seenMovieRepository;
+        this.seenMovieService = seenMovieService;
+        this.seenMovieIngestionService = seenMovieIngestionService;
+        this.seenMovieArchiveService = seenMovieArchiveService;
+        this.seenMovieExportService = seenMovieExportService;
     }
 
     /**
@@ -52,12 +91,46 @@ public class SeenMovieResource {
         if (seenMovie.getId() != null) {
             throw new BadRequestAlertException("A new seenMovie cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        SeenMovie result = seenMovieRepository.save(seenMovie);
+        SeenMovie result = seenMovieService.save(seenMovie);
         return ResponseEntity.created(new URI("/api/seen-movies/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
             .body(result);
     }
 
+    /**
+     * {@code POST  /seen-movies/batch} : Create new seenMovies in bulk.
+     * <p>
+     * In write-behind mode the batch is queued and written within a fraction of a second, unless {@code durable} is set.
+     * A durable batch is written in a single transaction before the response is sent.
+     *
+     * @param seenMovies the seenMovies to create, with their movie and user referenced by id.
+     * @param durable whether to write the batch before answering, even in write-behind mode.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} if the batch was written,
+     * with status {@code 202 (Accepted)} if it was queued,
+     * with status {@code 429 (Too Many Requests)} if the queue is full and the batch should be retried later,
+     * or with status {@code 400 (Bad Request)} if the batch is too large or a seenMovie has already an ID.
+     */
+    @PostMapping("/seen-movies/batch")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<Void> createSeenMovies(@RequestBody List<SeenMovieDTO> seenMovies,
+                                                 @RequestParam(required = false, defaultValue = "false") boolean durable) {
+        log.debug("REST request to save {} SeenMovies", seenMovies.size());
+        if (seenMovies.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestAlertException("At most " + MAX_BATCH_SIZE + " seenMovies can be created at once", ENTITY_NAME, "batchsizeinvalid");
+        }
+        if (seenMovies.stream().anyMatch(seenMovie -> seenMovie.getId() != null)) {
+            throw new BadRequestAlertException("A new seenMovie cannot already have an ID", ENTITY_NAME, "idexists");
+        }
+        if (durable || !seenMovieIngestionService.isWriteBehind()) {
+            seenMovieService.saveAll(seenMovies);
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        }
+        if (!seenMovieIngestionService.offer(seenMovies)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS).build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
     /**
      * {@code PUT  /seen-movies} : Updates an existing seenMovie.
      *
@@ -73,7 +146,7 @@ public class SeenMovieResource {
         if (seenMovie.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        SeenMovie result = seenMovieRepository.save(seenMovie);
+        SeenMovie result = seenMovieService.save(seenMovie);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, seenMovie.getId().toString()))
             .body(result);
@@ -90,6 +163,76 @@ public class SeenMovieResource {
         return seenMovieRepository.findAll();
     }
 
+    /**
+     * {@code GET  /seen-movies?from=:from&to=:to} : get a page of the watch events of a movie or a user dated in a range,
+     * ordered by date then id.
+     * <p>
+     * Watch events moved to the archive are read from it, so the range may start before the live window. Pages are
+     * addressed by cursor: the {@code Link} header with {@code rel="next"} moves {@code from} to the date of the last
+     * watch event received and sets {@code after} to its id.
+     *
+     * @param movieId the id of the movie, unless {@code movieUserId} is set.
+     * @param movieUserId the id of the user, unless {@code movieId} is set.
+     * @param from the start of the range, included.
+     * @param to the end of the range, excluded.
+     * @param after the id of the last watch event received, dated {@code from}, or none to start from the first one of the range.
+     * @param size the maximum number of watch events to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of seenMovies in body,
+     * or with status {@code 400 (Bad Request)} if not exactly one of {@code movieId} and {@code movieUserId} is set,
+     * the range is empty or the page size is out of range.
+     * @throws IOException if the archive could not be read.
+     */
+    @GetMapping(value = "/seen-movies", params = {"from", "to"})
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<SeenMovieDTO>> getSeenMoviesBetween(@RequestParam(required = false) Long movieId,
+                                                                   @RequestParam(required = false) Long movieUserId,
+                                                                   @RequestParam ZonedDateTime from, @RequestParam ZonedDateTime to,
+                                                                   @RequestParam(required = false) Long after,
+                                                                   @RequestParam(required = false, defaultValue = "20") int size) throws IOException {
+        log.debug("REST request to get a page of SeenMovies of Movie : {} or MovieUser : {} from {} to {} after : {}",
+            movieId, movieUserId, from, to, after);
+        if ((movieId == null) == (movieUserId == null)) {
+            throw new BadRequestAlertException("Exactly one of movieId and movieUserId must be set", ENTITY_NAME, "ownerinvalid");
+        }
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The start of the range must be before its end", ENTITY_NAME, "rangeinvalid");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("Page size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "pagesizeinvalid");
+        }
+        List<SeenMovieDTO> seenMovies = seenMovieArchiveService.findBetween(movieId, movieUserId, from, after, to, size);
+        HttpHeaders headers = new HttpHeaders();
+        if (seenMovies.size() == size) {
+            SeenMovieDTO last = seenMovies.get(seenMovies.size() - 1);
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("from", last.getDate().toInstant())
+                .replaceQueryParam("after", last.getId())
+                .replaceQueryParam("size", size)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(seenMovies);
+    }
+
+    /**
+     * {@code GET  /seen-movies/export} : export all the seenMovies as a column file.
+     * <p>
+     * Watch events are written to the response as they are read from a database cursor, as described by
+     * {@link fr.epita.movies.service.util.SeenMovieColumnFile}, so memory use does not depend on the size of the table.
+     *
+     * @param response the response the column file is written to.
+     * @throws IOException if the response could not be written.
+     */
+    @GetMapping("/seen-movies/export")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportSeenMovies(HttpServletResponse response) throws IOException {
+        log.debug("REST request to export all SeenMovies");
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"seen-movies.smc\"");
+        seenMovieExportService.export(new BufferedOutputStream(response.getOutputStream(), 64 * 1024));
+    }
+
     /**
      * {@code GET  /seen-movies/:id} : get the "id" seenMovie.
      *
@@ -112,7 +255,7 @@ public class SeenMovieResource {
     @DeleteMapping("/seen-movies/{id}")
     public ResponseEntity<Void> deleteSeenMovie(@PathVariable Long id) {
         log.debug("REST request to delete SeenMovie : {}", id);
-        seenMovieRepository.deleteById(id);
+        seenMovieService.delete(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString())).build();
     }
 }
@@ -1,4 +1,4 @@
-import axios from 'axios';
+import axios, { AxiosResponse } from 'axios';
 import { ICrudGetAction, ICrudGetAllAction, ICrudPutAction, ICrudDeleteAction } from 'react-jhipster';
 
 import { cleanEntity } from 'app/shared/util/entity-utils';
@@ -99,9 +99,32 @@ const apiUrl = 'api/movie-users';
 
 // Actions
 
+const PAGE_SIZE = 1000;
+
+const nextPageUrl = (link: string): string => {
+  const next = link && /<([^>]+)>;\s*rel="next"/.exec(link);
+  return next ? next[1] : null;
+};
+
+// GET api/movie-users returns one page at a time: follow the rel="next" links to list every movieUser
+const getAllPages = async (url: string): Promise<AxiosResponse<IMovieUser>> => {
+  const response: AxiosResponse = await axios.get(url);
+  let next = nextPageUrl(response.headers && response.headers.link);
+  if (!next) {
+    return response;
+  }
+  const data: IMovieUser[] = [...response.data];
+  while (next) {
+    const nextPage: AxiosResponse = await axios.get(next);
+    data.push(...nextPage.data);
+    next = nextPageUrl(nextPage.headers.link);
+  }
+  return { ...response, data } as AxiosResponse;
+};
+
 export const getEntities: ICrudGetAllAction<IMovieUser> = (page, size, sort) => ({
   type: ACTION_TYPES.FETCH_MOVIEUSER_LIST,
-  payload: axios.get<IMovieUser>(`${apiUrl}?cacheBuster=${new Date().getTime()}`)
+  payload: getAllPages(`${apiUrl}?after=0&size=${PAGE_SIZE}&cacheBuster=${new Date().getTime()}`)
 });
 
 export const getEntity: ICrudGetAction<IMovieUser> = id => {
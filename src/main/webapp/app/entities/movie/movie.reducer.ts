@@ -99,9 +99,10 @@ const apiUrl = 'api/movies';
 
 // Actions
 
+// The list page and the movie dropdowns show the whole catalog, which GET api/movies only returns page by page
 export const getEntities: ICrudGetAllAction<IMovie> = (page, size, sort) => ({
   type: ACTION_TYPES.FETCH_MOVIE_LIST,
-  payload: axios.get<IMovie>(`${apiUrl}?cacheBuster=${new Date().getTime()}`)
+  payload: axios.get<IMovie>(`${apiUrl}?stream=true&cacheBuster=${new Date().getTime()}`)
 });
 
 export const getEntity: ICrudGetAction<IMovie> = id => {
@@ -0,0 +1,156 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.AlsoWatchedDTO;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link AlsoWatchedService}.
+ */
+public class AlsoWatchedServiceTest {
+
+    private static final ZonedDateTime DATE = ZonedDateTime.of(2001, 2, 3, 4, 5, 6, 0, ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    private SeenMovieRepository seenMovieRepository;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private AlsoWatchedService alsoWatchedService;
+
+    private long nextId = 1;
+
+    @BeforeEach
+    public void init() {
+        seenMovieRepository = mock(SeenMovieRepository.class);
+        when(seenMovieRepository.findMovieIdsByMovieUserIdBefore(anyLong(), any(), anyLong(), any(Pageable.class)))
+            .thenReturn(Collections.emptyList());
+        when(seenMovieRepository.findDTOsByIdGreaterThan(anyLong(), any(Pageable.class))).thenReturn(Collections.emptyList());
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAlsoWatched().setMaxNeighbors(2);
+        applicationProperties.getAlsoWatched().setQueueCapacity(10);
+        applicationProperties.getAlsoWatched().setSnapshotFile(directory.resolve("also-watched.snapshot").toString());
+        meterRegistry = new SimpleMeterRegistry();
+        alsoWatchedService = newService();
+    }
+
+    @Test
+    public void applyShouldCountTheUsersWhoWatchedBothMovies() {
+        watch(100L, 1L, 2L);
+        watch(101L, 1L, 3L, 2L);
+        watch(102L, 2L, 2L);
+
+        alsoWatchedService.apply();
+
+        assertThat(alsoWatchedService.findAlsoWatched(1L, 10))
+            .extracting(AlsoWatchedDTO::getMovieId, AlsoWatchedDTO::getCount)
+            .containsExactly(tuple(2L, 2L), tuple(3L, 1L));
+        assertThat(alsoWatchedService.findAlsoWatched(1L, 1)).hasSize(1);
+        assertThat(alsoWatchedService.findAlsoWatched(4L, 10)).isEmpty();
+    }
+
+    @Test
+    public void applyShouldCountThePreviousMoviesOfUsersNotCached() {
+        when(seenMovieRepository.findMovieIdsByMovieUserIdBefore(eq(100L), any(), anyLong(), any(Pageable.class)))
+            .thenReturn(Collections.singletonList(5L));
+
+        watch(100L, 1L);
+        alsoWatchedService.apply();
+
+        assertThat(alsoWatchedService.findAlsoWatched(5L, 10))
+            .extracting(AlsoWatchedDTO::getMovieId, AlsoWatchedDTO::getCount)
+            .containsExactly(tuple(1L, 1L));
+    }
+
+    @Test
+    public void applyShouldReplaceTheLeastWatchedMovieOfAFullRow() {
+        watch(100L, 1L, 2L, 3L);
+        watch(101L, 1L, 2L);
+        watch(102L, 1L, 4L);
+
+        alsoWatchedService.apply();
+
+        assertThat(alsoWatchedService.findAlsoWatched(1L, 10))
+            .extracting(AlsoWatchedDTO::getMovieId, AlsoWatchedDTO::getCount)
+            .containsExactly(tuple(2L, 2L), tuple(4L, 2L));
+    }
+
+    @Test
+    public void recordShouldDropEventsPastTheQueueCapacity() {
+        applicationProperties.getAlsoWatched().setQueueCapacity(2);
+
+        watch(100L, 1L, 2L, 3L);
+
+        assertThat(meterRegistry.get("alsowatched.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void warmUpShouldLoadTheSnapshot() {
+        alsoWatchedService.warmUp();
+        watch(100L, 1L, 2L);
+        alsoWatchedService.apply();
+        alsoWatchedService.snapshot();
+
+        AlsoWatchedService restarted = newService();
+        restarted.warmUp();
+
+        assertThat(restarted.findAlsoWatched(1L, 10))
+            .extracting(AlsoWatchedDTO::getMovieId, AlsoWatchedDTO::getCount)
+            .containsExactly(tuple(2L, 1L));
+        verify(seenMovieRepository).findDTOsByIdGreaterThan(eq(nextId - 1), any(Pageable.class));
+    }
+
+    @Test
+    public void warmUpShouldCountTheEventsBothReadBackAndQueuedOnce() {
+        watch(100L, 1L, 2L);
+        when(seenMovieRepository.findMaxId()).thenReturn(Optional.of(0L));
+        when(seenMovieRepository.findDTOsByIdGreaterThan(eq(0L), any(Pageable.class))).thenReturn(Arrays.asList(
+            new SeenMovieDTO(1L, DATE.plusMinutes(1), 1L, 100L), new SeenMovieDTO(2L, DATE.plusMinutes(2), 2L, 100L)));
+
+        alsoWatchedService.warmUp();
+        alsoWatchedService.apply();
+
+        assertThat(alsoWatchedService.findAlsoWatched(1L, 10))
+            .extracting(AlsoWatchedDTO::getMovieId, AlsoWatchedDTO::getCount)
+            .containsExactly(tuple(2L, 1L));
+    }
+
+    private AlsoWatchedService newService() {
+        return new AlsoWatchedService(seenMovieRepository, mock(PlatformTransactionManager.class), applicationProperties,
+            meterRegistry);
+    }
+
+    private void watch(Long movieUserId, Long... movieIds) {
+        for (Long movieId : movieIds) {
+            long id = nextId++;
+            alsoWatchedService.record(new SeenMovieDTO(id, DATE.plusMinutes(id), movieId, movieUserId));
+        }
+    }
+}
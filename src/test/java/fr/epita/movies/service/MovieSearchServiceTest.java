@@ -0,0 +1,62 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.domain.Movie;
+import fr.epita.movies.service.dto.MovieDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link MovieSearchService}.
+ */
+public class MovieSearchServiceTest {
+
+    private MovieSearchService movieSearchService;
+
+    @BeforeEach
+    public void init() {
+        movieSearchService = new MovieSearchService();
+        movieSearchService.index(movie(1L, "Amélie"));
+        movieSearchService.index(movie(2L, "Alien"));
+        movieSearchService.index(movie(3L, "Aliens"));
+        movieSearchService.index(movie(4L, "Brazil"));
+    }
+
+    @Test
+    public void suggestShouldMatchPrefixIgnoringCaseAndAccents() {
+        assertThat(movieSearchService.suggest("ALI", 10)).extracting(MovieDTO::getId).containsExactly(2L, 3L);
+        assertThat(movieSearchService.suggest("ame", 10)).extracting(MovieDTO::getTitle).containsExactly("Amélie");
+    }
+
+    @Test
+    public void suggestShouldHonourLimit() {
+        assertThat(movieSearchService.suggest("a", 2)).extracting(MovieDTO::getId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    public void suggestShouldIgnoreBlankPrefix() {
+        assertThat(movieSearchService.suggest(" ", 10)).isEmpty();
+    }
+
+    @Test
+    public void indexShouldReplacePreviousTitle() {
+        movieSearchService.index(movie(4L, "Batman"));
+
+        assertThat(movieSearchService.suggest("bra", 10)).isEmpty();
+        assertThat(movieSearchService.suggest("bat", 10)).extracting(MovieDTO::getId).containsExactly(4L);
+    }
+
+    @Test
+    public void removeShouldDropTitle() {
+        movieSearchService.remove(2L);
+
+        assertThat(movieSearchService.suggest("ali", 10)).extracting(MovieDTO::getId).containsExactly(3L);
+    }
+
+    private static Movie movie(Long id, String title) {
+        Movie movie = new Movie().title(title);
+        movie.setId(id);
+        return movie;
+    }
+}
@@ -0,0 +1,119 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.MovieUserRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link RoleMembershipService}.
+ */
+public class RoleMembershipServiceTest {
+
+    private MovieUserRepository movieUserRepository;
+
+    private RoleMembershipService roleMembershipService;
+
+    @BeforeEach
+    public void init() {
+        movieUserRepository = mock(MovieUserRepository.class);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRoleMembership().setLoadChunkSize(2);
+        roleMembershipService = new RoleMembershipService(movieUserRepository, mock(PlatformTransactionManager.class),
+            applicationProperties);
+    }
+
+    @Test
+    public void shouldReadTheDatabaseUntilWarmedUp() {
+        when(movieUserRepository.existsByIdAndRolesIdIn(1L, Collections.singletonList(10L))).thenReturn(true);
+        when(movieUserRepository.findIdsByRoleIdAndIdGreaterThan(eq(10L), eq(Long.MIN_VALUE), any(Pageable.class)))
+            .thenReturn(Collections.singletonList(1L));
+
+        assertThat(roleMembershipService.hasAnyRole(1L, Collections.singletonList(10L))).isTrue();
+        assertThat(roleMembershipService.findMemberIds(10L, null, 20)).containsExactly(1L);
+    }
+
+    @Test
+    public void warmUpShouldCacheTheRolesOfEachUser() {
+        warmUp();
+
+        assertThat(roleMembershipService.hasAnyRole(1L, Arrays.asList(11L, 10L))).isTrue();
+        assertThat(roleMembershipService.hasAnyRole(2L, Collections.singletonList(10L))).isFalse();
+        assertThat(roleMembershipService.hasAnyRole(2L, Arrays.asList(12L, 11L))).isTrue();
+        assertThat(roleMembershipService.hasAnyRole(3L, Collections.singletonList(10L))).isTrue();
+        assertThat(roleMembershipService.hasAnyRole(4L, Collections.singletonList(10L))).isFalse();
+        assertThat(roleMembershipService.hasAnyRole(1L, Collections.emptyList())).isFalse();
+        assertThat(roleMembershipService.findMemberIds(10L, null, 20)).containsExactly(1L, 3L);
+        assertThat(roleMembershipService.findMemberIds(10L, 1L, 20)).containsExactly(3L);
+        assertThat(roleMembershipService.findMemberIds(10L, null, 1)).containsExactly(1L);
+        assertThat(roleMembershipService.findMemberIds(12L, null, 20)).isEmpty();
+        verify(movieUserRepository, never()).existsByIdAndRolesIdIn(any(), anyCollection());
+    }
+
+    @Test
+    public void invalidateShouldReloadFromTheDatabase() {
+        warmUp();
+        when(movieUserRepository.findRoleIdsById(1L)).thenReturn(Collections.singletonList(12L));
+        when(movieUserRepository.findIdsByRoleId(11L)).thenReturn(Arrays.asList(2L, 3L));
+
+        roleMembershipService.invalidateMovieUser(1L);
+        roleMembershipService.invalidateRole(11L);
+
+        assertThat(roleMembershipService.hasAnyRole(1L, Arrays.asList(10L, 11L))).isFalse();
+        assertThat(roleMembershipService.hasAnyRole(1L, Collections.singletonList(12L))).isTrue();
+        assertThat(roleMembershipService.hasAnyRole(3L, Collections.singletonList(11L))).isTrue();
+        assertThat(roleMembershipService.findMemberIds(10L, null, 20)).containsExactly(3L);
+        assertThat(roleMembershipService.findMemberIds(11L, null, 20)).containsExactly(2L, 3L);
+        assertThat(roleMembershipService.findMemberIds(12L, null, 20)).containsExactly(1L);
+    }
+
+    @Test
+    public void retryWarmUpShouldBuildTheCacheAfterAFailure() {
+        givenUsers();
+        doThrow(new QueryTimeoutException("Timeout")).doReturn(Arrays.asList(1L, 2L))
+            .when(movieUserRepository).findIdsByIdGreaterThan(eq(Long.MIN_VALUE), any(Pageable.class));
+
+        roleMembershipService.warmUp();
+        roleMembershipService.invalidateMovieUser(1L);
+        roleMembershipService.retryWarmUp();
+
+        verify(movieUserRepository, never()).findRoleIdsById(any());
+        assertThat(roleMembershipService.hasAnyRole(1L, Arrays.asList(11L, 10L))).isTrue();
+        assertThat(roleMembershipService.findMemberIds(10L, null, 20)).containsExactly(1L, 3L);
+        verify(movieUserRepository, never()).existsByIdAndRolesIdIn(any(), anyCollection());
+    }
+
+    /**
+     * Warms up with the users of {@link #givenUsers()}.
+     */
+    private void warmUp() {
+        givenUsers();
+        roleMembershipService.warmUp();
+    }
+
+    /**
+     * Stores users 1 (roles 10 and 11), 2 (role 11), 3 (role 10) and 4 (no role), read two users per chunk.
+     */
+    private void givenUsers() {
+        when(movieUserRepository.findIdsByIdGreaterThan(eq(Long.MIN_VALUE), any(Pageable.class))).thenReturn(Arrays.asList(1L, 2L));
+        when(movieUserRepository.findIdsByIdGreaterThan(eq(2L), any(Pageable.class))).thenReturn(Arrays.asList(3L, 4L));
+        when(movieUserRepository.findIdsByIdGreaterThan(eq(4L), any(Pageable.class))).thenReturn(Collections.emptyList());
+        when(movieUserRepository.findRoleIdPairsByIdIn(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+            new Object[]{1L, 10L}, new Object[]{1L, 11L}, new Object[]{2L, 11L}));
+        when(movieUserRepository.findRoleIdPairsByIdIn(Arrays.asList(3L, 4L))).thenReturn(Collections.singletonList(
+            new Object[]{3L, 10L}));
+    }
+}
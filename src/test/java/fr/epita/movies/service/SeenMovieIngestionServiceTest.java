@@ -0,0 +1,112 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link SeenMovieIngestionService}.
+ */
+public class SeenMovieIngestionServiceTest {
+
+    private SeenMovieService seenMovieService;
+
+    private MeterRegistry meterRegistry;
+
+    private SeenMovieIngestionService seenMovieIngestionService;
+
+    @BeforeEach
+    public void init() {
+        seenMovieService = mock(SeenMovieService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSeenMovieIngestion().setQueueCapacity(3);
+        applicationProperties.getSeenMovieIngestion().setChunkSize(2);
+        seenMovieIngestionService = new SeenMovieIngestionService(seenMovieService,
+            new SeenMovieDeduplicator(applicationProperties, meterRegistry), mock(PlatformTransactionManager.class),
+            applicationProperties, meterRegistry);
+    }
+
+    @Test
+    public void offerShouldRefuseBatchesThatDoNotFit() {
+        assertThat(seenMovieIngestionService.offer(seenMovies(2))).isTrue();
+        assertThat(seenMovieIngestionService.offer(seenMovies(2))).isFalse();
+        assertThat(seenMovieIngestionService.offer(seenMovies(1))).isTrue();
+
+        assertThat(meterRegistry.get("seenmovie.ingestion.queue.depth").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("seenmovie.ingestion.rejected").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void offerShouldSkipResentEvents() {
+        List<SeenMovieDTO> seenMovies = seenMovies(2);
+        seenMovies.forEach(seenMovie -> seenMovie.setMovieUserId(1L));
+        seenMovieIngestionService.offer(seenMovies);
+
+        assertThat(seenMovieIngestionService.offer(seenMovies)).isTrue();
+
+        assertThat(meterRegistry.get("seenmovie.ingestion.queue.depth").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("seenmovie.duplicates.suppressed").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void flushShouldWriteTheQueueInChunksAndFreeItsRoom() {
+        seenMovieIngestionService.offer(seenMovies(3));
+
+        seenMovieIngestionService.flush();
+
+        verify(seenMovieService, times(2)).insertAll(anyList());
+        assertThat(meterRegistry.get("seenmovie.ingestion.queue.depth").gauge().value()).isEqualTo(0);
+        assertThat(meterRegistry.get("seenmovie.ingestion.flush").timer().count()).isEqualTo(2);
+        assertThat(seenMovieIngestionService.offer(seenMovies(3))).isTrue();
+    }
+
+    @Test
+    public void flushShouldOnlyDropTheEventsThatCannotBeWritten() {
+        List<SeenMovieDTO> seenMovies = seenMovies(2);
+        when(seenMovieService.insertAll(seenMovies)).thenThrow(new DataIntegrityViolationException("fk"));
+        when(seenMovieService.insertAll(Collections.singletonList(seenMovies.get(0)))).thenThrow(new DataIntegrityViolationException("fk"));
+        seenMovieIngestionService.offer(seenMovies);
+
+        seenMovieIngestionService.flush();
+
+        verify(seenMovieService).insertAll(Collections.singletonList(seenMovies.get(1)));
+        assertThat(meterRegistry.get("seenmovie.ingestion.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void flushShouldFreeTheRoomOfEventsDroppedOnAnUnexpectedError() {
+        when(seenMovieService.insertAll(anyList())).thenThrow(new IllegalStateException("unexpected"));
+        seenMovieIngestionService.offer(seenMovies(3));
+
+        seenMovieIngestionService.flush();
+
+        assertThat(meterRegistry.get("seenmovie.ingestion.dropped").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("seenmovie.ingestion.queue.depth").gauge().value()).isEqualTo(0);
+        assertThat(seenMovieIngestionService.offer(seenMovies(3))).isTrue();
+    }
+
+    private static List<SeenMovieDTO> seenMovies(int count) {
+        SeenMovieDTO[] seenMovies = new SeenMovieDTO[count];
+        for (int i = 0; i < count; i++) {
+            seenMovies[i] = new SeenMovieDTO();
+            seenMovies[i].setMovieId((long) i);
+            seenMovies[i].setDate(ZonedDateTime.now());
+        }
+        return Arrays.asList(seenMovies);
+    }
+}
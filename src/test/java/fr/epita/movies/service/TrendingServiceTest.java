@@ -0,0 +1,121 @@
+package fr.epita.movies.service;
+
+import fr.epita.movies.config.ApplicationProperties;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.dto.MovieViewCountDTO;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TrendingService}.
+ */
+public class TrendingServiceTest {
+
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    private static final Duration DAY = Duration.ofDays(1);
+
+    private SeenMovieRepository seenMovieRepository;
+
+    private TrendingService trendingService;
+
+    private long nextId = 1;
+
+    @BeforeEach
+    public void init() {
+        seenMovieRepository = mock(SeenMovieRepository.class);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getTrending().setTopCapacity(2);
+        trendingService = new TrendingService(seenMovieRepository, mock(PlatformTransactionManager.class), applicationProperties);
+    }
+
+    @Test
+    public void recomputeShouldRankTheMoviesOfEachWindow() {
+        ZonedDateTime now = ZonedDateTime.now();
+        watch(1L, now, now.minusMinutes(1), now.minusHours(2));
+        watch(2L, now, now.minusMinutes(30));
+        watch(3L, now.minusHours(3), now.minusHours(4), now.minusHours(5));
+        watch(4L, now.minusDays(2));
+
+        trendingService.recompute();
+
+        assertThat(trendingService.getWindows()).containsExactly(HOUR, DAY);
+        assertThat(trendingService.findTrending(HOUR, 2))
+            .extracting(MovieViewCountDTO::getMovieId, MovieViewCountDTO::getViewCount)
+            .containsExactly(tuple(1L, 2L), tuple(2L, 2L));
+        assertThat(trendingService.findTrending(DAY, 2))
+            .extracting(MovieViewCountDTO::getMovieId, MovieViewCountDTO::getViewCount)
+            .containsExactly(tuple(1L, 3L), tuple(3L, 3L));
+        assertThat(trendingService.findTrending(DAY, 1)).hasSize(1);
+        assertThat(trendingService.findTrending(Duration.ofMinutes(5), 2)).isEmpty();
+    }
+
+    @Test
+    public void addShouldNotLoseConcurrentWatches() throws InterruptedException {
+        int threadCount = 4;
+        int watchesPerThread = 250_000;
+        long date = System.currentTimeMillis();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < watchesPerThread; i++) {
+                    trendingService.add(i % 2, date);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        trendingService.recompute();
+
+        assertThat(trendingService.findTrending(HOUR, 2))
+            .extracting(MovieViewCountDTO::getViewCount)
+            .containsExactly((long) threadCount * watchesPerThread / 2, (long) threadCount * watchesPerThread / 2);
+    }
+
+    @Test
+    public void warmUpShouldCountTheWatchEventsOfTheLongestWindow() {
+        ZonedDateTime now = ZonedDateTime.now();
+        when(seenMovieRepository.findDTOsByIdLessThan(eq(Long.MAX_VALUE), any(Pageable.class))).thenReturn(Arrays.asList(
+            new SeenMovieDTO(5L, now, 1L, null),
+            new SeenMovieDTO(4L, now.minusHours(2), 1L, null)));
+        when(seenMovieRepository.findDTOsByIdLessThan(eq(4L), any(Pageable.class))).thenReturn(Arrays.asList(
+            new SeenMovieDTO(3L, now.minusDays(2), 1L, null),
+            new SeenMovieDTO(2L, now.minusDays(3), 1L, null)));
+
+        trendingService.warmUp();
+
+        assertThat(trendingService.findTrending(HOUR, 2))
+            .extracting(MovieViewCountDTO::getMovieId, MovieViewCountDTO::getViewCount)
+            .containsExactly(tuple(1L, 1L));
+        assertThat(trendingService.findTrending(DAY, 2))
+            .extracting(MovieViewCountDTO::getMovieId, MovieViewCountDTO::getViewCount)
+            .containsExactly(tuple(1L, 2L));
+        verify(seenMovieRepository, never()).findDTOsByIdLessThan(eq(2L), any(Pageable.class));
+    }
+
+    private void watch(Long movieId, ZonedDateTime... dates) {
+        for (ZonedDateTime date : dates) {
+            trendingService.record(new SeenMovieDTO(nextId++, date, movieId, null));
+        }
+    }
+}
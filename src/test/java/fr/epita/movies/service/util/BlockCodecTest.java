@@ -0,0 +1,69 @@
+package fr.epita.movies.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link BlockCodec}.
+ */
+public class BlockCodecTest {
+
+    private static final long[] VALUES = {0, 1, -1, 63, -64, 64, 300, -300, Long.MAX_VALUE, Long.MIN_VALUE};
+
+    @Test
+    public void shouldReadBackZigzagEncodedVarLongs() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : VALUES) {
+            BlockCodec.writeVarLong(out, BlockCodec.zigzag(value));
+        }
+        byte[] bytes = out.toByteArray();
+
+        int[] position = {0};
+        for (long value : VALUES) {
+            assertThat(BlockCodec.unzigzag(BlockCodec.readVarLong(bytes, position))).isEqualTo(value);
+        }
+        assertThat(position[0]).isEqualTo(bytes.length);
+    }
+
+    @Test
+    public void shouldWriteSmallValuesOnOneByte() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlockCodec.writeVarLong(out, BlockCodec.zigzag(-64));
+        BlockCodec.writeVarLong(out, BlockCodec.zigzag(63));
+
+        assertThat(out.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldInflateDeflatedBlocks() throws IOException, DataFormatException {
+        byte[] first = "first block, first block, first block".getBytes();
+        byte[] second = "second block".getBytes();
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        int firstLength;
+        int secondLength;
+        try {
+            firstLength = BlockCodec.deflate(deflater, first, new byte[4], file);
+            secondLength = BlockCodec.deflate(deflater, second, new byte[4], file);
+        } finally {
+            deflater.end();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(file.toByteArray());
+
+        assertThat(file.size()).isEqualTo(firstLength + secondLength);
+        assertThat(BlockCodec.inflate(buffer, 0, firstLength, first.length)).isEqualTo(first);
+        assertThat(BlockCodec.inflate(buffer, firstLength, secondLength, second.length)).isEqualTo(second);
+        assertThatThrownBy(() -> BlockCodec.inflate(buffer, 0, firstLength, first.length + 1))
+            .isInstanceOf(DataFormatException.class);
+        assertThatThrownBy(() -> BlockCodec.inflate(buffer, 1, firstLength - 1, first.length))
+            .isInstanceOf(DataFormatException.class);
+    }
+}
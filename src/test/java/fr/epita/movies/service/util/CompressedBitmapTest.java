@@ -0,0 +1,96 @@
+package fr.epita.movies.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link CompressedBitmap}.
+ */
+public class CompressedBitmapTest {
+
+    @Test
+    public void shouldAddAndRemoveValues() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+
+        assertThat(bitmap.add(3)).isTrue();
+        assertThat(bitmap.add(3)).isFalse();
+        assertThat(bitmap.add(1L << 40)).isTrue();
+        assertThat(bitmap.add(65_536)).isTrue();
+
+        assertThat(bitmap.getCardinality()).isEqualTo(3);
+        assertThat(bitmap.contains(3)).isTrue();
+        assertThat(bitmap.contains(1L << 40)).isTrue();
+        assertThat(bitmap.contains(65_536)).isTrue();
+        assertThat(bitmap.contains(4)).isFalse();
+        assertThat(bitmap.contains(-3)).isFalse();
+
+        assertThat(bitmap.remove(3)).isTrue();
+        assertThat(bitmap.remove(3)).isFalse();
+        assertThat(bitmap.remove(1L << 40)).isTrue();
+        assertThat(bitmap.contains(3)).isFalse();
+        assertThat(bitmap.contains(65_536)).isTrue();
+        assertThat(bitmap.getCardinality()).isEqualTo(1);
+        assertThat(bitmap.remove(65_536)).isTrue();
+        assertThat(bitmap.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldMatchASetAcrossContainerConversions() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(3 * 65_536);
+            assertThat(bitmap.add(value)).isEqualTo(expected.add(value));
+        }
+        for (long value = 0; value < 3 * 65_536; value++) {
+            assertThat(bitmap.contains(value)).isEqualTo(expected.contains(value));
+        }
+
+        for (long value = 0; value < 3 * 65_536; value += 2) {
+            assertThat(bitmap.remove(value)).isEqualTo(expected.remove(value));
+        }
+        assertThat(bitmap.getCardinality()).isEqualTo(expected.size());
+        for (long value = 0; value < 3 * 65_536; value++) {
+            assertThat(bitmap.contains(value)).isEqualTo(expected.contains(value));
+        }
+    }
+
+    @Test
+    public void toArrayShouldListTheValuesInOrderFromAValue() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextInt(65_536) + (i % 2 == 0 ? 0 : 5 * 65_536);
+            bitmap.add(value);
+            expected.add(value);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            long value = 2 * 65_536 + random.nextInt(100);
+            bitmap.add(value);
+            expected.add(value);
+        }
+
+        assertThat(bitmap.toArray(-5, Integer.MAX_VALUE)).containsExactly(expected.stream().mapToLong(Long::longValue).toArray());
+        long from = 65_000;
+        assertThat(bitmap.toArray(from, 200))
+            .containsExactly(expected.tailSet(from).stream().limit(200).mapToLong(Long::longValue).toArray());
+        from = 2 * 65_536 + 50;
+        assertThat(bitmap.toArray(from, 60))
+            .containsExactly(expected.tailSet(from).stream().limit(60).mapToLong(Long::longValue).toArray());
+        assertThat(bitmap.toArray(6 * 65_536, 10)).isEmpty();
+    }
+
+    @Test
+    public void addShouldRejectNegativeValues() {
+        assertThatThrownBy(() -> new CompressedBitmap().add(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
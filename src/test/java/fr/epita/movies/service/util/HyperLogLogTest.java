@@ -0,0 +1,93 @@
+package fr.epita.movies.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link HyperLogLog}.
+ */
+public class HyperLogLogTest {
+
+    @Test
+    public void estimateShouldBeCloseToTheNumberOfDistinctValues() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (long i = 1; i <= 100_000; i++) {
+            sketch.add(i);
+            sketch.add(i);
+        }
+
+        assertThat(sketch.estimate()).isBetween(95_000L, 105_000L);
+    }
+
+    @Test
+    public void estimateShouldBeExactForFewValues() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        assertThat(sketch.isEmpty()).isTrue();
+        assertThat(sketch.estimate()).isEqualTo(0);
+
+        for (long i = 1; i <= 10; i++) {
+            sketch.add(i);
+        }
+
+        assertThat(sketch.isEmpty()).isFalse();
+        assertThat(sketch.estimate()).isEqualTo(10);
+    }
+
+    @Test
+    public void mergeShouldEstimateTheUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (long i = 1; i <= 30_000; i++) {
+            first.add(i);
+            second.add(i + 20_000);
+        }
+
+        first.merge(second);
+
+        assertThat(first.estimate()).isBetween(47_500L, 52_500L);
+        assertThatThrownBy(() -> first.merge(new HyperLogLog(10))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void sparseSketchesShouldMergeIntoTheDenseSketchOfTheirValues() {
+        HyperLogLog dense = new HyperLogLog(12);
+        HyperLogLog merged = new HyperLogLog(12);
+        for (long chunk = 0; chunk < 50; chunk++) {
+            HyperLogLog sparse = new HyperLogLog(12);
+            for (long i = chunk * 100 + 1; i <= chunk * 100 + 100; i++) {
+                sparse.add(i);
+                dense.add(i);
+            }
+            assertThat(sparse.toBytes().length).isLessThan(2 + 3 * 101);
+            merged.merge(sparse);
+        }
+
+        assertThat(merged).isEqualTo(dense);
+        assertThat(merged.estimate()).isEqualTo(dense.estimate()).isBetween(4_750L, 5_250L);
+        assertThat(HyperLogLog.fromBytes(merged.toBytes())).isEqualTo(dense);
+    }
+
+    @Test
+    public void toBytesShouldRoundTripSparseAndDenseSketches() {
+        HyperLogLog sparse = new HyperLogLog(12);
+        sparse.add(42L);
+        HyperLogLog dense = new HyperLogLog(12);
+        for (long i = 1; i <= 10_000; i++) {
+            dense.add(i);
+        }
+
+        assertThat(sparse.toBytes()).hasSize(5);
+        assertThat(HyperLogLog.fromBytes(sparse.toBytes())).isEqualTo(sparse);
+        assertThat(dense.toBytes()).hasSize(2 + 4096);
+        assertThat(HyperLogLog.fromBytes(dense.toBytes())).isEqualTo(dense);
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[] {7, 12})).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void constructorShouldRejectInvalidPrecision() {
+        assertThatThrownBy(() -> new HyperLogLog(3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(17)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package fr.epita.movies.service.util;
+
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link SeenMovieColumnFile}.
+ */
+public class SeenMovieColumnFileTest {
+
+    private static final ZonedDateTime DATE = ZonedDateTime.of(2001, 2, 3, 4, 5, 6, 0, ZoneOffset.UTC);
+
+    private static final List<SeenMovieDTO> SEEN_MOVIES = Arrays.asList(
+        new SeenMovieDTO(10L, DATE.plusDays(2), 1L, 100L),
+        new SeenMovieDTO(11L, null, null, 100L),
+        new SeenMovieDTO(15L, DATE.plusDays(1), 2L, null),
+        new SeenMovieDTO(16L, DATE.plusDays(9), 3L, 101L),
+        new SeenMovieDTO(20L, DATE.minusDays(1), 4L, 102L));
+
+    @Test
+    public void scanShouldReadBackTheWatchEvents() throws IOException {
+        ByteBuffer file = write(SEEN_MOVIES, 2);
+
+        List<SeenMovieDTO> scanned = new ArrayList<>();
+        SeenMovieColumnFile.scan(file, scanned::add);
+
+        assertThat(scanned).usingFieldByFieldElementComparator().containsExactlyElementsOf(SEEN_MOVIES);
+    }
+
+    @Test
+    public void readRowGroupsShouldDescribeEachColumnChunk() throws IOException {
+        List<SeenMovieColumnFile.RowGroup> rowGroups = SeenMovieColumnFile.readRowGroups(write(SEEN_MOVIES, 2));
+
+        assertThat(rowGroups).extracting(SeenMovieColumnFile.RowGroup::getRowCount).containsExactly(2, 2, 1);
+        SeenMovieColumnFile.ColumnChunk dates = rowGroups.get(0).getColumn(SeenMovieColumnFile.COLUMNS.indexOf("date"));
+        assertThat(dates.getNullCount()).isEqualTo(1);
+        assertThat(dates.getMin()).isEqualTo(DATE.plusDays(2).toInstant().toEpochMilli());
+        assertThat(dates.getMax()).isEqualTo(DATE.plusDays(2).toInstant().toEpochMilli());
+        SeenMovieColumnFile.ColumnChunk ids = rowGroups.get(1).getColumn(SeenMovieColumnFile.COLUMNS.indexOf("id"));
+        assertThat(ids.getMin()).isEqualTo(15L);
+        assertThat(ids.getMax()).isEqualTo(16L);
+        SeenMovieColumnFile.ColumnChunk movieUserIds = rowGroups.get(1).getColumn(SeenMovieColumnFile.COLUMNS.indexOf("movie_user_id"));
+        assertThat(movieUserIds.getNullCount()).isEqualTo(1);
+        assertThat(movieUserIds.getMin()).isEqualTo(101L);
+    }
+
+    @Test
+    public void scanShouldReadAnEmptyFile() throws IOException {
+        ByteBuffer file = write(new ArrayList<>(), 2);
+
+        List<SeenMovieDTO> scanned = new ArrayList<>();
+        SeenMovieColumnFile.scan(file, scanned::add);
+
+        assertThat(scanned).isEmpty();
+        assertThat(SeenMovieColumnFile.readRowGroups(file)).isEmpty();
+    }
+
+    @Test
+    public void readRowGroupsShouldRejectOtherContent() {
+        assertThatThrownBy(() -> SeenMovieColumnFile.readRowGroups(ByteBuffer.wrap(new byte[32]))).isInstanceOf(IOException.class);
+    }
+
+    private static ByteBuffer write(List<SeenMovieDTO> seenMovies, int rowGroupSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SeenMovieColumnFile.Writer writer = SeenMovieColumnFile.writer(out, rowGroupSize)) {
+            for (SeenMovieDTO seenMovie : seenMovies) {
+                writer.write(seenMovie);
+            }
+            assertThat(writer.getRowCount()).isEqualTo(seenMovies.size());
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+}
@@ -0,0 +1,68 @@
+package fr.epita.movies.service.util;
+
+import fr.epita.movies.service.dto.SeenMovieDTO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link SeenMovieSegment}.
+ */
+public class SeenMovieSegmentTest {
+
+    private static final ZonedDateTime DATE = ZonedDateTime.of(2001, 2, 3, 4, 5, 6, 0, ZoneOffset.UTC);
+
+    private static final List<SeenMovieDTO> SEEN_MOVIES = Arrays.asList(
+        new SeenMovieDTO(10L, DATE.plusDays(2), 1L, 100L),
+        new SeenMovieDTO(11L, DATE, null, 100L),
+        new SeenMovieDTO(15L, DATE.plusDays(1), 2L, null),
+        new SeenMovieDTO(16L, DATE.plusDays(9), 3L, 101L),
+        new SeenMovieDTO(20L, DATE.minusDays(1), 4L, 102L));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void scanShouldReadBackTheWatchEventsOfTheRange() throws IOException {
+        SeenMovieSegment segment = SeenMovieSegment.write(directory.resolve("segment"), SEEN_MOVIES, 2);
+
+        List<SeenMovieDTO> scanned = new ArrayList<>();
+        segment.scan(DATE, DATE.plusDays(9), scanned::add);
+
+        assertThat(scanned).usingFieldByFieldElementComparator().containsExactly(SEEN_MOVIES.get(0), SEEN_MOVIES.get(1), SEEN_MOVIES.get(2));
+        assertThat(segment.getCount()).isEqualTo(5);
+        assertThat(segment.getMinDate()).isEqualTo(DATE.minusDays(1).toInstant().toEpochMilli());
+        assertThat(segment.getMaxDate()).isEqualTo(DATE.plusDays(9).toInstant().toEpochMilli());
+    }
+
+    @Test
+    public void openShouldMapAWrittenSegment() throws IOException {
+        Path path = directory.resolve("segment");
+        SeenMovieSegment.write(path, SEEN_MOVIES, 3);
+
+        List<SeenMovieDTO> scanned = new ArrayList<>();
+        SeenMovieSegment.open(path).scan(DATE.minusYears(1), DATE.plusYears(1), scanned::add);
+
+        assertThat(scanned).usingFieldByFieldElementComparator().containsExactlyElementsOf(SEEN_MOVIES);
+        assertThat(Files.exists(directory.resolve("segment.tmp"))).isFalse();
+    }
+
+    @Test
+    public void openShouldRefuseAnotherFile() throws IOException {
+        Path path = Files.write(directory.resolve("other"), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+
+        assertThatThrownBy(() -> SeenMovieSegment.open(path)).isInstanceOf(IOException.class);
+    }
+}
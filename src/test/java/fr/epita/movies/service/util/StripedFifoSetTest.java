@@ -0,0 +1,41 @@
+package fr.epita.movies.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link StripedFifoSet}.
+ */
+public class StripedFifoSetTest {
+
+    @Test
+    public void addShouldOnlyAcceptAnElementOnce() {
+        StripedFifoSet<String> set = new StripedFifoSet<>(4, 100);
+
+        assertThat(set.add("a")).isTrue();
+        assertThat(set.add("a")).isFalse();
+        assertThat(set.add("b")).isTrue();
+    }
+
+    @Test
+    public void removeShouldForgetAnElement() {
+        StripedFifoSet<String> set = new StripedFifoSet<>(4, 100);
+        set.add("a");
+
+        set.remove("a");
+
+        assertThat(set.add("a")).isTrue();
+    }
+
+    @Test
+    public void addShouldEvictTheOldestElementsPastCapacity() {
+        StripedFifoSet<Integer> set = new StripedFifoSet<>(1, 2);
+        set.add(1);
+        set.add(2);
+        set.add(3);
+
+        assertThat(set.add(1)).isTrue();
+        assertThat(set.add(3)).isFalse();
+    }
+}
@@ -0,0 +1,48 @@
+package fr.epita.movies.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link WarmUp}.
+ */
+public class WarmUpTest {
+
+    private final WarmUp warmUp = new WarmUp();
+
+    private final List<String> applied = new ArrayList<>();
+
+    @Test
+    public void applyShouldQueueTheUpdatesUntilTheBuildSucceeds() {
+        assertThat(warmUp.start()).isTrue();
+        assertThat(warmUp.start()).isFalse();
+        warmUp.apply(() -> applied.add("queued"));
+        assertThat(applied).isEmpty();
+
+        warmUp.succeed();
+        warmUp.apply(() -> applied.add("direct"));
+
+        assertThat(warmUp.isLoaded()).isTrue();
+        assertThat(warmUp.start()).isFalse();
+        assertThat(applied).containsExactly("queued", "direct");
+    }
+
+    @Test
+    public void applyShouldDropTheUpdatesWhileNoBuildRuns() {
+        warmUp.apply(() -> applied.add("before"));
+        assertThat(warmUp.start()).isTrue();
+        warmUp.apply(() -> applied.add("failed"));
+        warmUp.fail();
+        warmUp.apply(() -> applied.add("after"));
+
+        assertThat(warmUp.isIdle()).isTrue();
+        assertThat(warmUp.start()).isTrue();
+        warmUp.succeed();
+
+        assertThat(applied).isEmpty();
+    }
+}
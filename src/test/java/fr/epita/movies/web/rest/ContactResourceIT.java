@@ -9,20 +9,28 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.ZoneOffset;
 import java.time.ZoneId;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
 
 import static fr.epita.movies.web.rest.TestUtil.sameInstant;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -151,6 +159,60 @@ public class ContactResourceIT {
             .andExpect(jsonPath("$.[*].email").value(hasItem(DEFAULT_EMAIL)));
     }
     
+    @Test
+    @Transactional
+    public void getContactsByEmail() throws Exception {
+        // Initialize the database
+        contactRepository.saveAndFlush(contact);
+        Contact otherContact = contactRepository.saveAndFlush(createUpdatedEntity(em));
+
+        // Get the contacts by email, ignoring case
+        restContactMockMvc.perform(get("/api/contacts?email={email}", " " + DEFAULT_EMAIL.toLowerCase(Locale.ROOT)))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(contact.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(otherContact.getId().intValue()))))
+            .andExpect(jsonPath("$.[*].email").value(hasItem(DEFAULT_EMAIL)));
+    }
+
+    @Test
+    @Transactional
+    public void getContactsByNamePrefix() throws Exception {
+        // Initialize the database
+        contact.setName("Zoë+Édouard");
+        contactRepository.saveAndFlush(contact);
+        Contact otherContact = contactRepository.saveAndFlush(createUpdatedEntity(em).name("Zoe+Martin"));
+        Contact unrelatedContact = contactRepository.saveAndFlush(createUpdatedEntity(em).name("Zorro"));
+
+        // Get the contacts by name prefix, ignoring case and accents, in name order
+        String next = restContactMockMvc.perform(get("/api/contacts?namePrefix={prefix}&size=1", "zoé "))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(contains(contact.getId().intValue())))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("after=")))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+        // Follow the next link, whose cursor holds a '+' that must not be read as a space
+        String nextUrl = next.substring(next.indexOf('<') + 1, next.indexOf('>'));
+        restContactMockMvc.perform(get(URI.create(nextUrl)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(otherContact.getId().intValue())))
+            .andExpect(header().exists(HttpHeaders.LINK));
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+            (Contact.toNameKey(otherContact.getName()) + "," + otherContact.getId()).getBytes(StandardCharsets.UTF_8));
+        restContactMockMvc.perform(get("/api/contacts?namePrefix={prefix}&after={after}&size=1", "ZOE", cursor))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty())
+            .andExpect(header().doesNotExist(HttpHeaders.LINK));
+        restContactMockMvc.perform(get("/api/contacts?namePrefix={prefix}&after={after}", "zoe", "zoe"))
+            .andExpect(status().isBadRequest());
+        restContactMockMvc.perform(get("/api/contacts?namePrefix={prefix}&after={after}", "zoe", "zoe,1"))
+            .andExpect(status().isBadRequest());
+        restContactMockMvc.perform(get("/api/contacts?namePrefix={prefix}", ""))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+    }
+
     @Test
     @Transactional
     public void getContact() throws Exception {
@@ -2,26 +2,43 @@ package fr.epita.movies.web.rest;
 
 import fr.epita.movies.MoviesApp;
 import fr.epita.movies.domain.Movie;
+import fr.epita.movies.domain.MovieUser;
+import fr.epita.movies.domain.SeenMovie;
+import fr.epita.movies.repository.MovieReachRepository;
 import fr.epita.movies.repository.MovieRepository;
+import fr.epita.movies.repository.MovieUserRepository;
+import fr.epita.movies.service.AlsoWatchedService;
+import fr.epita.movies.service.MovieReachService;
+import fr.epita.movies.service.MovieStatsService;
+import fr.epita.movies.service.SeenMovieService;
+import fr.epita.movies.service.TrendingService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZonedDateTime;
 import java.time.ZoneOffset;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static fr.epita.movies.web.rest.TestUtil.sameInstant;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -38,6 +55,7 @@ public class MovieResourceIT {
 
     private static final String DEFAULT_TITLE = "AAAAAAAAAA";
     private static final String UPDATED_TITLE = "BBBBBBBBBB";
+    private static final String IMPORTED_TITLE = "CCCCCCCCCC";
 
     private static final ZonedDateTime DEFAULT_DATE = ZonedDateTime.ofInstant(Instant.ofEpochMilli(0L), ZoneOffset.UTC);
     private static final ZonedDateTime UPDATED_DATE = ZonedDateTime.now(ZoneId.systemDefault()).withNano(0);
@@ -48,6 +66,27 @@ public class MovieResourceIT {
     @Autowired
     private MovieRepository movieRepository;
 
+    @Autowired
+    private MovieUserRepository movieUserRepository;
+
+    @Autowired
+    private MovieStatsService movieStatsService;
+
+    @Autowired
+    private AlsoWatchedService alsoWatchedService;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private MovieReachService movieReachService;
+
+    @Autowired
+    private MovieReachRepository movieReachRepository;
+
+    @Autowired
+    private SeenMovieService seenMovieService;
+
     @Autowired
     private EntityManager em;
 
@@ -108,6 +147,77 @@ public class MovieResourceIT {
         assertThat(testMovie.getExternalId()).isEqualTo(DEFAULT_EXTERNAL_ID);
     }
 
+    @Test
+    public void importMovies() throws Exception {
+        int databaseSizeBeforeImport = movieRepository.findAll().size();
+
+        // Import two valid CSV rows and one with an invalid date
+        String csv = "id;title;date;external_id\n" +
+            "1;" + IMPORTED_TITLE + ";2021-12-12T03:33:14;" + IMPORTED_TITLE + "1\n" +
+            "2;" + IMPORTED_TITLE + ";not-a-date;" + IMPORTED_TITLE + "2\n" +
+            "3;\"" + IMPORTED_TITLE + "\";2021-12-11T17:51:13Z;" + IMPORTED_TITLE + "3\n";
+        restMovieMockMvc.perform(post("/api/movies/import").with(csrf())
+            .contentType("text/csv")
+            .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.rejected").value(1))
+            .andExpect(jsonPath("$.rejectedRows[0].line").value(3));
+
+        // Import one NDJSON row
+        restMovieMockMvc.perform(post("/api/movies/import").with(csrf())
+            .contentType("application/x-ndjson")
+            .content("{\"title\":\"" + IMPORTED_TITLE + "\",\"date\":\"2021-12-12T03:33:14Z\"}\n"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.rejected").value(0));
+
+        // Validate the Movies in the database, then remove them as the import committed its own transactions
+        List<Movie> importedMovies = movieRepository.findAll().stream()
+            .filter(importedMovie -> IMPORTED_TITLE.equals(importedMovie.getTitle()))
+            .collect(Collectors.toList());
+        assertThat(movieRepository.findAll()).hasSize(databaseSizeBeforeImport + 3);
+        assertThat(importedMovies).hasSize(3);
+        assertThat(importedMovies).extracting(importedMovie -> importedMovie.getDate().toInstant())
+            .contains(Instant.parse("2021-12-12T03:33:14Z"), Instant.parse("2021-12-11T17:51:13Z"));
+        movieRepository.deleteAll(importedMovies);
+    }
+
+    @Test
+    public void importMoviesRejectsOnlyTheRowsThatCannotBeSaved() throws Exception {
+        int databaseSizeBeforeImport = movieRepository.findAll().size();
+
+        // Import three rows of one chunk, the last one reusing the external id of the first
+        String csv = "title;external_id\n" +
+            IMPORTED_TITLE + ";" + IMPORTED_TITLE + "1\n" +
+            IMPORTED_TITLE + ";" + IMPORTED_TITLE + "2\n" +
+            IMPORTED_TITLE + ";" + IMPORTED_TITLE + "1\n";
+        restMovieMockMvc.perform(post("/api/movies/import").with(csrf())
+            .contentType("text/csv")
+            .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.rejected").value(1))
+            .andExpect(jsonPath("$.rejectedRows[0].line").value(4));
+
+        // Validate the Movies in the database, then remove them as the import committed its own transactions
+        List<Movie> importedMovies = movieRepository.findAll().stream()
+            .filter(importedMovie -> IMPORTED_TITLE.equals(importedMovie.getTitle()))
+            .collect(Collectors.toList());
+        assertThat(movieRepository.findAll()).hasSize(databaseSizeBeforeImport + 2);
+        assertThat(importedMovies).extracting(Movie::getExternalId)
+            .containsExactlyInAnyOrder(IMPORTED_TITLE + "1", IMPORTED_TITLE + "2");
+        movieRepository.deleteAll(importedMovies);
+    }
+
+    @Test
+    public void importMoviesWithInvalidHeader() throws Exception {
+        restMovieMockMvc.perform(post("/api/movies/import").with(csrf())
+            .contentType("text/csv")
+            .content("id;name\n1;" + IMPORTED_TITLE + "\n"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void createMovieWithExistingId() throws Exception {
@@ -143,7 +253,219 @@ public class MovieResourceIT {
             .andExpect(jsonPath("$.[*].date").value(hasItem(sameInstant(DEFAULT_DATE))))
             .andExpect(jsonPath("$.[*].externalId").value(hasItem(DEFAULT_EXTERNAL_ID)));
     }
-    
+
+    @Test
+    @Transactional
+    public void getMovieByExternalId() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+
+        // Get the movie
+        restMovieMockMvc.perform(get("/api/movies/external/{externalId}", DEFAULT_EXTERNAL_ID))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(movie.getId().intValue()))
+            .andExpect(jsonPath("$.title").value(DEFAULT_TITLE));
+    }
+
+    @Test
+    @Transactional
+    public void getNonExistingMovieByExternalId() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies/external/{externalId}", "no-such-external-id"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void upsertNewMovieByExternalId() throws Exception {
+        int databaseSizeBeforeUpsert = movieRepository.findAll().size();
+
+        // Upsert a movie whose external id is unknown
+        restMovieMockMvc.perform(put("/api/movies/external/{externalId}", UPDATED_EXTERNAL_ID).with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(new Movie().title(UPDATED_TITLE).date(UPDATED_DATE))))
+            .andExpect(status().isCreated());
+
+        // Validate the Movie in the database
+        List<Movie> movieList = movieRepository.findAll();
+        assertThat(movieList).hasSize(databaseSizeBeforeUpsert + 1);
+        Movie testMovie = movieRepository.findOneByExternalId(UPDATED_EXTERNAL_ID).get();
+        assertThat(testMovie.getTitle()).isEqualTo(UPDATED_TITLE);
+        assertThat(testMovie.getDate()).isEqualTo(UPDATED_DATE);
+    }
+
+    @Test
+    @Transactional
+    public void upsertExistingMovieByExternalId() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+
+        int databaseSizeBeforeUpsert = movieRepository.findAll().size();
+
+        // Upsert the movie by its external id
+        restMovieMockMvc.perform(put("/api/movies/external/{externalId}", DEFAULT_EXTERNAL_ID).with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(new Movie().title(UPDATED_TITLE).date(UPDATED_DATE))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(movie.getId().intValue()));
+
+        // Validate the Movie in the database
+        List<Movie> movieList = movieRepository.findAll();
+        assertThat(movieList).hasSize(databaseSizeBeforeUpsert);
+        Movie testMovie = movieRepository.findById(movie.getId()).get();
+        assertThat(testMovie.getTitle()).isEqualTo(UPDATED_TITLE);
+        assertThat(testMovie.getDate()).isEqualTo(UPDATED_DATE);
+        assertThat(testMovie.getExternalId()).isEqualTo(DEFAULT_EXTERNAL_ID);
+    }
+
+    @Test
+    @Transactional
+    public void getMoviesAfterCursor() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+        Movie otherMovie = createUpdatedEntity(em);
+        movieRepository.saveAndFlush(otherMovie);
+
+        // The first page stops at the cursor and links to the next one
+        restMovieMockMvc.perform(get("/api/movies?after={after}&size=1", movie.getId() - 1))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(movie.getId().intValue())))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + movie.getId())));
+
+        // The next page resumes after the cursor
+        restMovieMockMvc.perform(get("/api/movies?after={after}&size=1", movie.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(otherMovie.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getMoviesWithInvalidPageSize() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies?size=0"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getMoviesBetweenDates() throws Exception {
+        // Initialize the database with two movies on the same date and one after the range
+        movieRepository.saveAndFlush(movie);
+        Movie sameDateMovie = movieRepository.saveAndFlush(createEntity(em).externalId(UPDATED_EXTERNAL_ID));
+        movieRepository.saveAndFlush(createEntity(em).externalId(IMPORTED_TITLE).date(DEFAULT_DATE.plusDays(1)));
+        String from = DEFAULT_DATE.toInstant().toString();
+        String to = DEFAULT_DATE.plusDays(1).toInstant().toString();
+
+        // Get the first page of the range
+        String next = restMovieMockMvc.perform(get("/api/movies?from={from}&to={to}&size=1", from, to))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(contains(movie.getId().intValue())))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + movie.getId())))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+        // Follow the next link to the second movie of that date
+        String nextUrl = next.substring(next.indexOf('<') + 1, next.indexOf('>'));
+        restMovieMockMvc.perform(get(nextUrl))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(sameDateMovie.getId().intValue())));
+
+        // The date after the range is excluded
+        restMovieMockMvc.perform(get("/api/movies?from={from}&to={to}&size=10", from, to))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(movie.getId().intValue(), sameDateMovie.getId().intValue())));
+    }
+
+    @Test
+    public void getMoviesBetweenInvalidDates() throws Exception {
+        String date = DEFAULT_DATE.toInstant().toString();
+        restMovieMockMvc.perform(get("/api/movies?from={from}&to={to}", date, date))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getMovieCalendar() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+
+        // Count the movies of the year of the movie
+        restMovieMockMvc.perform(get("/api/movies/calendar?year={year}", DEFAULT_DATE.getYear()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].month").value(hasItem(YearMonth.from(DEFAULT_DATE).toString())))
+            .andExpect(jsonPath("$.[0].count").value(1));
+    }
+
+    @Test
+    @Transactional
+    public void getMoviesByIds() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+        Movie otherMovie = movieRepository.saveAndFlush(createUpdatedEntity(em));
+
+        // Get the movies, in the requested order, with a missing id
+        restMovieMockMvc.perform(get("/api/movies?ids={ids}", otherMovie.getId() + "," + Long.MAX_VALUE + "," + movie.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.movies.[*].id").value(contains(otherMovie.getId().intValue(), movie.getId().intValue())))
+            .andExpect(jsonPath("$.movies.[*].title").value(contains(UPDATED_TITLE, DEFAULT_TITLE)))
+            .andExpect(jsonPath("$.missingIds").value(contains(Long.MAX_VALUE)));
+    }
+
+    @Test
+    @Transactional
+    public void lookupMovies() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+
+        // Look the movie up twice, with a missing id
+        restMovieMockMvc.perform(post("/api/movies/lookup").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[" + movie.getId() + "," + Long.MAX_VALUE + "," + movie.getId() + "]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.movies.[*].id").value(contains(movie.getId().intValue())))
+            .andExpect(jsonPath("$.missingIds").value(contains(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void lookupTooManyMovies() throws Exception {
+        String ids = LongStream.rangeClosed(1, 1001).mapToObj(Long::toString).collect(Collectors.joining(","));
+        restMovieMockMvc.perform(post("/api/movies/lookup").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[" + ids + "]"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void streamAllMovies() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+
+        // Stream all the movies
+        restMovieMockMvc.perform(get("/api/movies?stream=true"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(movie.getId().intValue())))
+            .andExpect(jsonPath("$.[*].title").value(hasItem(DEFAULT_TITLE)))
+            .andExpect(jsonPath("$.[*].externalId").value(hasItem(DEFAULT_EXTERNAL_ID)));
+    }
+
+    @Test
+    @Transactional
+    public void suggestMovies() throws Exception {
+        restMovieMockMvc.perform(get("/api/_search/movies/suggest?q={q}", "zzzz-no-such-title"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    @Transactional
+    public void suggestMoviesWithInvalidLimit() throws Exception {
+        restMovieMockMvc.perform(get("/api/_search/movies/suggest?q=a&limit=0"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getMovie() throws Exception {
@@ -157,7 +479,171 @@ public class MovieResourceIT {
             .andExpect(jsonPath("$.id").value(movie.getId().intValue()))
             .andExpect(jsonPath("$.title").value(DEFAULT_TITLE))
             .andExpect(jsonPath("$.date").value(sameInstant(DEFAULT_DATE)))
-            .andExpect(jsonPath("$.externalId").value(DEFAULT_EXTERNAL_ID));
+            .andExpect(jsonPath("$.externalId").value(DEFAULT_EXTERNAL_ID))
+            .andExpect(jsonPath("$.seenMovies").doesNotExist());
+    }
+
+    @Test
+    @Transactional
+    public void getMovieSeenMovies() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+        SeenMovie seenMovie = SeenMovieResourceIT.createEntity(em).movie(movie);
+        em.persist(seenMovie);
+        em.flush();
+
+        // Get the watch events of the movie
+        restMovieMockMvc.perform(get("/api/movies/{id}/seen-movies?sort=id,desc", movie.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$.[*].id").value(contains(seenMovie.getId().intValue())))
+            .andExpect(jsonPath("$.[*].movieId").value(contains(movie.getId().intValue())));
+    }
+
+    @Test
+    public void getTopMovies() throws Exception {
+        // Initialize the database, committing as view counts are only updated once watch events are committed
+        movieRepository.saveAndFlush(movie);
+        SeenMovie firstView = seenMovieService.save(SeenMovieResourceIT.createEntity(em).movie(movie));
+        SeenMovie secondView = seenMovieService.save(SeenMovieResourceIT.createEntity(em).movie(movie));
+        movieStatsService.flush();
+
+        // Get the most viewed movies
+        restMovieMockMvc.perform(get("/api/movies/top?limit={limit}", movieStatsService.getTopCapacity()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[?(@.movieId == %d)].viewCount", movie.getId()).value(hasItem(2)));
+
+        // Remove the watch events, then the movie
+        seenMovieService.delete(firstView.getId());
+        seenMovieService.delete(secondView.getId());
+        movieStatsService.flush();
+        restMovieMockMvc.perform(get("/api/movies/top?limit={limit}", movieStatsService.getTopCapacity()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[?(@.movieId == %d)]", movie.getId()).isEmpty());
+        movieRepository.deleteById(movie.getId());
+    }
+
+    @Test
+    public void getTopMoviesWithInvalidLimit() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies/top?limit=0"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getTrendingMovies() throws Exception {
+        // Initialize the database, committing as watch events are only counted once committed
+        movieRepository.saveAndFlush(movie);
+        SeenMovie firstView = seenMovieService.save(SeenMovieResourceIT.createEntity(em).date(ZonedDateTime.now()).movie(movie));
+        SeenMovie secondView = seenMovieService.save(SeenMovieResourceIT.createEntity(em).date(ZonedDateTime.now()).movie(movie));
+        try {
+            trendingService.recompute();
+
+            // Get the trending movies
+            restMovieMockMvc.perform(get("/api/movies/trending?window=1h&limit={limit}", trendingService.getTopCapacity()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$.[?(@.movieId == %d)].viewCount", movie.getId()).value(hasItem(2)));
+        } finally {
+            seenMovieService.delete(firstView.getId());
+            seenMovieService.delete(secondView.getId());
+            movieRepository.deleteById(movie.getId());
+        }
+    }
+
+    @Test
+    public void getTrendingMoviesWithInvalidWindow() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies/trending?window=2h"))
+            .andExpect(status().isBadRequest());
+        restMovieMockMvc.perform(get("/api/movies/trending?window=soon"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getAlsoWatchedMovies() throws Exception {
+        // Initialize the database, committing as watch events are only counted once committed
+        Movie otherMovie = movieRepository.saveAndFlush(createUpdatedEntity(em));
+        movieRepository.saveAndFlush(movie);
+        MovieUser movieUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createEntity(em));
+        SeenMovie firstView = seenMovieService.save(SeenMovieResourceIT.createEntity(em).movie(otherMovie).movieUser(movieUser));
+        SeenMovie secondView = seenMovieService.save(SeenMovieResourceIT.createEntity(em).movie(movie).movieUser(movieUser));
+        try {
+            alsoWatchedService.apply();
+
+            // Get the movies also watched
+            restMovieMockMvc.perform(get("/api/movies/{id}/also-watched", movie.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$.[*].movieId").value(contains(otherMovie.getId().intValue())))
+                .andExpect(jsonPath("$.[0].count").value(1));
+        } finally {
+            seenMovieService.delete(firstView.getId());
+            seenMovieService.delete(secondView.getId());
+            movieUserRepository.deleteById(movieUser.getId());
+            movieRepository.deleteById(otherMovie.getId());
+            movieRepository.deleteById(movie.getId());
+        }
+    }
+
+    @Test
+    public void getAlsoWatchedMoviesWithInvalidLimit() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies/1/also-watched?limit={limit}", alsoWatchedService.getMaxNeighbors() + 1))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getMovieReach() throws Exception {
+        // Initialize the database, committing as sketches are only updated once watch events are committed
+        ZonedDateTime dayOne = ZonedDateTime.of(2001, 2, 3, 0, 0, 0, 0, ZoneOffset.UTC);
+        movieRepository.saveAndFlush(movie);
+        MovieUser firstUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createEntity(em));
+        MovieUser secondUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createEntity(em));
+        List<SeenMovie> views = new ArrayList<>();
+        views.add(seenMovieService.save(new SeenMovie().date(dayOne.plusHours(1)).movie(movie).movieUser(firstUser)));
+        views.add(seenMovieService.save(new SeenMovie().date(dayOne.plusHours(2)).movie(movie).movieUser(firstUser)));
+        views.add(seenMovieService.save(new SeenMovie().date(dayOne.plusHours(23)).movie(movie).movieUser(secondUser)));
+        views.add(seenMovieService.save(new SeenMovie().date(dayOne.plusDays(1)).movie(movie).movieUser(firstUser)));
+        try {
+            // Get the reach, from the pending sketches
+            restMovieMockMvc.perform(get("/api/movies/{id}/reach?from=2001-02-03&to=2001-02-05", movie.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$.movieId").value(movie.getId().intValue()))
+                .andExpect(jsonPath("$.from").value("2001-02-03"))
+                .andExpect(jsonPath("$.to").value("2001-02-05"))
+                .andExpect(jsonPath("$.reach").value(2))
+                .andExpect(jsonPath("$.standardError").isNumber());
+
+            // Flush the sketches, then get the reach of each day and of the month from the stored ones
+            movieReachService.flush();
+            assertThat(movieReachRepository.findSketchesByMovieIdAndDayBetween(movie.getId(), false,
+                LocalDate.of(2001, 2, 3), LocalDate.of(2001, 2, 5))).hasSize(2);
+            assertThat(movieReachRepository.findSketchesByMovieIdAndDayBetween(movie.getId(), true,
+                LocalDate.of(2001, 2, 1), LocalDate.of(2001, 3, 1))).hasSize(1);
+
+            restMovieMockMvc.perform(get("/api/movies/{id}/reach?from=2001-02-04&to=2001-02-05", movie.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reach").value(1));
+            restMovieMockMvc.perform(get("/api/movies/{id}/reach?from=2001-02-03&to=2001-02-05", movie.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reach").value(2));
+            restMovieMockMvc.perform(get("/api/movies/{id}/reach?from=2001-01-31&to=2001-03-02", movie.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reach").value(2));
+        } finally {
+            movieReachService.flush();
+            views.forEach(view -> seenMovieService.delete(view.getId()));
+            movieRepository.deleteById(movie.getId());
+            movieUserRepository.deleteById(firstUser.getId());
+            movieUserRepository.deleteById(secondUser.getId());
+        }
+    }
+
+    @Test
+    public void getMovieReachWithInvalidRange() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies/1/reach?from=2001-02-04&to=2001-02-04"))
+            .andExpect(status().isBadRequest());
     }
 
     @Test
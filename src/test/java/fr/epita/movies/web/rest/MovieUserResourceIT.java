@@ -1,9 +1,21 @@
 package fr.epita.movies.web.rest;
 
 import fr.epita.movies.MoviesApp;
+import fr.epita.movies.domain.Contact;
+import fr.epita.movies.domain.Movie;
 import fr.epita.movies.domain.MovieUser;
+import fr.epita.movies.domain.Role;
+import fr.epita.movies.domain.SeenMovie;
+import fr.epita.movies.repository.MovieRepository;
 import fr.epita.movies.repository.MovieUserRepository;
-
+import fr.epita.movies.repository.RoleRepository;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.MovieUserService;
+import fr.epita.movies.service.RoleMembershipService;
+import fr.epita.movies.service.SeenMovieIndexService;
+import fr.epita.movies.service.SeenMovieService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -14,16 +26,25 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -47,6 +68,27 @@ public class MovieUserResourceIT {
     @Mock
     private MovieUserRepository movieUserRepositoryMock;
 
+    @Autowired
+    private SeenMovieRepository seenMovieRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private SeenMovieService seenMovieService;
+
+    @Autowired
+    private SeenMovieIndexService seenMovieIndexService;
+
+    @Autowired
+    private RoleMembershipService roleMembershipService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private EntityManager em;
 
@@ -135,26 +177,84 @@ public class MovieUserResourceIT {
             .andExpect(jsonPath("$.[*].username").value(hasItem(DEFAULT_USERNAME)));
     }
     
+    @Test
+    @Transactional
+    public void getAllMovieUsersWithRolesPaged() throws Exception {
+        // Initialize the database with two movieUsers, the second with a role
+        Role role = RoleResourceIT.createEntity(em);
+        em.persist(role);
+        movieUserRepository.saveAndFlush(movieUser);
+        MovieUser otherUser = movieUserRepository.saveAndFlush(createUpdatedEntity(em).addRole(role));
+        em.clear();
+
+        // Get the page of the most recent movieUsers
+        restMovieUserMockMvc.perform(get("/api/movie-users?page=0&size=2&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(contains(otherUser.getId().intValue(), movieUser.getId().intValue())))
+            .andExpect(jsonPath("$.[0].roles.[*].id").value(contains(role.getId().intValue())))
+            .andExpect(jsonPath("$.[1].roles").isEmpty());
+
+        // Get them by cursor, one at a time
+        String next = restMovieUserMockMvc.perform(get("/api/movie-users?after={after}&size=1", movieUser.getId() - 1))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(movieUser.getId().intValue())))
+            .andExpect(header().exists(HttpHeaders.LINK))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        restMovieUserMockMvc.perform(get(next.substring(next.indexOf('<') + 1, next.indexOf('>'))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(otherUser.getId().intValue())))
+            .andExpect(jsonPath("$.[0].roles.[*].name").value(contains(role.getName())));
+    }
+
+    @Test
+    @Transactional
+    public void getAllMovieUsersWhereContactIsNull() throws Exception {
+        // Initialize the database with a movieUser with a contact and one without
+        movieUserRepository.saveAndFlush(movieUser);
+        MovieUser contactUser = movieUserRepository.saveAndFlush(createUpdatedEntity(em));
+        Contact contact = ContactResourceIT.createEntity(em).movieUser(contactUser);
+        em.persist(contact);
+        em.flush();
+        em.clear();
+
+        // Stream all the movieUsers without a contact
+        restMovieUserMockMvc.perform(get("/api/movie-users?filter=contact-is-null"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(movieUser.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(contactUser.getId().intValue()))))
+            .andExpect(jsonPath("$.[*].username").value(hasItem(DEFAULT_USERNAME)));
+
+        // Get them page by page
+        restMovieUserMockMvc.perform(get("/api/movie-users?filter=contact-is-null&page=0&size=1000&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[0].id").value(movieUser.getId().intValue()))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(contactUser.getId().intValue()))));
+    }
+
     @SuppressWarnings({"unchecked"})
     public void getAllMovieUsersWithEagerRelationshipsIsEnabled() throws Exception {
-        MovieUserResource movieUserResource = new MovieUserResource(movieUserRepositoryMock);
-        when(movieUserRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
+        MovieUserResource movieUserResource = new MovieUserResource(movieUserRepositoryMock, new MovieUserService(movieUserRepositoryMock), seenMovieRepository, seenMovieIndexService, roleMembershipService, objectMapper);
+        when(movieUserRepositoryMock.findAllIds(any())).thenReturn(new PageImpl(new ArrayList<>()));
 
         restMovieUserMockMvc.perform(get("/api/movie-users?eagerload=true"))
             .andExpect(status().isOk());
 
-        verify(movieUserRepositoryMock, times(1)).findAllWithEagerRelationships(any());
+        verify(movieUserRepositoryMock, times(1)).findAllIds(any());
     }
 
     @SuppressWarnings({"unchecked"})
     public void getAllMovieUsersWithEagerRelationshipsIsNotEnabled() throws Exception {
-        MovieUserResource movieUserResource = new MovieUserResource(movieUserRepositoryMock);
-        when(movieUserRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
+        MovieUserResource movieUserResource = new MovieUserResource(movieUserRepositoryMock, new MovieUserService(movieUserRepositoryMock), seenMovieRepository, seenMovieIndexService, roleMembershipService, objectMapper);
+        when(movieUserRepositoryMock.findAllIds(any())).thenReturn(new PageImpl(new ArrayList<>()));
 
         restMovieUserMockMvc.perform(get("/api/movie-users?eagerload=true"))
             .andExpect(status().isOk());
 
-        verify(movieUserRepositoryMock, times(1)).findAllWithEagerRelationships(any());
+        verify(movieUserRepositoryMock, times(1)).findAllIds(any());
     }
 
     @Test
@@ -171,6 +271,152 @@ public class MovieUserResourceIT {
             .andExpect(jsonPath("$.username").value(DEFAULT_USERNAME));
     }
 
+    @Test
+    @Transactional
+    public void getMovieUserSeenMovies() throws Exception {
+        // Initialize the database
+        movieUserRepository.saveAndFlush(movieUser);
+        SeenMovie seenMovie = SeenMovieResourceIT.createEntity(em).movieUser(movieUser);
+        em.persist(seenMovie);
+        em.flush();
+
+        // Get the watch history of the movieUser
+        restMovieUserMockMvc.perform(get("/api/movie-users/{id}/seen-movies?sort=id,desc", movieUser.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(seenMovie.getId().intValue())))
+            .andExpect(jsonPath("$.[*].movieUserId").value(hasItem(movieUser.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getMovieUserHistory() throws Exception {
+        // Initialize the database with two watches on the same date and an older one
+        movieUserRepository.saveAndFlush(movieUser);
+        Movie movie = MovieResourceIT.createEntity(em);
+        em.persist(movie);
+        SeenMovie olderWatch = SeenMovieResourceIT.createEntity(em).movieUser(movieUser).movie(movie);
+        SeenMovie firstWatch = SeenMovieResourceIT.createUpdatedEntity(em).movieUser(movieUser).movie(movie);
+        SeenMovie secondWatch = SeenMovieResourceIT.createUpdatedEntity(em).movieUser(movieUser);
+        em.persist(olderWatch);
+        em.persist(firstWatch);
+        em.persist(secondWatch);
+        em.flush();
+
+        // Get the most recent page of the history
+        String next = restMovieUserMockMvc.perform(get("/api/movie-users/{id}/history?size=2", movieUser.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(contains(secondWatch.getId().intValue(), firstWatch.getId().intValue())))
+            .andExpect(jsonPath("$.[1].movieTitle").value(movie.getTitle()))
+            .andExpect(header().exists(HttpHeaders.LINK))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+        // Follow the next link to the older watch
+        restMovieUserMockMvc.perform(get(next.substring(next.indexOf('<') + 1, next.indexOf('>'))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(olderWatch.getId().intValue())))
+            .andExpect(jsonPath("$.[0].movieId").value(movie.getId().intValue()));
+    }
+
+    @Test
+    public void getMovieUserSeenFlags() throws Exception {
+        // Initialize the database, committing the watches so that they are indexed
+        movieUserRepository.saveAndFlush(movieUser);
+        Movie firstMovie = movieRepository.saveAndFlush(MovieResourceIT.createEntity(em));
+        Movie secondMovie = movieRepository.saveAndFlush(MovieResourceIT.createUpdatedEntity(em));
+        SeenMovie firstWatch = seenMovieService.save(SeenMovieResourceIT.createEntity(em).movieUser(movieUser).movie(firstMovie));
+        SeenMovie secondWatch = seenMovieService.save(SeenMovieResourceIT.createUpdatedEntity(em).movieUser(movieUser).movie(firstMovie));
+        SeenMovie thirdWatch = seenMovieService.save(SeenMovieResourceIT.createEntity(em).movieUser(movieUser).movie(secondMovie));
+        byte[] movieIds = TestUtil.convertObjectToJsonBytes(Arrays.asList(firstMovie.getId(), secondMovie.getId(), Long.MAX_VALUE));
+        try {
+            // Get the seen flags
+            restMovieUserMockMvc.perform(post("/api/movie-users/{id}/seen-flags", movieUser.getId()).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movieIds))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$.size").value(3))
+                .andExpect(jsonPath("$.bits").value("Aw=="));
+
+            // A movie stays seen while another watch of it remains
+            seenMovieService.delete(firstWatch.getId());
+            seenMovieService.delete(thirdWatch.getId());
+            restMovieUserMockMvc.perform(post("/api/movie-users/{id}/seen-flags", movieUser.getId()).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movieIds))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bits").value("AQ=="));
+        } finally {
+            seenMovieService.delete(secondWatch.getId());
+            movieRepository.deleteById(firstMovie.getId());
+            movieRepository.deleteById(secondMovie.getId());
+            movieUserRepository.deleteById(movieUser.getId());
+        }
+    }
+
+    @Test
+    @Transactional
+    public void getMovieUserSeenFlagsWithTooManyIds() throws Exception {
+        List<Long> movieIds = LongStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList());
+
+        restMovieUserMockMvc.perform(post("/api/movie-users/{id}/seen-flags", Long.MAX_VALUE).with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(movieIds)))
+            .andExpect(status().isBadRequest());
+
+        restMovieUserMockMvc.perform(post("/api/movie-users/{id}/seen-flags", Long.MAX_VALUE).with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Collections.emptyList())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.size").value(0))
+            .andExpect(jsonPath("$.bits").value(""));
+    }
+
+    @Test
+    public void getMovieUserHasRole() throws Exception {
+        // Initialize the database, committing the movieUser through the resource so that its roles are cached
+        Role role = roleRepository.saveAndFlush(RoleResourceIT.createEntity(em));
+        Role otherRole = roleRepository.saveAndFlush(RoleResourceIT.createUpdatedEntity(em));
+        movieUser.addRole(role);
+        restMovieUserMockMvc.perform(post("/api/movie-users").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(movieUser)))
+            .andExpect(status().isCreated());
+        movieUser = movieUserRepository.findAll().stream().max(Comparator.comparing(MovieUser::getId)).get();
+        try {
+            restMovieUserMockMvc.perform(get("/api/movie-users/{id}/has-role?roleIds={roleIds}", movieUser.getId(),
+                otherRole.getId() + "," + role.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+            restMovieUserMockMvc.perform(get("/api/movie-users/{id}/has-role?roleIds={roleIds}", movieUser.getId(), otherRole.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("false"));
+            restMovieUserMockMvc.perform(get("/api/roles/{id}/members", role.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(hasItem(movieUser.getId().intValue())));
+
+            // Moving the movieUser to the other role updates the cache
+            movieUser.setRoles(new HashSet<>(Collections.singleton(otherRole)));
+            restMovieUserMockMvc.perform(put("/api/movie-users").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(movieUser)))
+                .andExpect(status().isOk());
+            restMovieUserMockMvc.perform(get("/api/movie-users/{id}/has-role?roleIds={roleIds}", movieUser.getId(), role.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("false"));
+            restMovieUserMockMvc.perform(get("/api/roles/{id}/members", otherRole.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(hasItem(movieUser.getId().intValue())));
+        } finally {
+            restMovieUserMockMvc.perform(delete("/api/movie-users/{id}", movieUser.getId()).with(csrf()))
+                .andExpect(status().isNoContent());
+            roleRepository.deleteById(role.getId());
+            roleRepository.deleteById(otherRole.getId());
+        }
+    }
+
     @Test
     @Transactional
     public void getNonExistingMovieUser() throws Exception {
@@ -1,8 +1,13 @@
 package fr.epita.movies.web.rest;
 
 import fr.epita.movies.MoviesApp;
+import fr.epita.movies.domain.Contact;
+import fr.epita.movies.domain.MovieUser;
 import fr.epita.movies.domain.Role;
+import fr.epita.movies.repository.ContactRepository;
+import fr.epita.movies.repository.MovieUserRepository;
 import fr.epita.movies.repository.RoleRepository;
+import fr.epita.movies.security.AuthoritiesConstants;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,6 +19,7 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -37,6 +43,12 @@ public class RoleResourceIT {
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private MovieUserRepository movieUserRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -192,6 +204,79 @@ public class RoleResourceIT {
         assertThat(roleList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    public void addAndRemoveRoleMembers() throws Exception {
+        // Initialize the database, committing so that each chunk runs in its own transaction
+        roleRepository.saveAndFlush(role);
+        MovieUser movieUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createEntity(em));
+        MovieUser contactUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createUpdatedEntity(em));
+        Contact contact = contactRepository.saveAndFlush(ContactResourceIT.createEntity(em).movieUser(contactUser));
+        byte[] movieUserIds = TestUtil.convertObjectToJsonBytes(Arrays.asList(movieUser.getId(), contactUser.getId(), Long.MAX_VALUE));
+        try {
+            // Grant the role to both movieUsers, once
+            restRoleMockMvc.perform(post("/api/roles/{id}/members", role.getId()).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movieUserIds))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+            restRoleMockMvc.perform(post("/api/roles/{id}/members", role.getId()).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movieUserIds))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0"));
+            assertThat(movieUserRepository.findIdsByRoleId(role.getId())).containsExactlyInAnyOrder(movieUser.getId(), contactUser.getId());
+
+            // Revoke it from the movieUser without a contact, then from the other one
+            restRoleMockMvc.perform(delete("/api/roles/{id}/members?filter=contact-is-null", role.getId()).with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+            assertThat(movieUserRepository.findIdsByRoleId(role.getId())).containsExactly(contactUser.getId());
+            restRoleMockMvc.perform(delete("/api/roles/{id}/members", role.getId()).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movieUserIds))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+            assertThat(movieUserRepository.findIdsByRoleId(role.getId())).isEmpty();
+
+            // Grant it to the movieUsers without a contact
+            restRoleMockMvc.perform(post("/api/roles/{id}/members?filter=contact-is-null", role.getId()).with(csrf()))
+                .andExpect(status().isOk());
+            assertThat(movieUserRepository.findIdsByRoleId(role.getId())).contains(movieUser.getId()).doesNotContain(contactUser.getId());
+            restRoleMockMvc.perform(get("/api/roles/{id}/members", role.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(hasItem(movieUser.getId().intValue())));
+
+            restRoleMockMvc.perform(post("/api/roles/{id}/members", Long.MAX_VALUE).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movieUserIds))
+                .andExpect(status().isNotFound());
+            restRoleMockMvc.perform(delete("/api/roles/{id}/members", Long.MAX_VALUE).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movieUserIds))
+                .andExpect(status().isNotFound());
+            restRoleMockMvc.perform(delete("/api/roles/{id}/members?filter=contact-is-null", Long.MAX_VALUE).with(csrf()))
+                .andExpect(status().isNotFound());
+        } finally {
+            restRoleMockMvc.perform(delete("/api/roles/{id}/members?filter=contact-is-null", role.getId()).with(csrf()));
+            contactRepository.deleteById(contact.getId());
+            movieUserRepository.deleteById(movieUser.getId());
+            movieUserRepository.deleteById(contactUser.getId());
+            roleRepository.deleteById(role.getId());
+        }
+    }
+
+    @Test
+    @Transactional
+    public void addRoleMembersAsUser() throws Exception {
+        roleRepository.saveAndFlush(role);
+
+        restRoleMockMvc.perform(post("/api/roles/{id}/members", role.getId()).with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(1L))))
+            .andExpect(status().isForbidden());
+    }
+
     @Test
     @Transactional
     public void deleteRole() throws Exception {
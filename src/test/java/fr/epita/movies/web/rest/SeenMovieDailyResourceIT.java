@@ -0,0 +1,122 @@
+package fr.epita.movies.web.rest;
+
+import fr.epita.movies.MoviesApp;
+import fr.epita.movies.domain.Movie;
+import fr.epita.movies.domain.MovieUser;
+import fr.epita.movies.domain.SeenMovie;
+import fr.epita.movies.repository.MovieRepository;
+import fr.epita.movies.repository.MovieUserRepository;
+import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.service.SeenMovieRollupService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import javax.persistence.EntityManager;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the {@link SeenMovieDailyResource} REST controller.
+ * <p>
+ * The rollup only reads committed watch events, so these tests commit their data and delete it afterwards.
+ */
+@SpringBootTest(classes = MoviesApp.class)
+@AutoConfigureMockMvc
+@WithMockUser
+public class SeenMovieDailyResourceIT {
+
+    private static final ZonedDateTime DAY_ONE = ZonedDateTime.of(2001, 2, 3, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private MovieUserRepository movieUserRepository;
+
+    @Autowired
+    private SeenMovieRepository seenMovieRepository;
+
+    @Autowired
+    private SeenMovieRollupService seenMovieRollupService;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restSeenMovieDailyMockMvc;
+
+    private Movie movie;
+
+    private MovieUser firstUser;
+
+    private MovieUser secondUser;
+
+    private final List<SeenMovie> seenMovies = new ArrayList<>();
+
+    @BeforeEach
+    public void initTest() {
+        movie = movieRepository.saveAndFlush(MovieResourceIT.createEntity(em));
+        firstUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createEntity(em));
+        secondUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createEntity(em));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        seenMovieRepository.deleteAll(seenMovies);
+        movieRepository.deleteById(movie.getId());
+        movieUserRepository.deleteById(firstUser.getId());
+        movieUserRepository.deleteById(secondUser.getId());
+    }
+
+    @Test
+    public void getMovieDailyViews() throws Exception {
+        // Initialize the database
+        seen(firstUser, DAY_ONE.plusHours(1));
+        seen(firstUser, DAY_ONE.plusHours(2));
+        seen(secondUser, DAY_ONE.plusHours(23));
+        seen(firstUser, DAY_ONE.plusDays(1));
+        seenMovieRollupService.backfill();
+
+        // Get the daily views
+        restSeenMovieDailyMockMvc.perform(get("/api/movies/{id}/daily-views?from=2001-02-03&to=2001-02-05", movie.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].day").value(contains("2001-02-03", "2001-02-04")))
+            .andExpect(jsonPath("$.[*].views").value(contains(3, 1)))
+            .andExpect(jsonPath("$.[*].distinctUsers").value(contains(2, 1)));
+
+        // Add a watch event, then roll it up once it has settled
+        seen(secondUser, DAY_ONE.plusDays(1).plusHours(5));
+        seenMovieRollupService.update();
+        seenMovieRollupService.update();
+
+        restSeenMovieDailyMockMvc.perform(get("/api/movies/{id}/daily-views?from=2001-02-04&to=2001-02-05", movie.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].day").value(contains("2001-02-04")))
+            .andExpect(jsonPath("$.[*].views").value(contains(2)))
+            .andExpect(jsonPath("$.[*].distinctUsers").value(contains(2)));
+    }
+
+    @Test
+    public void getMovieDailyViewsWithInvalidRange() throws Exception {
+        restSeenMovieDailyMockMvc.perform(get("/api/movies/{id}/daily-views?from=2001-02-04&to=2001-02-04", movie.getId()))
+            .andExpect(status().isBadRequest());
+    }
+
+    private void seen(MovieUser movieUser, ZonedDateTime date) {
+        seenMovies.add(seenMovieRepository.saveAndFlush(new SeenMovie().date(date).movie(movie).movieUser(movieUser)));
+    }
+}
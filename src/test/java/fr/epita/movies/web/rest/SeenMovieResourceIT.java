@@ -1,27 +1,42 @@
 package fr.epita.movies.web.rest;
 
 import fr.epita.movies.MoviesApp;
+import fr.epita.movies.domain.Movie;
+import fr.epita.movies.domain.MovieUser;
 import fr.epita.movies.domain.SeenMovie;
+import fr.epita.movies.repository.MovieUserRepository;
 import fr.epita.movies.repository.SeenMovieRepository;
+import fr.epita.movies.security.AuthoritiesConstants;
+import fr.epita.movies.service.SeenMovieArchiveService;
+import fr.epita.movies.service.SeenMovieIngestionService;
+import fr.epita.movies.service.dto.SeenMovieDTO;
+import fr.epita.movies.service.util.SeenMovieColumnFile;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.ZoneOffset;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static fr.epita.movies.web.rest.TestUtil.sameInstant;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -38,10 +53,21 @@ public class SeenMovieResourceIT {
 
     private static final ZonedDateTime DEFAULT_DATE = ZonedDateTime.ofInstant(Instant.ofEpochMilli(0L), ZoneOffset.UTC);
     private static final ZonedDateTime UPDATED_DATE = ZonedDateTime.now(ZoneId.systemDefault()).withNano(0);
+    private static final ZonedDateTime BATCH_DATE = ZonedDateTime.ofInstant(Instant.ofEpochMilli(1000L), ZoneOffset.UTC);
+    private static final ZonedDateTime ARCHIVE_DATE = ZonedDateTime.of(1990, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
 
     @Autowired
     private SeenMovieRepository seenMovieRepository;
 
+    @Autowired
+    private SeenMovieIngestionService seenMovieIngestionService;
+
+    @Autowired
+    private SeenMovieArchiveService seenMovieArchiveService;
+
+    @Autowired
+    private MovieUserRepository movieUserRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -96,6 +122,33 @@ public class SeenMovieResourceIT {
         assertThat(testSeenMovie.getDate()).isEqualTo(DEFAULT_DATE);
     }
 
+    @Test
+    @Transactional
+    public void createResentSeenMovie() throws Exception {
+        Movie movie = MovieResourceIT.createEntity(em);
+        em.persist(movie);
+        MovieUser movieUser = MovieUserResourceIT.createEntity(em);
+        em.persist(movieUser);
+        em.flush();
+        seenMovie.movie(movie).movieUser(movieUser);
+        int databaseSizeBeforeCreate = seenMovieRepository.findAll().size();
+
+        // Send the same SeenMovie twice, a few seconds apart
+        restSeenMovieMockMvc.perform(post("/api/seen-movies").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(seenMovie)))
+            .andExpect(status().isCreated());
+        seenMovie.setDate(DEFAULT_DATE.plusSeconds(5));
+        restSeenMovieMockMvc.perform(post("/api/seen-movies").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(seenMovie)))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.date").value(sameInstant(DEFAULT_DATE)));
+
+        // Validate that the SeenMovie was only saved once
+        assertThat(seenMovieRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
     @Test
     @Transactional
     public void createSeenMovieWithExistingId() throws Exception {
@@ -116,6 +169,101 @@ public class SeenMovieResourceIT {
     }
 
 
+    @Test
+    public void createSeenMoviesDurably() throws Exception {
+        // Create the SeenMovies, written before the response as the batch is durable
+        restSeenMovieMockMvc.perform(post("/api/seen-movies/batch?durable=true").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(batchSeenMovie(), batchSeenMovie()))))
+            .andExpect(status().isCreated());
+
+        // Validate the SeenMovies in the database, then remove them as the batch committed its own transaction
+        assertThat(deleteBatchSeenMovies()).isEqualTo(2);
+    }
+
+    @Test
+    public void createSeenMoviesWriteBehind() throws Exception {
+        // Queue the SeenMovies
+        restSeenMovieMockMvc.perform(post("/api/seen-movies/batch").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(batchSeenMovie(), batchSeenMovie(), batchSeenMovie()))))
+            .andExpect(status().isAccepted());
+
+        // Write the queue, then validate the SeenMovies in the database
+        seenMovieIngestionService.flush();
+        assertThat(deleteBatchSeenMovies()).isEqualTo(3);
+    }
+
+    @Test
+    public void createSeenMoviesWithExistingId() throws Exception {
+        SeenMovieDTO seenMovieDTO = batchSeenMovie();
+        seenMovieDTO.setId(1L);
+
+        restSeenMovieMockMvc.perform(post("/api/seen-movies/batch").with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(seenMovieDTO))))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getSeenMoviesBetweenDatesFromArchive() throws Exception {
+        // Initialize the database with two watch events to archive and a live one
+        MovieUser movieUser = movieUserRepository.saveAndFlush(MovieUserResourceIT.createEntity(em));
+        SeenMovie first = seenMovieRepository.saveAndFlush(new SeenMovie().date(ARCHIVE_DATE).movieUser(movieUser));
+        SeenMovie second = seenMovieRepository.saveAndFlush(new SeenMovie().date(ARCHIVE_DATE.plusHours(1)).movieUser(movieUser));
+        SeenMovie live = seenMovieRepository.saveAndFlush(new SeenMovie().date(ARCHIVE_DATE.plusDays(1)).movieUser(movieUser));
+        try {
+            // Archive the first two
+            assertThat(seenMovieArchiveService.archive(ARCHIVE_DATE.plusHours(2))).isGreaterThanOrEqualTo(2);
+            assertThat(seenMovieRepository.findById(first.getId())).isEmpty();
+            assertThat(seenMovieRepository.findById(live.getId())).isPresent();
+            String from = ARCHIVE_DATE.minusDays(1).toInstant().toString();
+            String to = ARCHIVE_DATE.plusDays(2).toInstant().toString();
+
+            // Get the first page of the range, from the archive
+            String next = restSeenMovieMockMvc.perform(get("/api/seen-movies?movieUserId={id}&from={from}&to={to}&size=2",
+                movieUser.getId(), from, to))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue(), second.getId().intValue())))
+                .andExpect(jsonPath("$.[0].date").value(sameInstant(ARCHIVE_DATE)))
+                .andExpect(jsonPath("$.[0].movieUserId").value(movieUser.getId().intValue()))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + second.getId())))
+                .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+            // Follow the next link to the live watch event
+            String nextUrl = next.substring(next.indexOf('<') + 1, next.indexOf('>'));
+            restSeenMovieMockMvc.perform(get(nextUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].id").value(contains(live.getId().intValue())));
+        } finally {
+            seenMovieRepository.deleteById(live.getId());
+            movieUserRepository.deleteById(movieUser.getId());
+        }
+    }
+
+    @Test
+    public void getSeenMoviesBetweenDatesWithoutOwner() throws Exception {
+        String from = ARCHIVE_DATE.toInstant().toString();
+        String to = ARCHIVE_DATE.plusDays(1).toInstant().toString();
+        restSeenMovieMockMvc.perform(get("/api/seen-movies?from={from}&to={to}", from, to))
+            .andExpect(status().isBadRequest());
+    }
+
+    private static SeenMovieDTO batchSeenMovie() {
+        SeenMovieDTO seenMovieDTO = new SeenMovieDTO();
+        seenMovieDTO.setDate(BATCH_DATE);
+        return seenMovieDTO;
+    }
+
+    private int deleteBatchSeenMovies() {
+        List<SeenMovie> batchSeenMovies = seenMovieRepository.findAll().stream()
+            .filter(seenMovie -> seenMovie.getDate().toInstant().equals(BATCH_DATE.toInstant()))
+            .collect(Collectors.toList());
+        seenMovieRepository.deleteAll(batchSeenMovies);
+        return batchSeenMovies.size();
+    }
+
     @Test
     @Transactional
     public void getAllSeenMovies() throws Exception {
@@ -130,6 +278,36 @@ public class SeenMovieResourceIT {
             .andExpect(jsonPath("$.[*].date").value(hasItem(sameInstant(DEFAULT_DATE))));
     }
     
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    public void exportSeenMovies() throws Exception {
+        // Initialize the database, committing the watch event so that the export reads it
+        seenMovieRepository.saveAndFlush(seenMovie);
+        try {
+            // Export the seenMovies
+            byte[] file = restSeenMovieMockMvc.perform(get("/api/seen-movies/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("seen-movies.smc")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+            List<SeenMovieDTO> exported = new ArrayList<>();
+            SeenMovieColumnFile.scan(ByteBuffer.wrap(file), exported::add);
+            assertThat(exported).extracting(SeenMovieDTO::getId).contains(seenMovie.getId());
+            assertThat(exported).filteredOn(exportedSeenMovie -> exportedSeenMovie.getId().equals(seenMovie.getId()))
+                .extracting(exportedSeenMovie -> exportedSeenMovie.getDate().toInstant())
+                .containsExactly(DEFAULT_DATE.toInstant());
+        } finally {
+            seenMovieRepository.deleteById(seenMovie.getId());
+        }
+    }
+
+    @Test
+    public void exportSeenMoviesAsUser() throws Exception {
+        restSeenMovieMockMvc.perform(get("/api/seen-movies/export"))
+            .andExpect(status().isForbidden());
+    }
+
     @Test
     @Transactional
     public void getSeenMovie() throws Exception {